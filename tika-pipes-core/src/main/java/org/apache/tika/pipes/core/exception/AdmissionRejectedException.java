@@ -0,0 +1,25 @@
+package org.apache.tika.pipes.core.exception;
+
+/**
+ * The server is parsing as much as it is allowed to and could not take on another document in time.
+ */
+public class AdmissionRejectedException extends TikaPipesException {
+    public AdmissionRejectedException() {
+    }
+
+    public AdmissionRejectedException(String message) {
+        super(message);
+    }
+
+    public AdmissionRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public AdmissionRejectedException(Throwable cause) {
+        super(cause);
+    }
+
+    public AdmissionRejectedException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -0,0 +1,25 @@
+package org.apache.tika.pipes.core.exception;
+
+/**
+ * A fetcher has been failing, so fetches with it are refused for a while instead of being tried.
+ */
+public class CircuitBreakerOpenException extends TikaPipesException {
+    public CircuitBreakerOpenException() {
+    }
+
+    public CircuitBreakerOpenException(String message) {
+        super(message);
+    }
+
+    public CircuitBreakerOpenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public CircuitBreakerOpenException(Throwable cause) {
+        super(cause);
+    }
+
+    public CircuitBreakerOpenException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
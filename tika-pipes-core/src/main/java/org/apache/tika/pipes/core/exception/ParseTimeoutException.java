@@ -0,0 +1,25 @@
+package org.apache.tika.pipes.core.exception;
+
+/**
+ * Thrown when a parse runs longer than {@code parser.taskTimeoutMillis}.
+ */
+public class ParseTimeoutException extends TikaServerParseException {
+    public ParseTimeoutException() {
+    }
+
+    public ParseTimeoutException(String message) {
+        super(message);
+    }
+
+    public ParseTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public ParseTimeoutException(Throwable cause) {
+        super(cause);
+    }
+
+    public ParseTimeoutException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
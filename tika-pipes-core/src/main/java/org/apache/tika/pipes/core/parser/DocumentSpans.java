@@ -0,0 +1,80 @@
+package org.apache.tika.pipes.core.parser;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracing for one parse: a {@code ParseService.parse} span with a child span for each embedded document.
+ * <p>
+ * The parse runs on a watchdog or fork parser thread that does not carry the caller's context, so the parent is
+ * captured up front and passed explicitly. {@link org.apache.tika.parser.RecursiveParserWrapper} starts and ends
+ * embedded documents in nested order on a single thread, so the open spans are kept on a stack.
+ */
+class DocumentSpans {
+    private final Tracer tracer;
+    private final Span parseSpan;
+    private final Context parseContext;
+    private final Deque<Span> embedded = new ArrayDeque<>();
+
+    DocumentSpans(Tracer tracer) {
+        this.tracer = tracer;
+        this.parseSpan = tracer.spanBuilder("ParseService.parse").startSpan();
+        this.parseContext = Context.current().with(parseSpan);
+    }
+
+    synchronized void startEmbedded() {
+        Context parent = embedded.isEmpty() ? parseContext : parseContext.with(embedded.peek());
+        embedded.push(tracer.spanBuilder("embedded document").setParent(parent).startSpan());
+    }
+
+    synchronized void endEmbedded(Metadata metadata) {
+        Span span = embedded.poll();
+        if (span == null) {
+            return;
+        }
+        setAttributes(span, metadata);
+        span.end();
+    }
+
+    synchronized void endContainer(Metadata metadata) {
+        setAttributes(parseSpan, metadata);
+    }
+
+    /**
+     * @param exception why the parse failed, or null
+     */
+    synchronized void end(Throwable exception) {
+        Span span;
+        while ((span = embedded.poll()) != null) {
+            span.setStatus(StatusCode.ERROR, "Parse did not finish");
+            span.end();
+        }
+        if (exception != null) {
+            parseSpan.recordException(exception);
+            parseSpan.setStatus(StatusCode.ERROR);
+        }
+        parseSpan.end();
+    }
+
+    private static void setAttributes(Span span, Metadata metadata) {
+        String contentType = metadata.get(Metadata.CONTENT_TYPE);
+        if (contentType != null) {
+            span.setAttribute("tika.content_type", contentType);
+        }
+        String resourceName = metadata.get(TikaCoreProperties.RESOURCE_NAME_KEY);
+        if (resourceName != null) {
+            span.setAttribute("tika.resource_name", resourceName);
+        }
+        String embeddedPath = metadata.get(TikaCoreProperties.EMBEDDED_RESOURCE_PATH);
+        if (embeddedPath != null) {
+            span.setAttribute("tika.embedded_resource_path", embeddedPath);
+        }
+    }
+}
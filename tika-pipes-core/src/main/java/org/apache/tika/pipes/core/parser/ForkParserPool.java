@@ -0,0 +1,114 @@
+package org.apache.tika.pipes.core.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.RecursiveParserWrapper;
+import org.apache.tika.sax.BasicContentHandlerFactory;
+import org.apache.tika.sax.RecursiveParserWrapperHandler;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs parses in a pool of child JVMs so that a document that exhausts the heap, crashes the JVM or hangs only takes
+ * its own worker down.
+ * <p>
+ * At most {@code maxSize} parses run at once and up to {@code queueCapacity} more wait for a free worker. Anything
+ * beyond that is rejected straight away instead of piling up threads. Each worker is replaced after
+ * {@code maxParsesPerWorker} parses, exits on {@link OutOfMemoryError} and is killed by the fork server if a parse
+ * runs longer than the parse timeout.
+ */
+@Slf4j
+public class ForkParserPool implements Parser, Closeable {
+    private final ForkParser forkParser;
+    private final Semaphore admitted;
+    private final int maxSize;
+    private final int queueCapacity;
+    private final AtomicInteger active = new AtomicInteger();
+
+    public ForkParserPool(RecursiveParserWrapper parser, int coreSize, int maxSize, int queueCapacity, int maxParsesPerWorker, long parseTimeoutMillis, String workerHeap) {
+        this.maxSize = maxSize;
+        this.queueCapacity = queueCapacity;
+        this.admitted = new Semaphore(maxSize + queueCapacity, true);
+        forkParser = new ForkParser(ForkParserPool.class.getClassLoader(), parser);
+        forkParser.setPoolSize(maxSize);
+        forkParser.setMaxFilesProcessedPerServer(maxParsesPerWorker);
+        forkParser.setServerParseTimeoutMillis(parseTimeoutMillis);
+        List<String> javaCommand = new ArrayList<>();
+        javaCommand.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        javaCommand.add("-Xmx" + workerHeap);
+        javaCommand.add("-XX:+ExitOnOutOfMemoryError");
+        forkParser.setJavaCommand(javaCommand);
+        if (coreSize > 0) {
+            warmUp(Math.min(coreSize, maxSize));
+        }
+    }
+
+    /**
+     * Start {@code workers} child JVMs in the background so the first requests do not pay the start-up cost.
+     */
+    private void warmUp(int workers) {
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    parse(new ByteArrayInputStream(new byte[0]), new RecursiveParserWrapperHandler(new BasicContentHandlerFactory(BasicContentHandlerFactory.HANDLER_TYPE.IGNORE, -1)), new Metadata(), new ParseContext());
+                } catch (Exception e) {
+                    log.warn("Could not warm up fork parser worker", e);
+                }
+            }, "tika-fork-warmup-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public Set<MediaType> getSupportedTypes(ParseContext context) {
+        return forkParser.getSupportedTypes(context);
+    }
+
+    /**
+     * Parse in a child JVM. The handler must be a {@link RecursiveParserWrapperHandler}.
+     *
+     * @throws TikaException if the pool and its queue are full
+     */
+    @Override
+    public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context) throws IOException, SAXException, TikaException {
+        if (!admitted.tryAcquire()) {
+            throw new TikaException("Fork parser pool is full: " + maxSize + " parses running and " + queueCapacity + " queued");
+        }
+        active.incrementAndGet();
+        try {
+            forkParser.parse(stream, handler, metadata, context);
+        } finally {
+            active.decrementAndGet();
+            admitted.release();
+        }
+    }
+
+    /**
+     * @return number of parses either running in a worker or waiting for one
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public void close() {
+        forkParser.close();
+    }
+}
@@ -0,0 +1,351 @@
+package org.apache.tika.pipes.core.parser;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.io.TikaInputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Parse results on disk, keyed by the SHA-256 of a document's bytes and a fingerprint of everything else that changes
+ * the result, so that a byte-identical document, such as the same attachment or template in many places, is parsed
+ * once.
+ * <ul>
+ *     <li>Each result is one gzipped file in {@code directory}, named by its key. Results still on disk are picked up
+ *     again on restart, oldest first.</li>
+ *     <li>The files take at most {@code maxBytes}. The least recently used results are deleted to make room. Results
+ *     larger than {@code maxEntryBytes} are not kept.</li>
+ *     <li>The digest is worked out from the spooled content before it is parsed. Content of up to
+ *     {@link #IN_MEMORY_DIGEST_BYTES} is read again from memory, larger content from a temp file, which spooled
+ *     content already has.</li>
+ * </ul>
+ * Thread safe.
+ */
+@Slf4j
+public class ParseCache {
+    static final int IN_MEMORY_DIGEST_BYTES = 1024 * 1024;
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".bin";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    /**
+     * Bytes on disk by key, least recently used first.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * A document's key, and its length, which a hit saves parsing.
+     */
+    public record Key(String name, long contentLength) {
+    }
+
+    /**
+     * @param maxBytes      most bytes of results kept on disk
+     * @param maxEntryBytes results that take more than this many bytes on disk are not kept
+     */
+    public ParseCache(Path directory, long maxBytes, long maxEntryBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxBytes, maxEntryBytes);
+        Files.createDirectories(directory);
+        load();
+    }
+
+    private void load() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = new ArrayList<>(list.toList());
+        }
+        // left by writes that did not finish
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(TMP_SUFFIX)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        files.removeIf(file -> !file.getFileName().toString().endsWith(SUFFIX));
+        files.sort(Comparator.comparing(ParseCache::lastModified));
+        synchronized (this) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long length = Files.size(file);
+                entries.put(name.substring(0, name.length() - SUFFIX.length()), length);
+                sizeBytes += length;
+            }
+            evict();
+        }
+        log.info("Parse cache in {} has {} results taking {} bytes", directory, entries.size(), sizeBytes);
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Read the content to work out its key, and rewind it to be parsed.
+     *
+     * @param fingerprint everything besides the content that changes the parse result
+     */
+    public Key key(TikaInputStream content, String fingerprint) throws IOException {
+        byte[] fingerprintDigest = newDigest().digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+        if (!content.hasFile()) {
+            MessageDigest digest = newDigest();
+            digest.update(fingerprintDigest);
+            content.mark(IN_MEMORY_DIGEST_BYTES + 1);
+            long length = update(content, digest, IN_MEMORY_DIGEST_BYTES + 1);
+            content.reset();
+            if (length <= IN_MEMORY_DIGEST_BYTES) {
+                return new Key(HexFormat.of().formatHex(digest.digest()), length);
+            }
+            // too large to read twice from memory, so it is spooled to a temp file below
+        }
+        MessageDigest digest = newDigest();
+        digest.update(fingerprintDigest);
+        long length;
+        try (InputStream is = Files.newInputStream(content.getPath())) {
+            length = update(is, digest, Long.MAX_VALUE);
+        }
+        return new Key(HexFormat.of().formatHex(digest.digest()), length);
+    }
+
+    private static long update(InputStream is, MessageDigest digest, long maxBytes) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        while (total < maxBytes) {
+            int read = is.read(buffer, 0, (int) Math.min(buffer.length, maxBytes - total));
+            if (read == -1) {
+                break;
+            }
+            digest.update(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return the cached result, or null if there is none
+     */
+    public List<Map<String, Object>> get(Key key) {
+        synchronized (this) {
+            if (entries.get(key.name()) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(file(key.name()))))) {
+            List<Map<String, Object>> metadataList = read(in);
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(key.contentLength());
+            return metadataList;
+        } catch (NoSuchFileException e) {
+            // evicted since it was looked up
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read cached parse result {}, removing it", key.name(), e);
+            remove(key.name());
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Keep a successful parse result.
+     */
+    public void put(Key key, List<Map<String, Object>> metadataList) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+                write(metadataList, out);
+            }
+            if (bytes.size() > maxEntryBytes) {
+                log.debug("Not caching parse result {} of {} bytes", key.name(), bytes.size());
+                return;
+            }
+            Path tmpFile = Files.createTempFile(directory, key.name(), TMP_SUFFIX);
+            try {
+                try (OutputStream os = Files.newOutputStream(tmpFile)) {
+                    bytes.writeTo(os);
+                }
+                synchronized (this) {
+                    Files.move(tmpFile, file(key.name()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    Long previous = entries.put(key.name(), (long) bytes.size());
+                    sizeBytes += bytes.size() - (previous == null ? 0 : previous);
+                    evict();
+                }
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
+        } catch (IOException e) {
+            log.warn("Could not cache parse result {}", key.name(), e);
+        }
+    }
+
+    private synchronized void remove(String name) {
+        Long length = entries.remove(name);
+        if (length != null) {
+            sizeBytes -= length;
+            delete(name);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            sizeBytes -= eldest.getValue();
+            evictions.incrementAndGet();
+            delete(eldest.getKey());
+        }
+    }
+
+    private void delete(String name) {
+        try {
+            Files.deleteIfExists(file(name));
+        } catch (IOException e) {
+            log.warn("Could not delete cached parse result {}", name, e);
+        }
+    }
+
+    private Path file(String name) {
+        return directory.resolve(name + SUFFIX);
+    }
+
+    /**
+     * Values are a String or a String[], as from {@link ParseService#convertMetadataToMap}.
+     */
+    private static void write(List<Map<String, Object>> metadataList, DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(metadataList.size());
+        for (Map<String, Object> metadata : metadataList) {
+            out.writeInt(metadata.size());
+            for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+                writeString(entry.getKey(), out);
+                if (entry.getValue() instanceof String[] values) {
+                    out.writeInt(values.length);
+                    for (String value : values) {
+                        writeString(value, out);
+                    }
+                } else {
+                    out.writeInt(-1);
+                    writeString(String.valueOf(entry.getValue()), out);
+                }
+            }
+        }
+    }
+
+    private static List<Map<String, Object>> read(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unknown parse cache format " + version);
+        }
+        int documents = in.readInt();
+        List<Map<String, Object>> metadataList = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            int fields = in.readInt();
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            for (int j = 0; j < fields; j++) {
+                String name = readString(in);
+                int count = in.readInt();
+                if (count < 0) {
+                    metadata.put(name, readString(in));
+                } else {
+                    String[] values = new String[count];
+                    for (int k = 0; k < count; k++) {
+                        values[k] = readString(in);
+                    }
+                    metadata.put(name, values);
+                }
+            }
+            metadataList.add(metadata);
+        }
+        return metadataList;
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return hits as a share of lookups, 0 before the first lookup
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * @return total length of the documents that were not parsed because their result was cached
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+}
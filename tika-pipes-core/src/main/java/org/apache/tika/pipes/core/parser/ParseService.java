@@ -1,21 +1,29 @@
 package org.apache.tika.pipes.core.parser;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Tracer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tika.config.TikaConfig;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.tika.Tika;
 import org.apache.tika.exception.EncryptedDocumentException;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
-import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
-import org.apache.tika.parser.RecursiveParserWrapper;
 import org.apache.tika.parser.ocr.TesseractOCRConfig;
 import org.apache.tika.pipes.HandlerConfig;
 import org.apache.tika.pipes.core.exception.TikaServerParseException;
 import org.apache.tika.sax.BasicContentHandlerFactory;
 import org.apache.tika.sax.RecursiveParserWrapperHandler;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.xml.sax.ContentHandler;
@@ -23,14 +31,33 @@ import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class ParseService {
+    @Autowired
+    private ParseWatchdog parseWatchdog;
+
+    @Autowired(required = false)
+    private OpenTelemetry openTelemetry;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Enforced by {@link ParseWatchdog}, and by the fork server when parsing in the {@link ForkParserPool}.
+     */
     @Value("${parser.taskTimeoutMillis:50000}")
     private Long taskTimeoutMillis;
 
@@ -46,6 +73,177 @@ public class ParseService {
     @Value("${parser.skipOcr:true}")
     private Boolean skipOcr;
 
+    @Value("${parser.tikaConfigPath:}")
+    private String tikaConfigPath;
+
+    @Value("${parser.tikaConfigReloadIntervalMillis:0}")
+    private Long tikaConfigReloadIntervalMillis;
+
+    @Value("${parser.cache.enabled:false}")
+    private Boolean parseCacheEnabled;
+
+    /**
+     * Empty for {@code tika-parse-cache} in the temp directory.
+     */
+    @Value("${parser.cache.directory:}")
+    private String parseCacheDirectory;
+
+    @Value("${parser.cache.maxBytes:1073741824}")
+    private Long parseCacheMaxBytes;
+
+    @Value("${parser.cache.maxEntryBytes:10485760}")
+    private Long parseCacheMaxEntryBytes;
+
+    @Value("${forkparser.enabled:false}")
+    private Boolean forkParserEnabled;
+
+    @Value("${forkparser.pool.core-size:5}")
+    private Integer forkParserCoreSize;
+
+    @Value("${forkparser.pool.max-size:10}")
+    private Integer forkParserMaxSize;
+
+    @Value("${forkparser.pool.queue-capacity:100}")
+    private Integer forkParserQueueCapacity;
+
+    @Value("${forkparser.pool.max-parses-per-worker:1000}")
+    private Integer forkParserMaxParsesPerWorker;
+
+    @Value("${forkparser.pool.worker-heap:1g}")
+    private String forkParserWorkerHeap;
+
+    /**
+     * Shared by every parse. Replaced wholesale on reload so an in-flight parse keeps using the stack it started with.
+     */
+    private volatile ParserStack parserStack;
+
+    /**
+     * Child JVM pool built from {@link #parserStack}, or null when parses run in-process.
+     */
+    private volatile ForkParserPool forkParserPool;
+
+    /**
+     * Null unless {@code parser.cache.enabled}.
+     */
+    private ParseCache parseCache;
+
+    private ScheduledExecutorService reloadExecutor;
+
+    private Tracer tracer;
+
+    @PostConstruct
+    public void init() throws TikaException, IOException {
+        tracer = (openTelemetry != null ? openTelemetry : OpenTelemetry.noop()).getTracer("org.apache.tika.pipes.core");
+        parserStack = ParserStack.load(getTikaConfigPath());
+        log.info("Built parser stack from {} in {} ms", describe(parserStack), parserStack.getBuildTimeMillis());
+        forkParserPool = createForkParserPool(parserStack);
+        if (parseCacheEnabled) {
+            createParseCache();
+        }
+        if (parserStack.getTikaConfigPath() != null && tikaConfigReloadIntervalMillis > 0) {
+            reloadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "tika-config-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloadExecutor.scheduleWithFixedDelay(this::reloadIfModified, tikaConfigReloadIntervalMillis, tikaConfigReloadIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (reloadExecutor != null) {
+            reloadExecutor.shutdownNow();
+        }
+        if (forkParserPool != null) {
+            forkParserPool.close();
+        }
+    }
+
+    /**
+     * Rebuild the parser stack from the configured tika-config and swap it in. If the new config cannot be loaded the
+     * current stack is kept and the error is thrown to the caller.
+     */
+    public void reload() throws TikaException, IOException {
+        ParserStack newStack = ParserStack.load(getTikaConfigPath());
+        ForkParserPool oldPool = forkParserPool;
+        forkParserPool = createForkParserPool(newStack);
+        parserStack = newStack;
+        if (oldPool != null) {
+            // workers that are still busy are shut down as soon as their current parse finishes
+            oldPool.close();
+        }
+        log.info("Reloaded parser stack from {} in {} ms", describe(newStack), newStack.getBuildTimeMillis());
+    }
+
+    public ParserStack getParserStack() {
+        return parserStack;
+    }
+
+    /**
+     * @return null unless {@code parser.cache.enabled}
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    private void createParseCache() throws IOException {
+        Path directory = StringUtils.isBlank(parseCacheDirectory) ? Paths.get(System.getProperty("java.io.tmpdir"), "tika-parse-cache") : Paths.get(parseCacheDirectory);
+        parseCache = new ParseCache(directory, parseCacheMaxBytes, parseCacheMaxEntryBytes);
+        if (meterRegistry != null) {
+            FunctionCounter.builder("tika.parse.cache.hits", parseCache, ParseCache::getHitCount)
+                           .description("Parses answered from the parse cache")
+                           .register(meterRegistry);
+            FunctionCounter.builder("tika.parse.cache.misses", parseCache, ParseCache::getMissCount)
+                           .description("Parses not found in the parse cache")
+                           .register(meterRegistry);
+            FunctionCounter.builder("tika.parse.cache.bytes_saved", parseCache, ParseCache::getBytesSaved)
+                           .description("Bytes of documents not parsed because their result was in the parse cache")
+                           .baseUnit("bytes")
+                           .register(meterRegistry);
+            FunctionCounter.builder("tika.parse.cache.evictions", parseCache, ParseCache::getEvictionCount)
+                           .description("Results deleted from the parse cache to make room")
+                           .register(meterRegistry);
+            Gauge.builder("tika.parse.cache.hit_ratio", parseCache, ParseCache::getHitRatio)
+                 .description("Share of parse cache lookups that were hits")
+                 .register(meterRegistry);
+            Gauge.builder("tika.parse.cache.size", parseCache, ParseCache::getSizeBytes)
+                 .description("Bytes of results in the parse cache")
+                 .baseUnit("bytes")
+                 .register(meterRegistry);
+            Gauge.builder("tika.parse.cache.entries", parseCache, ParseCache::getEntryCount)
+                 .description("Results in the parse cache")
+                 .register(meterRegistry);
+        }
+    }
+
+    private ForkParserPool createForkParserPool(ParserStack stack) {
+        if (!forkParserEnabled) {
+            return null;
+        }
+        log.info("Parsing in a fork parser pool: core-size={}, max-size={}, queue-capacity={}, max-parses-per-worker={}, worker-heap={}", forkParserCoreSize, forkParserMaxSize, forkParserQueueCapacity, forkParserMaxParsesPerWorker, forkParserWorkerHeap);
+        return new ForkParserPool(stack.getRecursiveParserWrapper(), forkParserCoreSize, forkParserMaxSize, forkParserQueueCapacity, forkParserMaxParsesPerWorker, taskTimeoutMillis, forkParserWorkerHeap);
+    }
+
+    private void reloadIfModified() {
+        Path path = parserStack.getTikaConfigPath();
+        try {
+            if (Files.getLastModifiedTime(path).toMillis() != parserStack.getTikaConfigLastModified()) {
+                reload();
+            }
+        } catch (Exception e) {
+            log.error("Could not reload tika config {}, keeping the previous parser stack", path, e);
+        }
+    }
+
+    private Path getTikaConfigPath() {
+        return StringUtils.isBlank(tikaConfigPath) ? null : Paths.get(tikaConfigPath);
+    }
+
+    private static String describe(ParserStack stack) {
+        return stack.getTikaConfigPath() == null ? "the default tika config" : stack.getTikaConfigPath().toString();
+    }
+
     public static Map<String, Object> convertMetadataToMap(Metadata metadata) {
         Map<String, Object> metadataMap = new HashMap<>();
         String[] keys = metadata.names();
@@ -60,21 +258,29 @@ public class ParseService {
         return metadataMap;
     }
 
-    private Parser createParser(TikaConfig tikaConfig) {
-        return new AutoDetectParser(tikaConfig);
-    }
-
     public List<Map<String, Object>> parseDocument(InputStream inputStream, ParseContext parseContext) throws TikaException, IOException {
-        TikaConfig tikaConfig = new TikaConfig();
-        Metadata metadata = new Metadata();
-        TesseractOCRConfig config = new TesseractOCRConfig();
-        config.setSkipOcr(skipOcr);
-        parseContext.set(TesseractOCRConfig.class, config);
+        ParserStack stack = parserStack;
+        DocumentSpans spans = new DocumentSpans(tracer);
+        RecursiveParserWrapperHandler handler = new RecursiveParserWrapperHandler(getContentHandlerFactory(parseContext), maxEmbeddedResources, stack.getMetadataFilter()) {
+            @Override
+            public void startEmbeddedDocument(ContentHandler contentHandler, Metadata metadata) throws SAXException {
+                spans.startEmbedded();
+                super.startEmbeddedDocument(contentHandler, metadata);
+            }
 
-        Parser parser = createParser(tikaConfig);
-        RecursiveParserWrapper wrapper = new RecursiveParserWrapper(parser);
-        RecursiveParserWrapperHandler handler = getRecursiveParserWrapperHandler(parseContext, tikaConfig);
-        parse(wrapper, inputStream, handler, metadata, parseContext);
+            @Override
+            public void endEmbeddedDocument(ContentHandler contentHandler, Metadata metadata) throws SAXException {
+                spans.endEmbedded(metadata);
+                super.endEmbeddedDocument(contentHandler, metadata);
+            }
+
+            @Override
+            public void endDocument(ContentHandler contentHandler, Metadata metadata) throws SAXException {
+                spans.endContainer(metadata);
+                super.endDocument(contentHandler, metadata);
+            }
+        };
+        parseWithTimeout(stack, inputStream, handler, parseContext, spans);
         return handler
                 .getMetadataList()
                 .stream()
@@ -83,11 +289,109 @@ public class ParseService {
 
     }
 
-    private RecursiveParserWrapperHandler getRecursiveParserWrapperHandler(ParseContext context, TikaConfig tikaConfig) {
+    /**
+     * Like {@link #parseDocument(InputStream, ParseContext)}, but with {@code parser.cache.enabled}, a document whose
+     * bytes were parsed successfully before with the same parser config and parse context gets the earlier result from
+     * the {@link ParseCache} instead of being parsed again.
+     *
+     * @param parseContextFingerprint identifies the parse context, such as the JSON it was read from
+     */
+    public List<Map<String, Object>> parseDocument(InputStream inputStream, ParseContext parseContext, String parseContextFingerprint) throws TikaException, IOException {
+        ParseCache cache = parseCache;
+        if (cache == null) {
+            return parseDocument(inputStream, parseContext);
+        }
+        TikaInputStream tikaInputStream = TikaInputStream.get(inputStream);
+        ParseCache.Key key;
+        try {
+            key = cache.key(tikaInputStream, fingerprint(parserStack, parseContextFingerprint));
+        } catch (IOException | RuntimeException e) {
+            tikaInputStream.close();
+            throw e;
+        }
+        List<Map<String, Object>> cached = cache.get(key);
+        if (cached != null) {
+            tikaInputStream.close();
+            log.debug("Parse cache hit for {} bytes", key.contentLength());
+            return cached;
+        }
+        List<Map<String, Object>> metadataList = parseDocument(tikaInputStream, parseContext);
+        cache.put(key, metadataList);
+        return metadataList;
+    }
+
+    /**
+     * Everything besides the content and the parse context that changes a parse result.
+     */
+    private String fingerprint(ParserStack stack, String parseContextFingerprint) {
+        return String.join("\n",
+                Tika.getString(),
+                "writeLimit=" + writeLimit,
+                "maxEmbeddedResources=" + maxEmbeddedResources,
+                "throwOnWriteLimitReached=" + throwOnWriteLimitReached,
+                "skipOcr=" + skipOcr,
+                "tikaConfig=" + stack.getTikaConfigPath() + "@" + stack.getTikaConfigLastModified(),
+                "parseContext=" + StringUtils.defaultString(parseContextFingerprint));
+    }
+
+    /**
+     * Parse a document and pass the metadata of the container and each embedded document to {@code consumer} as soon
+     * as it has been parsed, so that only one document at a time is held in memory. The container document is passed
+     * last. The consumer is called on the parse thread; an exception thrown by it aborts the parse.
+     */
+    public void parseDocument(InputStream inputStream, ParseContext parseContext, Consumer<Map<String, Object>> consumer) throws TikaException, IOException {
+        ParserStack stack = parserStack;
+        DocumentSpans spans = new DocumentSpans(tracer);
+        StreamingRecursiveParserWrapperHandler handler = new StreamingRecursiveParserWrapperHandler(getContentHandlerFactory(parseContext), maxEmbeddedResources, stack.getMetadataFilter(), metadata -> consumer.accept(convertMetadataToMap(metadata))) {
+            @Override
+            public void startEmbeddedDocument(ContentHandler contentHandler, Metadata metadata) throws SAXException {
+                spans.startEmbedded();
+                super.startEmbeddedDocument(contentHandler, metadata);
+            }
+
+            @Override
+            public void endEmbeddedDocument(ContentHandler contentHandler, Metadata metadata) throws SAXException {
+                // end the span before the consumer sends the document on
+                spans.endEmbedded(metadata);
+                super.endEmbeddedDocument(contentHandler, metadata);
+            }
+
+            @Override
+            public void endDocument(ContentHandler contentHandler, Metadata metadata) throws SAXException {
+                spans.endContainer(metadata);
+                super.endDocument(contentHandler, metadata);
+            }
+        };
+        parseWithTimeout(stack, inputStream, handler, parseContext, spans);
+    }
+
+    private void parseWithTimeout(ParserStack stack, InputStream inputStream, ContentHandler handler, ParseContext parseContext, DocumentSpans spans) throws TikaException, IOException {
+        try {
+            parseWithTimeout(stack, inputStream, handler, parseContext);
+        } catch (TikaException | IOException | RuntimeException | Error e) {
+            spans.end(e);
+            throw e;
+        }
+        spans.end(null);
+    }
+
+    private void parseWithTimeout(ParserStack stack, InputStream inputStream, ContentHandler handler, ParseContext parseContext) throws TikaException, IOException {
+        ForkParserPool pool = forkParserPool;
+        Metadata metadata = new Metadata();
+        TesseractOCRConfig config = new TesseractOCRConfig();
+        config.setSkipOcr(skipOcr);
+        parseContext.set(TesseractOCRConfig.class, config);
+
+        Parser parser = pool != null ? pool : stack.getRecursiveParserWrapper();
+        parseWatchdog.run(StringUtils.defaultIfBlank(metadata.get(TikaCoreProperties.RESOURCE_NAME_KEY), "document"), () -> {
+            parse(parser, inputStream, handler, metadata, parseContext);
+            return null;
+        }, inputStream);
+    }
+
+    private BasicContentHandlerFactory getContentHandlerFactory(ParseContext context) {
         HandlerConfig handlerConfig = new HandlerConfig(BasicContentHandlerFactory.HANDLER_TYPE.TEXT, HandlerConfig.PARSE_MODE.RMETA, writeLimit, maxEmbeddedResources, throwOnWriteLimitReached);
-        BasicContentHandlerFactory.HANDLER_TYPE type = handlerConfig.getType();
-        BasicContentHandlerFactory contentHandlerFactory = new BasicContentHandlerFactory(type, handlerConfig.getWriteLimit(), handlerConfig.isThrowOnWriteLimitReached(), context);
-        return new RecursiveParserWrapperHandler(contentHandlerFactory, handlerConfig.getMaxEmbeddedResources(), tikaConfig.getMetadataFilter());
+        return new BasicContentHandlerFactory(handlerConfig.getType(), handlerConfig.getWriteLimit(), handlerConfig.isThrowOnWriteLimitReached(), context);
     }
 
     /**
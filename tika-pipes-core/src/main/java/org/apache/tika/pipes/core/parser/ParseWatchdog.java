@@ -0,0 +1,228 @@
+package org.apache.tika.pipes.core.parser;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.pipes.core.exception.ParseTimeoutException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces {@code parser.taskTimeoutMillis}.
+ * <p>
+ * Each parse runs on the calling thread, such as a {@code tika-parse-runner-} thread, and the watchdog only times it.
+ * When the timeout expires the calling thread is interrupted and the input stream is closed so blocked reads fail, and
+ * once the parse returns the caller gets a {@link ParseTimeoutException}. A parser that ignores both keeps its thread
+ * and is reported as stuck, and interrupted again, until it finally returns.
+ */
+@Component
+@Slf4j
+public class ParseWatchdog {
+    @Value("${parser.taskTimeoutMillis:50000}")
+    private Long taskTimeoutMillis;
+
+    @Value("${parser.stuckCheckIntervalMillis:30000}")
+    private Long stuckCheckIntervalMillis;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final Map<Long, InFlightParse> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong parseIds = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private ScheduledExecutorService watchdogExecutor;
+    private Counter timeoutCounter;
+
+    @FunctionalInterface
+    public interface ParseTask<T> {
+        T call() throws IOException, TikaException;
+    }
+
+    private static class InFlightParse {
+        private final String description;
+        private final Thread thread = Thread.currentThread();
+        private final long startMillis = System.currentTimeMillis();
+        /**
+         * Guarded by this, so the thread is not interrupted once the parse has returned.
+         */
+        private boolean finished;
+        private volatile boolean timedOut;
+
+        private InFlightParse(String description) {
+            this.description = description;
+        }
+
+        /**
+         * @return false if the parse already returned
+         */
+        private synchronized boolean timeOut() {
+            if (finished) {
+                return false;
+            }
+            timedOut = true;
+            thread.interrupt();
+            return true;
+        }
+
+        private synchronized void interrupt() {
+            if (!finished) {
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * @return true if the parse timed out
+         */
+        private synchronized boolean finish() {
+            finished = true;
+            return timedOut;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        watchdogExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tika-parse-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (stuckCheckIntervalMillis > 0) {
+            watchdogExecutor.scheduleWithFixedDelay(this::checkStuckParses, stuckCheckIntervalMillis, stuckCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (meterRegistry != null) {
+            Gauge.builder("tika.parse.in_flight", inFlight, Map::size)
+                 .description("Parses currently running, including stuck ones")
+                 .register(meterRegistry);
+            Gauge.builder("tika.parse.stuck", this, ParseWatchdog::getStuckCount)
+                 .description("Parses that timed out but whose thread has not returned")
+                 .register(meterRegistry);
+            timeoutCounter = Counter.builder("tika.parse.timeouts")
+                                    .description("Parses that exceeded parser.taskTimeoutMillis")
+                                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchdogExecutor.shutdownNow();
+    }
+
+    /**
+     * Run a parse on the calling thread with the configured timeout.
+     *
+     * @param description  what is being parsed, for logging
+     * @param task         the parse
+     * @param resource     closed if the parse times out, to break it out of a blocking read. May be null.
+     * @return the result of the task
+     * @throws ParseTimeoutException if the parse did not finish in time
+     */
+    public <T> T run(String description, ParseTask<T> task, Closeable resource) throws IOException, TikaException {
+        if (taskTimeoutMillis <= 0) {
+            return task.call();
+        }
+        long id = parseIds.incrementAndGet();
+        InFlightParse parse = new InFlightParse(description);
+        inFlight.put(id, parse);
+        ScheduledFuture<?> timeout;
+        try {
+            timeout = watchdogExecutor.schedule(() -> timeOut(parse, resource), taskTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            inFlight.remove(id);
+            throw e;
+        }
+        try {
+            T result = task.call();
+            if (!finish(id, parse, timeout)) {
+                return result;
+            }
+        } catch (IOException | TikaException | RuntimeException | Error e) {
+            if (!finish(id, parse, timeout)) {
+                throw e;
+            }
+            log.debug("Timed out parse of {} failed", description, e);
+        }
+        // the interrupt was meant for the parse, not for whatever the thread does next
+        Thread.interrupted();
+        log.info("Timed out parse of {} returned after {} ms", description, System.currentTimeMillis() - parse.startMillis);
+        throw new ParseTimeoutException("Parse timed out after " + taskTimeoutMillis + " ms");
+    }
+
+    /**
+     * @return true if the parse timed out
+     */
+    private boolean finish(long id, InFlightParse parse, ScheduledFuture<?> timeout) {
+        timeout.cancel(false);
+        inFlight.remove(id);
+        return parse.finish();
+    }
+
+    private void timeOut(InFlightParse parse, Closeable resource) {
+        if (!parse.timeOut()) {
+            return;
+        }
+        closeQuietly(resource);
+        timeouts.incrementAndGet();
+        if (timeoutCounter != null) {
+            timeoutCounter.increment();
+        }
+        log.warn("Parse of {} timed out after {} ms", parse.description, taskTimeoutMillis);
+    }
+
+    /**
+     * @return parses currently running, including stuck ones
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return parses that timed out but whose thread is still running
+     */
+    public int getStuckCount() {
+        return (int) inFlight.values().stream().filter(parse -> parse.timedOut).count();
+    }
+
+    /**
+     * @return total number of parses that exceeded the timeout
+     */
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    private void checkStuckParses() {
+        for (InFlightParse parse : inFlight.values()) {
+            if (!parse.timedOut) {
+                continue;
+            }
+            StackTraceElement[] stackTrace = parse.thread.getStackTrace();
+            log.warn("Parse of {} on thread {} is stuck, running for {} ms, at {}", parse.description, parse.thread.getName(), System.currentTimeMillis() - parse.startMillis, stackTrace.length > 0 ? stackTrace[0] : "unknown");
+            parse.interrupt();
+        }
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        if (resource == null) {
+            return;
+        }
+        try {
+            resource.close();
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not close resource of timed out parse", e);
+        }
+    }
+}
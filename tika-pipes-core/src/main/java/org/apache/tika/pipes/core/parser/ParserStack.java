@@ -0,0 +1,95 @@
+package org.apache.tika.pipes.core.parser;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.filter.MetadataFilter;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.RecursiveParserWrapper;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Immutable set of Tika objects needed to parse a document.
+ * <p>
+ * Building a {@link TikaConfig} runs a service-loader scan of every parser, detector and metadata filter on the
+ * classpath, so a stack is built once and then shared by all parse threads. Every object held here is thread-safe.
+ * To pick up a changed tika-config, build a new stack and swap it in rather than mutating this one.
+ */
+public final class ParserStack {
+    private final TikaConfig tikaConfig;
+    private final Parser parser;
+    private final RecursiveParserWrapper recursiveParserWrapper;
+    private final Path tikaConfigPath;
+    private final long tikaConfigLastModified;
+    private final long buildTimeMillis;
+
+    private ParserStack(TikaConfig tikaConfig, Path tikaConfigPath, long tikaConfigLastModified, long buildTimeMillis) {
+        this.tikaConfig = tikaConfig;
+        this.parser = new AutoDetectParser(tikaConfig);
+        this.recursiveParserWrapper = new RecursiveParserWrapper(parser);
+        this.tikaConfigPath = tikaConfigPath;
+        this.tikaConfigLastModified = tikaConfigLastModified;
+        this.buildTimeMillis = buildTimeMillis;
+    }
+
+    /**
+     * Build a parser stack.
+     *
+     * @param tikaConfigPath path to a tika-config XML file, or null to use the default Tika configuration
+     * @return the new parser stack
+     */
+    public static ParserStack load(Path tikaConfigPath) throws TikaException, IOException {
+        long start = System.currentTimeMillis();
+        TikaConfig tikaConfig;
+        long lastModified = -1;
+        if (tikaConfigPath == null) {
+            tikaConfig = new TikaConfig();
+        } else {
+            lastModified = Files.getLastModifiedTime(tikaConfigPath).toMillis();
+            try {
+                tikaConfig = new TikaConfig(tikaConfigPath);
+            } catch (SAXException e) {
+                throw new TikaException("Could not read tika config " + tikaConfigPath, e);
+            }
+        }
+        return new ParserStack(tikaConfig, tikaConfigPath, lastModified, System.currentTimeMillis() - start);
+    }
+
+    public TikaConfig getTikaConfig() {
+        return tikaConfig;
+    }
+
+    public Parser getParser() {
+        return parser;
+    }
+
+    public RecursiveParserWrapper getRecursiveParserWrapper() {
+        return recursiveParserWrapper;
+    }
+
+    public MetadataFilter getMetadataFilter() {
+        return tikaConfig.getMetadataFilter();
+    }
+
+    public Path getTikaConfigPath() {
+        return tikaConfigPath;
+    }
+
+    /**
+     * @return the modification time of the tika-config file this stack was built from, or -1 for the default config
+     */
+    public long getTikaConfigLastModified() {
+        return tikaConfigLastModified;
+    }
+
+    /**
+     * @return how long it took to build this stack. This is the setup cost that used to be paid on every document.
+     */
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+}
@@ -0,0 +1,62 @@
+package org.apache.tika.pipes.core.parser;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.metadata.filter.MetadataFilter;
+import org.apache.tika.metadata.filter.NoOpFilter;
+import org.apache.tika.sax.AbstractRecursiveParserWrapperHandler;
+import org.apache.tika.sax.ContentHandlerFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.function.Consumer;
+
+/**
+ * Like {@link org.apache.tika.sax.RecursiveParserWrapperHandler}, but hands each document's metadata to a consumer as
+ * soon as {@link org.apache.tika.parser.RecursiveParserWrapper} finishes it instead of collecting them all in a list.
+ * Only the document currently being parsed is held in memory.
+ * <p>
+ * Documents arrive in the order they finish, so embedded documents come before the container document, which is
+ * always last.
+ */
+public class StreamingRecursiveParserWrapperHandler extends AbstractRecursiveParserWrapperHandler {
+    private final transient Consumer<Metadata> consumer;
+    private final MetadataFilter metadataFilter;
+
+    public StreamingRecursiveParserWrapperHandler(ContentHandlerFactory contentHandlerFactory, int maxEmbeddedResources, MetadataFilter metadataFilter, Consumer<Metadata> consumer) {
+        super(contentHandlerFactory, maxEmbeddedResources);
+        this.metadataFilter = metadataFilter == null ? new NoOpFilter() : metadataFilter;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void endEmbeddedDocument(ContentHandler contentHandler, Metadata metadata) throws SAXException {
+        super.endEmbeddedDocument(contentHandler, metadata);
+        accept(contentHandler, metadata);
+    }
+
+    @Override
+    public void endDocument(ContentHandler contentHandler, Metadata metadata) throws SAXException {
+        super.endDocument(contentHandler, metadata);
+        accept(contentHandler, metadata);
+    }
+
+    private void accept(ContentHandler contentHandler, Metadata metadata) throws SAXException {
+        if (!contentHandler.getClass().equals(DefaultHandler.class)) {
+            String content = contentHandler.toString();
+            if (content != null && !content.isBlank()) {
+                metadata.add(TikaCoreProperties.TIKA_CONTENT, content);
+            }
+        }
+        try {
+            metadataFilter.filter(metadata);
+        } catch (TikaException e) {
+            throw new SAXException(e);
+        }
+        if (metadata.size() > 0) {
+            consumer.accept(metadata);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.apache.tika.pipes.core.parser;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BasicContentHandlerFactory;
+import org.apache.tika.sax.RecursiveParserWrapperHandler;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForkParserPoolTest {
+    private static final byte[] DOC = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void parsesInChildJvm() throws Exception {
+        ParserStack stack = ParserStack.load(null);
+        try (ForkParserPool pool = new ForkParserPool(stack.getRecursiveParserWrapper(), 0, 1, 0, 10, 60000, "256m")) {
+            RecursiveParserWrapperHandler handler = newHandler();
+            pool.parse(new ByteArrayInputStream(DOC), handler, new Metadata(), new ParseContext());
+            assertEquals(1, handler.getMetadataList().size());
+            assertTrue(handler.getMetadataList().get(0).get("X-TIKA:content").contains("quick brown fox"));
+            assertEquals(0, pool.getActiveCount());
+        }
+    }
+
+    @Test
+    void rejectsWhenFull() throws Exception {
+        ParserStack stack = ParserStack.load(null);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ForkParserPool pool = new ForkParserPool(stack.getRecursiveParserWrapper(), 0, 1, 0, 10, 60000, "256m")) {
+            CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+                try {
+                    pool.parse(new FilterInputStream(new ByteArrayInputStream(DOC)) {
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            reading.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                            return super.read(b, off, len);
+                        }
+                    }, newHandler(), new Metadata(), new ParseContext());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertTrue(reading.await(60, TimeUnit.SECONDS));
+            assertThrows(TikaException.class, () -> pool.parse(new ByteArrayInputStream(DOC), newHandler(), new Metadata(), new ParseContext()));
+            release.countDown();
+            first.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private static RecursiveParserWrapperHandler newHandler() {
+        return new RecursiveParserWrapperHandler(new BasicContentHandlerFactory(BasicContentHandlerFactory.HANDLER_TYPE.TEXT, -1));
+    }
+}
@@ -0,0 +1,109 @@
+package org.apache.tika.pipes.core.parser;
+
+import org.apache.tika.io.TikaInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ParseCacheTest {
+    private static final byte[] DOC = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void keysByContentAndFingerprintAndRewinds(@TempDir Path tempDir) throws Exception {
+        ParseCache parseCache = new ParseCache(tempDir, 1_000_000, 1_000_000);
+        try (TikaInputStream content = TikaInputStream.get(new ByteArrayInputStream(DOC))) {
+            ParseCache.Key key = parseCache.key(content, "config");
+            assertEquals(DOC.length, key.contentLength());
+            assertArrayEquals(DOC, content.readAllBytes());
+            assertEquals(key, parseCache.key(TikaInputStream.get(new ByteArrayInputStream(DOC)), "config"));
+            assertNotEquals(key, parseCache.key(TikaInputStream.get(new ByteArrayInputStream(DOC)), "other config"));
+        }
+
+        // content too large to digest in memory, and content already in a file, get the same key as in memory would
+        byte[] large = new byte[ParseCache.IN_MEMORY_DIGEST_BYTES + 10];
+        large[large.length - 1] = 1;
+        Path file = tempDir.resolve("large.doc");
+        Files.write(file, large);
+        try (TikaInputStream content = TikaInputStream.get(new ByteArrayInputStream(large));
+             TikaInputStream fileContent = TikaInputStream.get(file)) {
+            ParseCache.Key key = parseCache.key(content, "config");
+            assertEquals(large.length, key.contentLength());
+            assertArrayEquals(large, content.readAllBytes());
+            assertEquals(key, parseCache.key(fileContent, "config"));
+        }
+    }
+
+    @Test
+    void returnsCachedResultsAndCountsHits(@TempDir Path tempDir) throws Exception {
+        ParseCache parseCache = new ParseCache(tempDir, 1_000_000, 1_000_000);
+        ParseCache.Key key = parseCache.key(TikaInputStream.get(new ByteArrayInputStream(DOC)), "config");
+        assertNull(parseCache.get(key));
+
+        parseCache.put(key, List.of(Map.of("Content-Type", "text/plain", "X-TIKA:content", "The quick brown fox"),
+                Map.of("dc:creator", new String[]{"a", "b"})));
+        List<Map<String, Object>> cached = parseCache.get(key);
+        assertNotNull(cached);
+        assertEquals("text/plain", cached.get(0).get("Content-Type"));
+        assertEquals("The quick brown fox", cached.get(0).get("X-TIKA:content"));
+        assertArrayEquals(new String[]{"a", "b"}, (String[]) cached.get(1).get("dc:creator"));
+
+        assertEquals(1, parseCache.getHitCount());
+        assertEquals(1, parseCache.getMissCount());
+        assertEquals(0.5, parseCache.getHitRatio());
+        assertEquals(DOC.length, parseCache.getBytesSaved());
+
+        // results on disk are found again after a restart
+        ParseCache reopened = new ParseCache(tempDir, 1_000_000, 1_000_000);
+        assertEquals(1, reopened.getEntryCount());
+        assertNotNull(reopened.get(key));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedPastMaxBytes(@TempDir Path tempDir) throws Exception {
+        ParseCache parseCache = new ParseCache(tempDir, 1_000_000, 1_000_000);
+        List<Map<String, Object>> result = List.of(Map.of("X-TIKA:content", "text"));
+        ParseCache.Key first = key(parseCache, "first");
+        parseCache.put(first, result);
+        long entryBytes = parseCache.getSizeBytes();
+
+        parseCache = new ParseCache(tempDir, entryBytes * 2, entryBytes * 2);
+        ParseCache.Key second = key(parseCache, "second");
+        ParseCache.Key third = key(parseCache, "third");
+        parseCache.put(second, result);
+        // first is now more recently used than second
+        assertNotNull(parseCache.get(first));
+        parseCache.put(third, result);
+
+        assertEquals(2, parseCache.getEntryCount());
+        assertEquals(1, parseCache.getEvictionCount());
+        assertNull(parseCache.get(second));
+        assertNotNull(parseCache.get(first));
+        assertNotNull(parseCache.get(third));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(2, files.count());
+        }
+
+        // results larger than maxEntryBytes are not kept
+        ParseCache small = new ParseCache(tempDir.resolve("small"), 1_000_000, 10);
+        ParseCache.Key key = key(small, "first");
+        small.put(key, result);
+        assertEquals(0, small.getEntryCount());
+    }
+
+    private static ParseCache.Key key(ParseCache parseCache, String content) throws Exception {
+        return parseCache.key(TikaInputStream.get(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))), "config");
+    }
+}
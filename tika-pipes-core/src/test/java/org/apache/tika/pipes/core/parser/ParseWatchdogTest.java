@@ -0,0 +1,119 @@
+package org.apache.tika.pipes.core.parser;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.pipes.core.exception.ParseTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParseWatchdogTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ParseWatchdog watchdog;
+
+    @BeforeEach
+    void setUp() {
+        watchdog = new ParseWatchdog();
+        ReflectionTestUtils.setField(watchdog, "taskTimeoutMillis", 500L);
+        ReflectionTestUtils.setField(watchdog, "stuckCheckIntervalMillis", 0L);
+        ReflectionTestUtils.setField(watchdog, "meterRegistry", meterRegistry);
+        watchdog.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        watchdog.destroy();
+    }
+
+    @Test
+    void returnsResult() throws Exception {
+        assertEquals("ok", watchdog.run("fast", () -> "ok", null));
+        assertEquals(0, watchdog.getInFlightCount());
+    }
+
+    @Test
+    void propagatesExceptions() {
+        assertThrows(IOException.class, () -> watchdog.run("io", () -> {
+            throw new IOException("bad stream");
+        }, null));
+        assertThrows(TikaException.class, () -> watchdog.run("tika", () -> {
+            throw new TikaException("bad document");
+        }, null));
+    }
+
+    @Test
+    void interruptsTimedOutParseOnTheCallingThread() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicReference<Thread> parseThread = new AtomicReference<>();
+        ParseTimeoutException e = assertThrows(ParseTimeoutException.class, () -> watchdog.run("slow", () -> {
+            parseThread.set(Thread.currentThread());
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException ie) {
+                interrupted.countDown();
+            }
+            return null;
+        }, () -> closed.set(true)));
+        assertTrue(e.getMessage().contains("timed out"));
+        assertSame(Thread.currentThread(), parseThread.get());
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertTrue(closed.get());
+        assertEquals(1, watchdog.getTimeoutCount());
+        assertEquals(1.0, meterRegistry.get("tika.parse.timeouts").counter().count());
+    }
+
+    @Test
+    void reportsStuckParseUntilItReturns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> future = executorService.submit(() -> watchdog.run("stuck", () -> {
+                // ignores interrupts, like a parser spinning in a tight loop
+                while (true) {
+                    try {
+                        if (release.await(10, TimeUnit.MILLISECONDS)) {
+                            return null;
+                        }
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }, null));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (watchdog.getStuckCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, watchdog.getStuckCount());
+            assertEquals(1.0, meterRegistry.get("tika.parse.stuck").gauge().value());
+            assertFalse(future.isDone());
+
+            release.countDown();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(ParseTimeoutException.class, e.getCause());
+            assertEquals(0, watchdog.getStuckCount());
+            assertEquals(0, watchdog.getInFlightCount());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.apache.tika.pipes.core.parser;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AbstractParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BasicContentHandlerFactory;
+import org.apache.tika.sax.RecursiveParserWrapperHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.xml.sax.ContentHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParserStackTest {
+    private static final int DOCS = 20;
+    private static final byte[] DOC = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void loadsDefaultConfig() throws Exception {
+        ParserStack stack = ParserStack.load(null);
+        assertNull(stack.getTikaConfigPath());
+        assertEquals(-1, stack.getTikaConfigLastModified());
+        assertEquals(1, parse(stack).size());
+    }
+
+    @Test
+    void loadsConfigFromPath(@TempDir Path tempDir) throws Exception {
+        Path tikaConfig = tempDir.resolve("tika-config.xml");
+        Files.writeString(tikaConfig, "<properties><parsers><parser class=\"org.apache.tika.parser.DefaultParser\"/></parsers></properties>");
+        ParserStack stack = ParserStack.load(tikaConfig);
+        assertEquals(tikaConfig, stack.getTikaConfigPath());
+        assertNotNull(stack.getMetadataFilter());
+        assertEquals(1, parse(stack).size());
+    }
+
+    @Test
+    void buildsParsersOnceNotPerDocument(@TempDir Path tempDir) throws Exception {
+        Path tikaConfig = tempDir.resolve("tika-config.xml");
+        Files.writeString(tikaConfig, "<properties><parsers><parser class=\"org.apache.tika.parser.DefaultParser\"/>"
+                + "<parser class=\"" + CountingParser.class.getName() + "\"/></parsers></properties>");
+        int before = CountingParser.INSTANCES.get();
+        ParseService parseService = newParseService(tikaConfig);
+        int built = CountingParser.INSTANCES.get() - before;
+        assertTrue(built > 0);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Map<String, Object>>>> futures = new ArrayList<>();
+            for (int i = 0; i < DOCS; i++) {
+                futures.add(executorService.submit(() -> parseService.parseDocument(new ByteArrayInputStream(DOC), new ParseContext())));
+            }
+            for (Future<List<Map<String, Object>>> future : futures) {
+                List<Map<String, Object>> metadataList = future.get(30, TimeUnit.SECONDS);
+                assertEquals(1, metadataList.size());
+                assertTrue(metadataList.get(0).get(TikaCoreProperties.TIKA_CONTENT.getName()).toString().contains("quick brown fox"));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        // no tika config or parser was built for any of the documents
+        assertEquals(built, CountingParser.INSTANCES.get() - before);
+    }
+
+    private static List<Metadata> parse(ParserStack stack) throws Exception {
+        RecursiveParserWrapperHandler handler = new RecursiveParserWrapperHandler(new BasicContentHandlerFactory(BasicContentHandlerFactory.HANDLER_TYPE.TEXT, -1), -1, stack.getMetadataFilter());
+        try (InputStream is = new ByteArrayInputStream(DOC)) {
+            stack.getRecursiveParserWrapper().parse(is, handler, new Metadata(), new ParseContext());
+        }
+        return handler.getMetadataList();
+    }
+
+    private static ParseService newParseService(Path tikaConfig) throws Exception {
+        ParseWatchdog parseWatchdog = new ParseWatchdog();
+        ReflectionTestUtils.setField(parseWatchdog, "taskTimeoutMillis", 0L);
+        ReflectionTestUtils.setField(parseWatchdog, "stuckCheckIntervalMillis", 0L);
+        parseWatchdog.init();
+        ParseService parseService = new ParseService();
+        ReflectionTestUtils.setField(parseService, "parseWatchdog", parseWatchdog);
+        ReflectionTestUtils.setField(parseService, "tikaConfigPath", tikaConfig.toString());
+        ReflectionTestUtils.setField(parseService, "tikaConfigReloadIntervalMillis", 0L);
+        ReflectionTestUtils.setField(parseService, "taskTimeoutMillis", 0L);
+        ReflectionTestUtils.setField(parseService, "writeLimit", -1);
+        ReflectionTestUtils.setField(parseService, "maxEmbeddedResources", -1);
+        ReflectionTestUtils.setField(parseService, "throwOnWriteLimitReached", false);
+        ReflectionTestUtils.setField(parseService, "skipOcr", true);
+        ReflectionTestUtils.setField(parseService, "parseCacheEnabled", false);
+        ReflectionTestUtils.setField(parseService, "forkParserEnabled", false);
+        parseService.init();
+        return parseService;
+    }
+
+    /**
+     * Counts how often the tika config instantiates its parsers.
+     */
+    public static class CountingParser extends AbstractParser {
+        static final AtomicInteger INSTANCES = new AtomicInteger();
+
+        public CountingParser() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @Override
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Set.of(MediaType.application("x-counting"));
+        }
+
+        @Override
+        public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context) {
+        }
+    }
+}
@@ -37,35 +37,29 @@ import org.apache.tika.client.HttpClientFactory;
 import org.apache.tika.exception.TikaConfigException;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.exception.TikaTimeoutException;
-import org.apache.tika.io.TemporaryResources;
-import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Property;
 import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.pipes.fetchers.atlassianjwt.config.AtlassianJwtFetcherConfig;
 import org.apache.tika.pipes.fetchers.core.Fetcher;
 import org.apache.tika.pipes.fetchers.core.FetcherConfig;
+import org.apache.tika.pipes.fetchers.core.deadline.DeadlineScheduler;
+import org.apache.tika.pipes.fetchers.core.ratelimit.HostLimiter;
+import org.apache.tika.pipes.fetchers.core.spool.Spooler;
 import org.apache.tika.utils.StringUtils;
 import org.pf4j.Extension;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 @Extension
 @Slf4j
@@ -87,6 +81,7 @@ public class AtlassianJwtFetcher implements Fetcher {
     private HttpClient httpClient;
     private HttpClient noCompressHttpClient;
     private AtlassianJwtGenerator jwtGenerator;
+    private HostLimiter hostLimiter;
     private boolean isInit = false;
 
     @Override
@@ -95,14 +90,18 @@ public class AtlassianJwtFetcher implements Fetcher {
             AtlassianJwtFetcherConfig atlassianJwtFetcherConfig = (AtlassianJwtFetcherConfig) fetcherConfig;
             initIfNeeded(atlassianJwtFetcherConfig);
             HttpGet get = new HttpGet(fetchKey);
-            RequestConfig requestConfig = RequestConfig
-                    .custom()
-                    .setMaxRedirects(atlassianJwtFetcherConfig.getMaxRedirects())
-                    .setRedirectsEnabled(atlassianJwtFetcherConfig.getMaxRedirects() > 0)
-                    .build();
-            get.setConfig(requestConfig);
-            putAdditionalHeadersOnRequest(atlassianJwtFetcherConfig, get, fetchKey);
-            return execute(get, atlassianJwtFetcherConfig, fetchMetadata, httpClient, true);
+            long overallTimeout = atlassianJwtFetcherConfig.getOverallTimeout() == null ? -1 : atlassianJwtFetcherConfig.getOverallTimeout();
+            try (HostLimiter.Permit permit = hostLimiter.acquire(get.getURI().getHost(), overallTimeout)) {
+                RequestConfig requestConfig = RequestConfig
+                        .custom()
+                        .setMaxRedirects(atlassianJwtFetcherConfig.getMaxRedirects())
+                        .setRedirectsEnabled(atlassianJwtFetcherConfig.getMaxRedirects() > 0)
+                        .build();
+                get.setConfig(requestConfig);
+                // sign the JWT after waiting for the host, so that the wait does not use up its lifetime
+                putAdditionalHeadersOnRequest(atlassianJwtFetcherConfig, get, fetchKey);
+                return execute(get, atlassianJwtFetcherConfig, fetchMetadata, httpClient, true);
+            }
         } catch (TikaException | IOException | JOSEException | URISyntaxException | NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
@@ -133,22 +132,11 @@ public class AtlassianJwtFetcher implements Fetcher {
     private InputStream execute(HttpGet get, AtlassianJwtFetcherConfig atlassianJwtFetcherConfig, Map<String, Object> fetchMetadata, HttpClient client, boolean retryOnBadLength) throws IOException {
         HttpClientContext context = HttpClientContext.create();
         HttpResponse response = null;
-        final AtomicBoolean timeout = new AtomicBoolean(false);
-        Timer timer = null;
+        DeadlineScheduler.Deadline deadline = null;
         long overallTimeout = atlassianJwtFetcherConfig.getOverallTimeout() == null ? -1 : atlassianJwtFetcherConfig.getOverallTimeout();
         try {
             if (overallTimeout > -1) {
-                TimerTask task = new TimerTask() {
-                    @Override
-                    public void run() {
-                        timeout.set(true);
-                        if (get != null) {
-                            get.abort();
-                        }
-                    }
-                };
-                timer = new Timer(false);
-                timer.schedule(task, overallTimeout);
+                deadline = DeadlineScheduler.shared().schedule(overallTimeout, get::abort);
             }
             response = client.execute(get, context);
 
@@ -156,6 +144,8 @@ public class AtlassianJwtFetcher implements Fetcher {
 
             int code = response.getStatusLine().getStatusCode();
             log.info("Fetch id {} status code {}", get.getURI(), code);
+            Header retryAfter = response.getFirstHeader("Retry-After");
+            hostLimiter.onResponse(get.getURI().getHost(), code, retryAfter == null ? null : retryAfter.getValue());
             if (code < 200 || code > 299) {
                 throw new IOException("bad status code: " + code + " :: " + responseToString(atlassianJwtFetcherConfig, response));
             }
@@ -169,15 +159,14 @@ public class AtlassianJwtFetcher implements Fetcher {
             }
             throw e;
         } catch (IOException e) {
-            if (timeout.get()) {
+            if (deadline != null && deadline.isExpired()) {
                 throw new TikaTimeoutException("Overall timeout after " + overallTimeout + "ms");
             } else {
                 throw e;
             }
         } finally {
-            if (timer != null) {
-                timer.cancel();
-                timer.purge();
+            if (deadline != null) {
+                deadline.close();
             }
             if (response != null) {
                 EntityUtils.consumeQuietly(response.getEntity());
@@ -190,21 +179,13 @@ public class AtlassianJwtFetcher implements Fetcher {
 
     private InputStream spool(AtlassianJwtFetcherConfig atlassianJwtFetcherConfig, InputStream content, Map<String, Object> fetchMetadata) throws IOException {
         long start = System.currentTimeMillis();
-        TemporaryResources tmp = new TemporaryResources();
-        Path tmpFile = tmp.createTempFile();
-        if (atlassianJwtFetcherConfig.getMaxSpoolSize() < 0) {
-            Files.copy(content, tmpFile, StandardCopyOption.REPLACE_EXISTING);
-        } else {
-            try (OutputStream os = Files.newOutputStream(tmpFile)) {
-                long totalRead = IOUtils.copyLarge(content, os, 0, atlassianJwtFetcherConfig.getMaxSpoolSize());
-                if (totalRead == atlassianJwtFetcherConfig.getMaxSpoolSize() && content.read() != -1) {
-                    fetchMetadata.put(HTTP_FETCH_TRUNCATED.getName(), "true");
-                }
-            }
+        Spooler.Spooled spooled = Spooler.forConfig(atlassianJwtFetcherConfig).spool(content, null, atlassianJwtFetcherConfig.getMaxSpoolSize());
+        if (spooled.truncated()) {
+            fetchMetadata.put(HTTP_FETCH_TRUNCATED.getName(), "true");
         }
         long elapsed = System.currentTimeMillis() - start;
-        log.debug("took {} ms to copy to local tmp file", elapsed);
-        return TikaInputStream.get(tmpFile);
+        log.debug("took {} ms to spool {} bytes", elapsed, spooled.length());
+        return spooled.stream();
     }
 
     private void updateMetadata(String url, HttpResponse response, HttpClientContext context, Map<String, Object> fetchMetadata, AtlassianJwtFetcherConfig atlassianJwtFetcherConfig) {
@@ -315,6 +296,8 @@ public class AtlassianJwtFetcher implements Fetcher {
             httpClientFactory.setMaxConnectionsPerRoute(atlassianJwtFetcherConfig.getMaxConnectionsPerRoute());
         }
 
+        hostLimiter = new HostLimiter(atlassianJwtFetcherConfig.getMaxConcurrentRequestsPerHost() == null ? -1 : atlassianJwtFetcherConfig.getMaxConcurrentRequestsPerHost(),
+                atlassianJwtFetcherConfig.getMaxRequestsPerSecondPerHost() == null ? -1 : atlassianJwtFetcherConfig.getMaxRequestsPerSecondPerHost());
         httpClient = httpClientFactory.build();
         HttpClientFactory cp = httpClientFactory.copy();
         cp.setDisableContentCompression(true);
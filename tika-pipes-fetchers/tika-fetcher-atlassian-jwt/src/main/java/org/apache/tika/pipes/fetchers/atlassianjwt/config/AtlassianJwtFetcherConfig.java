@@ -38,6 +38,15 @@ public class AtlassianJwtFetcherConfig extends DefaultFetcherConfig {
     private Long overallTimeout = 120000L;
     private Integer maxErrMsgSize = 10000000;
     private String userAgent;
+    /**
+     * Most requests to one host in flight at once, or -1 for no limit.
+     */
+    private Integer maxConcurrentRequestsPerHost = -1;
+    /**
+     * Most requests started per second to one host, or -1 for no limit. Lowered for a while when the host answers
+     * 429 or 503. A {@code Retry-After} header is honored either way.
+     */
+    private Double maxRequestsPerSecondPerHost = -1.0;
     
     private String sharedSecret;
     private String issuer;
@@ -187,4 +196,22 @@ public class AtlassianJwtFetcherConfig extends DefaultFetcherConfig {
         this.jwtExpiresInSeconds = jwtExpiresInSeconds;
         return this;
     }
-}
\ No newline at end of file
+
+    public Integer getMaxConcurrentRequestsPerHost() {
+        return maxConcurrentRequestsPerHost;
+    }
+
+    public AtlassianJwtFetcherConfig setMaxConcurrentRequestsPerHost(Integer maxConcurrentRequestsPerHost) {
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+        return this;
+    }
+
+    public Double getMaxRequestsPerSecondPerHost() {
+        return maxRequestsPerSecondPerHost;
+    }
+
+    public AtlassianJwtFetcherConfig setMaxRequestsPerSecondPerHost(Double maxRequestsPerSecondPerHost) {
+        this.maxRequestsPerSecondPerHost = maxRequestsPerSecondPerHost;
+        return this;
+    }
+}
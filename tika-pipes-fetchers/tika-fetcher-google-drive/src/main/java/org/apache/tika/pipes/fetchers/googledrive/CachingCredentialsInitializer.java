@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.fetchers.googledrive;
+
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import org.apache.tika.pipes.fetchers.core.oauth.TokenCache;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Authorizes Drive requests with access tokens from the shared {@link TokenCache}, so every fetch acting as the same
+ * user shares one token and it is refreshed before it expires. A request rejected with 401 drops the cached token and
+ * is retried with a new one.
+ */
+class CachingCredentialsInitializer implements HttpRequestInitializer, HttpUnsuccessfulResponseHandler {
+    /**
+     * For tokens that do not say when they expire.
+     */
+    private static final Duration DEFAULT_LIFETIME = Duration.ofMinutes(55);
+
+    private final GoogleCredentials credentials;
+    private final String cacheKey;
+
+    /**
+     * @param credentials credentials already scoped and delegated to the subject user
+     * @param cacheKey    who the credentials authenticate as, such as the service account, subject user and scopes
+     */
+    CachingCredentialsInitializer(GoogleCredentials credentials, String cacheKey) {
+        this.credentials = credentials;
+        this.cacheKey = cacheKey;
+    }
+
+    @Override
+    public void initialize(HttpRequest request) throws IOException {
+        request.getHeaders().setAuthorization("Bearer " + getToken());
+        request.setUnsuccessfulResponseHandler(this);
+    }
+
+    @Override
+    public boolean handleResponse(HttpRequest request, HttpResponse response, boolean supportsRetry) throws IOException {
+        if (!supportsRetry || response.getStatusCode() != HttpStatusCodes.STATUS_CODE_UNAUTHORIZED) {
+            return false;
+        }
+        TokenCache.shared().invalidate(cacheKey);
+        request.getHeaders().setAuthorization("Bearer " + getToken());
+        return true;
+    }
+
+    private String getToken() throws IOException {
+        return TokenCache.shared().getToken(cacheKey, () -> {
+            AccessToken accessToken = credentials.refreshAccessToken();
+            Instant expiresAt = accessToken.getExpirationTime() == null ? Instant.now().plus(DEFAULT_LIFETIME) : accessToken.getExpirationTime().toInstant();
+            return new TokenCache.Token(accessToken.getTokenValue(), expiresAt);
+        }).value();
+    }
+}
@@ -17,105 +17,150 @@
 package org.apache.tika.pipes.fetchers.googledrive;
 
 import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.DriveScopes;
-import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
+import com.google.auth.oauth2.ServiceAccountCredentials;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
 import org.apache.tika.exception.TikaException;
-import org.apache.tika.io.TemporaryResources;
 import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
 import org.apache.tika.pipes.fetchers.core.Fetcher;
 import org.apache.tika.pipes.fetchers.core.FetcherConfig;
+import org.apache.tika.pipes.fetchers.core.oauth.TokenCache;
+import org.apache.tika.pipes.fetchers.core.retry.Retrier;
+import org.apache.tika.pipes.fetchers.core.retry.RetryPolicy;
+import org.apache.tika.pipes.fetchers.core.spool.Spooler;
 import org.apache.tika.pipes.fetchers.googledrive.config.GoogleDriveFetcherConfig;
 import org.pf4j.Extension;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Path;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Extension
 @Slf4j
 public class GoogleDriveFetcher implements Fetcher {
     private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+    private volatile GoogleCredentials baseCredentials;
+    private NetHttpTransport transport;
+    private volatile Retrier retrier;
+    private String scopeKey;
+    private String credentialsHash;
+    /**
+     * Drive clients by the user they act as. Their access tokens come from the shared
+     * {@link TokenCache}.
+     */
+    private final Map<String, Drive> driveServices = new ConcurrentHashMap<>();
+
+    /**
+     * Read the service account key and open the HTTP transport once for all fetches.
+     */
     @Override
-    public InputStream fetch(FetcherConfig fetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) {
+    public synchronized void init(FetcherConfig fetcherConfig) {
+        if (baseCredentials != null) {
+            return;
+        }
         GoogleDriveFetcherConfig googleDriveFetcherConfig = (GoogleDriveFetcherConfig) fetcherConfig;
-        int tries = 0;
-        Exception ex;
-        TemporaryResources tmp;
-        List<Long> throttleSeconds = googleDriveFetcherConfig.getThrottleSeconds();
-        do {
-            long start = System.currentTimeMillis();
+        List<String> scopes = googleDriveFetcherConfig.getScopes();
+        if (scopes == null || scopes.isEmpty()) {
+            scopes = List.of(DriveScopes.DRIVE_READONLY);
+        }
+        retrier = new Retrier(RetryPolicy.forConfig(googleDriveFetcherConfig, googleDriveFetcherConfig.getThrottleSeconds())
+                .noRetryOn(TikaException.class)
+                .noRetryIf(e -> e instanceof HttpResponseException httpResponseException && !RetryPolicy.isRetryableStatus(httpResponseException.getStatusCode())));
+        try {
+            scopeKey = String.join(" ", scopes);
+            credentialsHash = TokenCache.credentialsHash(googleDriveFetcherConfig.getServiceAccountKeyBase64());
+            transport = new NetHttpTransport();
+            baseCredentials = GoogleCredentials
+                    .fromStream(new ByteArrayInputStream(Base64
+                            .getDecoder().decode(googleDriveFetcherConfig.getServiceAccountKeyBase64())))
+                    .createScoped(scopes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Drive getDriveService(GoogleDriveFetcherConfig googleDriveFetcherConfig, String subjectUser) {
+        return driveServices.computeIfAbsent(subjectUser, user -> {
+            String account = baseCredentials instanceof ServiceAccountCredentials serviceAccount ? serviceAccount.getClientEmail() : baseCredentials.toString();
+            final HttpRequestInitializer requestInitializer = new CachingCredentialsInitializer(baseCredentials.createDelegated(user), "google-drive/" + account + "/" + credentialsHash + "/" + user + "/" + scopeKey);
+            return new Drive.Builder(transport, JSON_FACTORY, requestInitializer)
+                    .setApplicationName(googleDriveFetcherConfig.getApplicationName())
+                    .build();
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        driveServices.clear();
+        if (transport != null) {
             try {
-                String[] fetchKeySplit = fetchKey.split(",");
-                if (fetchKeySplit.length != 2) {
-                    throw new TikaException("Invalid fetch key, expected format ${fileId},${subjectUser}: " + fetchKey);
-                }
+                transport.shutdown();
+            } catch (IOException e) {
+                log.warn("Could not shut down the Google Drive HTTP transport", e);
+            }
+        }
+    }
 
-                String fileId = fetchKeySplit[0];
-                String subjectUser = fetchKeySplit[1];
+    @Override
+    public boolean isBackendFailure(Throwable error) {
+        return RetryPolicy.isBackendFailure(error, e -> e instanceof HttpResponseException httpResponseException ? httpResponseException.getStatusCode() : -1);
+    }
 
-                Drive driveService;
-                List<String> scopes = googleDriveFetcherConfig.getScopes();
-                if (scopes == null || scopes.isEmpty()) {
-                    scopes = List.of(DriveScopes.DRIVE_READONLY);
-                }
+    @Override
+    public InputStream fetch(FetcherConfig fetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) {
+        GoogleDriveFetcherConfig googleDriveFetcherConfig = (GoogleDriveFetcherConfig) fetcherConfig;
+        if (baseCredentials == null) {
+            init(googleDriveFetcherConfig);
+        }
+        try {
+            return retrier.execute(() -> {
+                long start = System.currentTimeMillis();
                 try {
-                    GoogleCredentials baseCredentials = GoogleCredentials
-                            .fromStream(new ByteArrayInputStream(Base64
-                                    .getDecoder().decode(googleDriveFetcherConfig.getServiceAccountKeyBase64())))
-                            .createScoped(scopes);
-                    GoogleCredentials delegatedCredentials = baseCredentials.createDelegated(subjectUser);
-                    final HttpRequestInitializer requestInitializer = new HttpCredentialsAdapter(delegatedCredentials);
-                    driveService = new Drive.Builder(
-                            new com.google.api.client.http.javanet.NetHttpTransport(),
-                            JSON_FACTORY,
-                            requestInitializer)
-                            .setApplicationName(googleDriveFetcherConfig.getApplicationName())
-                            .build();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-
-                Drive.Files.Get get = driveService.files().get(fileId);
-                InputStream is = get
-                                             .executeMediaAsInputStream();
+                    String[] fetchKeySplit = fetchKey.split(",");
+                    if (fetchKeySplit.length != 2) {
+                        throw new TikaException("Invalid fetch key, expected format ${fileId},${subjectUser}: " + fetchKey);
+                    }
 
-                if (is == null) {
-                    throw new IOException("Empty input stream when we tried to parse " + fetchKey);
-                }
+                    String fileId = fetchKeySplit[0];
+                    String subjectUser = fetchKeySplit[1];
 
-                if (googleDriveFetcherConfig.isSpoolToTemp()) {
-                    tmp = new TemporaryResources();
-                    Path tmpPath = tmp.createTempFile(fileId + ".dat");
-                    FileUtils.copyInputStreamToFile(is, tmpPath.toFile());
-                    return TikaInputStream.get(tmpPath);
-                }
-                return TikaInputStream.get(is);
+                    Drive driveService = getDriveService(googleDriveFetcherConfig, subjectUser);
+                    Drive.Files.Get get = driveService.files().get(fileId);
+                    InputStream is = get
+                                                 .executeMediaAsInputStream();
 
-            } catch (Exception e) {
-                log.warn("Exception fetching on retry=" + tries, e);
-                ex = e;
-            } finally {
-                long elapsed = System.currentTimeMillis() - start;
-                log.debug("Total to fetch {}", elapsed);
-            }
+                    if (is == null) {
+                        throw new IOException("Empty input stream when we tried to parse " + fetchKey);
+                    }
 
-            log.warn("Sleeping for {} seconds before retry", throttleSeconds.get(tries));
-            try {
-                Thread.sleep(throttleSeconds.get(tries) * 1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        } while (++tries < throttleSeconds.size());
-        throw new RuntimeException("Could not fetch " + fetchKey, ex);
+                    if (googleDriveFetcherConfig.isSpoolToTemp()) {
+                        // the temp file is deleted when the parse closes the stream
+                        try (InputStream content = is) {
+                            Spooler.Spooled spooled = Spooler.forConfig(googleDriveFetcherConfig).spool(content, ".dat");
+                            responseMetadata.put(Metadata.CONTENT_LENGTH, Long.toString(spooled.length()));
+                            return spooled.stream();
+                        }
+                    }
+                    return TikaInputStream.get(is);
+                } finally {
+                    long elapsed = System.currentTimeMillis() - start;
+                    log.debug("Total to fetch {}", elapsed);
+                }
+            }, responseMetadata);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not fetch " + fetchKey, e);
+        }
     }
 }
@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.fetchers.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.exception.TikaConfigException;
+import org.apache.tika.exception.TikaTimeoutException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.pipes.fetchers.core.deadline.DeadlineScheduler;
+import org.apache.tika.pipes.fetchers.core.ratelimit.HostLimiter;
+import org.apache.tika.pipes.fetchers.core.retry.FetchStatusException;
+import org.apache.tika.pipes.fetchers.core.spool.Spooler;
+import org.apache.tika.pipes.fetchers.http.config.HttpFetcherConfig;
+import org.apache.tika.pipes.fetchers.http.config.ProxyConfig;
+import org.apache.tika.utils.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.tika.pipes.fetchers.http.HttpFetcher.HTTP_CONTENT_ENCODING;
+import static org.apache.tika.pipes.fetchers.http.HttpFetcher.HTTP_CONTENT_TYPE;
+import static org.apache.tika.pipes.fetchers.http.HttpFetcher.HTTP_FETCH_TRUNCATED;
+import static org.apache.tika.pipes.fetchers.http.HttpFetcher.HTTP_HEADER_PREFIX;
+import static org.apache.tika.pipes.fetchers.http.HttpFetcher.HTTP_NUM_REDIRECTS;
+import static org.apache.tika.pipes.fetchers.http.HttpFetcher.HTTP_STATUS_CODE;
+import static org.apache.tika.pipes.fetchers.http.HttpFetcher.HTTP_TARGET_URL;
+
+/**
+ * Fetches with the non-blocking JDK HTTP client. Responses are read on a few shared threads and written to the
+ * {@link Spooler} as they arrive, so a slow server does not hold a thread, and HTTP/2 connections are multiplexed.
+ * The overall timeout is a {@link DeadlineScheduler} deadline that cancels the exchange.
+ */
+@Slf4j
+class AsyncHttpDownloader implements AutoCloseable {
+    private final HttpFetcherConfig httpFetcherConfig;
+    private final HostLimiter hostLimiter;
+    private final ExecutorService executorService;
+    private final HttpClient httpClient;
+
+    AsyncHttpDownloader(HttpFetcherConfig httpFetcherConfig, HostLimiter hostLimiter) throws TikaConfigException {
+        String authScheme = httpFetcherConfig.getAuthConfig().getAuthScheme();
+        if (!StringUtils.isBlank(authScheme) && !"basic".equalsIgnoreCase(authScheme)) {
+            throw new TikaConfigException("Only basic auth is supported with asyncClient, not " + authScheme);
+        }
+        this.httpFetcherConfig = httpFetcherConfig;
+        this.hostLimiter = hostLimiter;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(Math.max(1, httpFetcherConfig.getAsyncThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "http-fetcher-async-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .executor(executorService)
+                .version(Boolean.FALSE.equals(httpFetcherConfig.getHttp2Enabled()) ? HttpClient.Version.HTTP_1_1 : HttpClient.Version.HTTP_2)
+                .followRedirects(httpFetcherConfig.getMaxRedirects() > 0 ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER);
+        if (httpFetcherConfig.getConnectTimeout() != null) {
+            builder.connectTimeout(Duration.ofMillis(httpFetcherConfig.getConnectTimeout()));
+        }
+        ProxyConfig proxyConfig = httpFetcherConfig.getProxyConfig();
+        if (!StringUtils.isBlank(proxyConfig.getProxyHost())) {
+            builder.proxy(ProxySelector.of(new InetSocketAddress(proxyConfig.getProxyHost(), proxyConfig.getProxyPort())));
+        }
+        this.httpClient = builder.build();
+    }
+
+    /**
+     * @param headers     request headers, including auth
+     * @param conditional true if the headers include {@code If-None-Match} or {@code If-Modified-Since}
+     */
+    InputStream fetch(String url, Map<String, List<String>> headers, boolean conditional, Spooler spooler, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) throws IOException {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(URI.create(url)).GET();
+        if (httpFetcherConfig.getSocketTimeout() != null) {
+            requestBuilder.timeout(Duration.ofMillis(httpFetcherConfig.getSocketTimeout()));
+        }
+        headers.forEach((name, values) -> values.forEach(value -> requestBuilder.header(name, value)));
+        AtomicReference<SpoolingBodySubscriber> subscriber = new AtomicReference<>();
+        CompletableFuture<HttpResponse<Spooler.Spooled>> future = httpClient.sendAsync(requestBuilder.build(), responseInfo -> {
+            boolean success = responseInfo.statusCode() >= 200 && responseInfo.statusCode() <= 299;
+            long maxLength = success ? httpFetcherConfig.getMaxSpoolSize() : httpFetcherConfig.getMaxErrMsgSize();
+            subscriber.set(new SpoolingBodySubscriber(spooler.newWriter(null, maxLength)));
+            return subscriber.get();
+        });
+        HttpResponse<Spooler.Spooled> response = await(future, subscriber);
+        Spooler.Spooled body = response.body();
+        updateMetadata(url, response, fetchMetadata, responseMetadata);
+        int code = response.statusCode();
+        log.info("Fetch id {} status code {}", url, code);
+        hostLimiter.onResponse(response.request().uri().getHost(), code, response.headers().firstValue("Retry-After").orElse(null));
+        if (HttpFetcher.updateConditionalMetadata(httpFetcherConfig, code, conditional, response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null), responseMetadata)) {
+            body.stream().close();
+            log.info("Fetch id {} not modified", url);
+            return InputStream.nullInputStream();
+        }
+        if (code < 200 || code > 299) {
+            try (InputStream is = body.stream()) {
+                throw new FetchStatusException(code, "bad status code: " + code + " :: " + new String(is.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        if (body.truncated()) {
+            fetchMetadata.put(HTTP_FETCH_TRUNCATED.getName(), "true");
+        }
+        return body.stream();
+    }
+
+    private HttpResponse<Spooler.Spooled> await(CompletableFuture<HttpResponse<Spooler.Spooled>> future, AtomicReference<SpoolingBodySubscriber> subscriber) throws IOException {
+        long overallTimeout = httpFetcherConfig.getOverallTimeout() == null ? -1 : httpFetcherConfig.getOverallTimeout();
+        DeadlineScheduler.Deadline deadline = overallTimeout > -1 ? DeadlineScheduler.shared().schedule(overallTimeout, () -> abort(future, subscriber)) : null;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            abort(future, subscriber);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching", e);
+        } catch (CancellationException | ExecutionException e) {
+            if (deadline != null && deadline.isExpired()) {
+                throw new TikaTimeoutException("Overall timeout after " + overallTimeout + "ms");
+            }
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause() == null ? e : e.getCause());
+        } finally {
+            if (deadline != null) {
+                deadline.close();
+            }
+        }
+    }
+
+    /**
+     * Stop the exchange and make sure that anything it spooled is deleted, even if it finishes anyway.
+     */
+    private static void abort(CompletableFuture<HttpResponse<Spooler.Spooled>> future, AtomicReference<SpoolingBodySubscriber> subscriber) {
+        future.cancel(true);
+        SpoolingBodySubscriber bodySubscriber = subscriber.get();
+        if (bodySubscriber != null) {
+            bodySubscriber.abort();
+        }
+        future.thenAccept(response -> {
+            try {
+                response.body().stream().close();
+            } catch (IOException e) {
+                log.warn("Could not delete spooled content of an aborted fetch", e);
+            }
+        });
+    }
+
+    private void updateMetadata(String url, HttpResponse<?> response, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) {
+        fetchMetadata.put(HTTP_STATUS_CODE.getName(), response.statusCode());
+        response.headers().firstValue("Content-Encoding").ifPresent(value -> fetchMetadata.put(HTTP_CONTENT_ENCODING.getName(), value));
+        response.headers().firstValueAsLong("Content-Length").ifPresent(value -> responseMetadata.put(Metadata.CONTENT_LENGTH, Long.toString(value)));
+        response.headers().firstValue("Content-Type").ifPresent(value -> fetchMetadata.put(HTTP_CONTENT_TYPE.getName(), value));
+        if (httpFetcherConfig.getHttpHeaders() != null) {
+            for (String h : httpFetcherConfig.getHttpHeaders()) {
+                List<String> values = response.headers().allValues(h);
+                if (!values.isEmpty()) {
+                    fetchMetadata.put(HTTP_HEADER_PREFIX + h, new ArrayList<>(values));
+                }
+            }
+        }
+        int redirects = 0;
+        for (HttpResponse<?> previous = response.previousResponse().orElse(null); previous != null; previous = previous.previousResponse().orElse(null)) {
+            redirects++;
+        }
+        fetchMetadata.put(HTTP_NUM_REDIRECTS.getName(), redirects);
+        if (redirects == 0) {
+            fetchMetadata.put(HTTP_TARGET_URL.getName(), url);
+        } else {
+            try {
+                URL u = response.uri().toURL();
+                fetchMetadata.put(HTTP_TARGET_URL.getName(), u.toString());
+                fetchMetadata.put(TikaCoreProperties.RESOURCE_NAME_KEY, u.getFile());
+            } catch (MalformedURLException e) {
+                //swallow
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Writes the body to a {@link Spooler.Writer} one buffer at a time, asking for the next buffer once the last one
+     * has been written. Stops reading once the body is longer than the writer wants.
+     */
+    private static class SpoolingBodySubscriber implements HttpResponse.BodySubscriber<Spooler.Spooled> {
+        private final Spooler.Writer writer;
+        private final CompletableFuture<Spooler.Spooled> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private boolean done;
+
+        SpoolingBodySubscriber(Spooler.Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public CompletionStage<Spooler.Spooled> getBody() {
+            return body;
+        }
+
+        @Override
+        public synchronized void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (done) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public synchronized void onNext(List<ByteBuffer> buffers) {
+            if (done) {
+                return;
+            }
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    if (!writer.write(buffer)) {
+                        subscription.cancel();
+                        complete();
+                        return;
+                    }
+                }
+                subscription.request(1);
+            } catch (IOException | RuntimeException e) {
+                subscription.cancel();
+                fail(e);
+            }
+        }
+
+        @Override
+        public synchronized void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            complete();
+        }
+
+        synchronized void abort() {
+            if (subscription != null && !done) {
+                subscription.cancel();
+            }
+            fail(new CancellationException("Fetch was aborted"));
+        }
+
+        private void complete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                body.complete(writer.finish());
+            } catch (IOException | RuntimeException e) {
+                closeWriter();
+                body.completeExceptionally(e);
+            }
+        }
+
+        private void fail(Throwable throwable) {
+            if (done) {
+                return;
+            }
+            done = true;
+            closeWriter();
+            body.completeExceptionally(throwable);
+        }
+
+        private void closeWriter() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Could not delete spooled content", e);
+            }
+        }
+    }
+}
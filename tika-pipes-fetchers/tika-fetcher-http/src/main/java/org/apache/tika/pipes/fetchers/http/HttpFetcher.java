@@ -38,12 +38,16 @@ import org.apache.tika.client.HttpClientFactory;
 import org.apache.tika.exception.TikaConfigException;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.exception.TikaTimeoutException;
-import org.apache.tika.io.TemporaryResources;
-import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.Property;
 import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.pipes.fetchers.core.Fetcher;
 import org.apache.tika.pipes.fetchers.core.FetcherConfig;
+import org.apache.tika.pipes.fetchers.core.conditional.ConditionalFetch;
+import org.apache.tika.pipes.fetchers.core.deadline.DeadlineScheduler;
+import org.apache.tika.pipes.fetchers.core.ratelimit.HostLimiter;
+import org.apache.tika.pipes.fetchers.core.retry.FetchStatusException;
+import org.apache.tika.pipes.fetchers.core.spool.Spooler;
 import org.apache.tika.pipes.fetchers.http.config.AuthConfig;
 import org.apache.tika.pipes.fetchers.http.config.HttpFetcherConfig;
 import org.apache.tika.pipes.fetchers.http.config.JwtConfig;
@@ -54,24 +58,20 @@ import org.apache.tika.pipes.fetchers.http.jwt.JwtSecretCreds;
 import org.apache.tika.utils.StringUtils;
 import org.pf4j.Extension;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.security.PrivateKey;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Based on Apache httpclient
@@ -111,22 +111,45 @@ public class HttpFetcher implements Fetcher {
     private HttpClient httpClient;
     private HttpClient noCompressHttpClient; // back-off client used disabling compression
     private JwtGenerator jwtGenerator;
-    private boolean isInit = false;
+    private AsyncHttpDownloader asyncHttpDownloader;
+    private HostLimiter hostLimiter;
+    private volatile boolean isInit = false;
+
+    @Override
+    public void init(FetcherConfig fetcherConfig) {
+        try {
+            initIfNeeded((HttpFetcherConfig) fetcherConfig);
+        } catch (TikaConfigException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
     @Override
     public InputStream fetch(FetcherConfig fetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) {
         try {
             HttpFetcherConfig httpFetcherConfig = (HttpFetcherConfig) fetcherConfig;
-            initIfNeeded(httpFetcherConfig);
+            if (!isInit) {
+                initIfNeeded(httpFetcherConfig);
+            }
             HttpGet get = new HttpGet(fetchKey);
-            RequestConfig requestConfig = RequestConfig
-                    .custom()
-                    .setMaxRedirects(httpFetcherConfig.getMaxRedirects())
-                    .setRedirectsEnabled(httpFetcherConfig.getMaxRedirects() > 0)
-                    .build();
-            get.setConfig(requestConfig);
-            putAdditionalHeadersOnRequest(httpFetcherConfig, get);
-            return execute(get, httpFetcherConfig, fetchMetadata, httpClient, true);
+            long overallTimeout = httpFetcherConfig.getOverallTimeout() == null ? -1 : httpFetcherConfig.getOverallTimeout();
+            try (HostLimiter.Permit permit = hostLimiter.acquire(get.getURI().getHost(), overallTimeout)) {
+                Map<String, String> conditionalHeaders = getConditionalHeaders(httpFetcherConfig, fetchMetadata);
+                if (asyncHttpDownloader != null) {
+                    Map<String, List<String>> headers = getAdditionalHeaders(httpFetcherConfig);
+                    conditionalHeaders.forEach((header, value) -> headers.put(header, List.of(value)));
+                    return asyncHttpDownloader.fetch(fetchKey, headers, !conditionalHeaders.isEmpty(), Spooler.forConfig(httpFetcherConfig), fetchMetadata, responseMetadata);
+                }
+                RequestConfig requestConfig = RequestConfig
+                        .custom()
+                        .setMaxRedirects(httpFetcherConfig.getMaxRedirects())
+                        .setRedirectsEnabled(httpFetcherConfig.getMaxRedirects() > 0)
+                        .build();
+                get.setConfig(requestConfig);
+                putAdditionalHeadersOnRequest(httpFetcherConfig, get);
+                conditionalHeaders.forEach(get::setHeader);
+                return execute(get, httpFetcherConfig, fetchMetadata, responseMetadata, httpClient, true);
+            }
         } catch (TikaException | IOException e) {
             throw new RuntimeException(e);
         }
@@ -153,39 +176,109 @@ public class HttpFetcher implements Fetcher {
         }
     }
 
-    private InputStream execute(HttpGet get, HttpFetcherConfig httpFetcherConfig, Map<String, Object> fetchMetadata, HttpClient client, boolean retryOnBadLength) throws IOException {
+    /**
+     * The headers {@link #putAdditionalHeadersOnRequest} puts on a request, for the async client.
+     */
+    private Map<String, List<String>> getAdditionalHeaders(HttpFetcherConfig httpFetcherConfig) throws TikaException {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        if (!StringUtils.isBlank(httpFetcherConfig.getUserAgent())) {
+            headers.put(USER_AGENT, new ArrayList<>(List.of(httpFetcherConfig.getUserAgent())));
+        }
+        if (httpFetcherConfig.getHttpRequestHeaders() != null) {
+            httpFetcherConfig.getHttpRequestHeaders()
+                    .forEach((header, values) -> headers.computeIfAbsent(header, h -> new ArrayList<>()).addAll(values));
+        }
+        if (jwtGenerator != null) {
+            try {
+                headers.put("Authorization", List.of("Bearer " + jwtGenerator.jwt()));
+            } catch (JOSEException e) {
+                throw new TikaException("Could not generate JWT", e);
+            }
+        } else if (!StringUtils.isBlank(httpFetcherConfig.getAuthConfig().getAuthScheme())) {
+            String credentials = httpFetcherConfig.getAuthConfig().getUserName() + ":" + httpFetcherConfig.getAuthConfig().getPassword();
+            headers.put("Authorization", List.of("Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8))));
+        }
+        return headers;
+    }
+
+    @Override
+    public boolean isConditionalFetch(FetcherConfig fetcherConfig) {
+        return Boolean.TRUE.equals(((HttpFetcherConfig) fetcherConfig).getConditionalFetch());
+    }
+
+    /**
+     * {@code If-None-Match} and {@code If-Modified-Since} from the validators the server put in the fetch metadata, if
+     * {@code conditionalFetch} is on.
+     */
+    private static Map<String, String> getConditionalHeaders(HttpFetcherConfig httpFetcherConfig, Map<String, Object> fetchMetadata) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (!Boolean.TRUE.equals(httpFetcherConfig.getConditionalFetch())) {
+            return headers;
+        }
+        String etag = ConditionalFetch.getValidator(fetchMetadata, ConditionalFetch.IF_NONE_MATCH);
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        String lastModified = ConditionalFetch.getValidator(fetchMetadata, ConditionalFetch.IF_MODIFIED_SINCE);
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        return headers;
+    }
+
+    /**
+     * Put the validators of a response in the response metadata, and if the request was conditional and the document
+     * has not changed, mark it as not modified.
+     *
+     * @return true if the document has not changed
+     */
+    static boolean updateConditionalMetadata(HttpFetcherConfig httpFetcherConfig, int code, boolean conditional, String etag, String lastModified, Map<String, Object> responseMetadata) {
+        if (!Boolean.TRUE.equals(httpFetcherConfig.getConditionalFetch())) {
+            return false;
+        }
+        if (!StringUtils.isBlank(etag)) {
+            responseMetadata.put(ConditionalFetch.ETAG, etag);
+        }
+        if (!StringUtils.isBlank(lastModified)) {
+            responseMetadata.put(ConditionalFetch.LAST_MODIFIED, lastModified);
+        }
+        if (conditional && code == 304) {
+            responseMetadata.put(ConditionalFetch.NOT_MODIFIED, true);
+            return true;
+        }
+        return false;
+    }
+
+    private InputStream execute(HttpGet get, HttpFetcherConfig httpFetcherConfig, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata, HttpClient client, boolean retryOnBadLength) throws IOException {
         HttpClientContext context = HttpClientContext.create();
         HttpResponse response = null;
-        final AtomicBoolean timeout = new AtomicBoolean(false);
-        Timer timer = null;
+        DeadlineScheduler.Deadline deadline = null;
         long overallTimeout = httpFetcherConfig.getOverallTimeout() == null ? -1 : httpFetcherConfig.getOverallTimeout();
         try {
             if (overallTimeout > -1) {
-                TimerTask task = new TimerTask() {
-                    @Override
-                    public void run() {
-                        timeout.set(true);
-                        if (get != null) {
-                            get.abort();
-                        }
-
-                    }
-                };
-                timer = new Timer(false);
-                timer.schedule(task, overallTimeout);
+                deadline = DeadlineScheduler.shared().schedule(overallTimeout, get::abort);
             }
             response = client.execute(get, context);
 
             updateMetadata(get
                     .getURI()
-                    .toString(), response, context, fetchMetadata, httpFetcherConfig);
+                    .toString(), response, context, fetchMetadata, responseMetadata, httpFetcherConfig);
 
             int code = response
                     .getStatusLine()
                     .getStatusCode();
             log.info("Fetch id {} status code {}", get.getURI(), code);
+            Header retryAfter = response.getFirstHeader("Retry-After");
+            hostLimiter.onResponse(get.getURI().getHost(), code, retryAfter == null ? null : retryAfter.getValue());
+            Header etag = response.getFirstHeader("ETag");
+            Header lastModified = response.getFirstHeader("Last-Modified");
+            if (updateConditionalMetadata(httpFetcherConfig, code, get.containsHeader("If-None-Match") || get.containsHeader("If-Modified-Since"),
+                    etag == null ? null : etag.getValue(), lastModified == null ? null : lastModified.getValue(), responseMetadata)) {
+                log.info("Fetch id {} not modified", get.getURI());
+                return InputStream.nullInputStream();
+            }
             if (code < 200 || code > 299) {
-                throw new IOException("bad status code: " + code + " :: " + responseToString(httpFetcherConfig, response));
+                throw new FetchStatusException(code, "bad status code: " + code + " :: " + responseToString(httpFetcherConfig, response));
             }
             try (InputStream is = response
                     .getEntity()
@@ -201,19 +294,18 @@ public class HttpFetcher implements Fetcher {
                 //and then compresses the stream. See HTTPCLIENT-2176
                 log.warn("premature end of content-length delimited message; retrying with " + "content compression" +
                         " disabled for {}", get.getURI());
-                return execute(get, httpFetcherConfig, fetchMetadata, noCompressHttpClient, false);
+                return execute(get, httpFetcherConfig, fetchMetadata, responseMetadata, noCompressHttpClient, false);
             }
             throw e;
         } catch (IOException e) {
-            if (timeout.get()) {
+            if (deadline != null && deadline.isExpired()) {
                 throw new TikaTimeoutException("Overall timeout after " + overallTimeout + "ms");
             } else {
                 throw e;
             }
         } finally {
-            if (timer != null) {
-                timer.cancel();
-                timer.purge();
+            if (deadline != null) {
+                deadline.close();
             }
             if (response != null) {
                 //make sure you've consumed the entity
@@ -227,24 +319,16 @@ public class HttpFetcher implements Fetcher {
 
     private InputStream spool(HttpFetcherConfig httpFetcherConfig, InputStream content, Map<String, Object> fetchMetadata) throws IOException {
         long start = System.currentTimeMillis();
-        TemporaryResources tmp = new TemporaryResources();
-        Path tmpFile = tmp.createTempFile();
-        if (httpFetcherConfig.getMaxSpoolSize() < 0) {
-            Files.copy(content, tmpFile, StandardCopyOption.REPLACE_EXISTING);
-        } else {
-            try (OutputStream os = Files.newOutputStream(tmpFile)) {
-                long totalRead = IOUtils.copyLarge(content, os, 0, httpFetcherConfig.getMaxSpoolSize());
-                if (totalRead == httpFetcherConfig.getMaxSpoolSize() && content.read() != -1) {
-                    fetchMetadata.put(HTTP_FETCH_TRUNCATED.getName(), "true");
-                }
-            }
+        Spooler.Spooled spooled = Spooler.forConfig(httpFetcherConfig).spool(content, null, httpFetcherConfig.getMaxSpoolSize());
+        if (spooled.truncated()) {
+            fetchMetadata.put(HTTP_FETCH_TRUNCATED.getName(), "true");
         }
         long elapsed = System.currentTimeMillis() - start;
-        log.debug("took {} ms to copy to local tmp file", elapsed);
-        return TikaInputStream.get(tmpFile);
+        log.debug("took {} ms to spool {} bytes", elapsed, spooled.length());
+        return spooled.stream();
     }
 
-    private void updateMetadata(String url, HttpResponse response, HttpClientContext context, Map<String, Object> fetchMetadata, HttpFetcherConfig httpFetcherConfig) {
+    private void updateMetadata(String url, HttpResponse response, HttpClientContext context, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata, HttpFetcherConfig httpFetcherConfig) {
         if (response == null) {
             return;
         }
@@ -261,6 +345,9 @@ public class HttpFetcher implements Fetcher {
                     .getContentEncoding()
                     .getValue());
         }
+        if (entity != null && entity.getContentLength() > -1) {
+            responseMetadata.put(Metadata.CONTENT_LENGTH, Long.toString(entity.getContentLength()));
+        }
         if (entity != null && entity.getContentType() != null) {
             fetchMetadata.put(HTTP_CONTENT_TYPE.getName(), entity
                     .getContentType()
@@ -336,7 +423,7 @@ public class HttpFetcher implements Fetcher {
         }
     }
 
-    public void initIfNeeded(HttpFetcherConfig httpFetcherConfig) throws TikaConfigException {
+    public synchronized void initIfNeeded(HttpFetcherConfig httpFetcherConfig) throws TikaConfigException {
         if (isInit) {
             return;
         }
@@ -394,9 +481,33 @@ public class HttpFetcher implements Fetcher {
                     .getJwtSecret()
                     .getBytes(StandardCharsets.UTF_8), jwtConfig.getJwtIssuer(), jwtConfig.getJwtSubject(), jwtConfig.getJwtExpiresInSeconds()));
         }
+        hostLimiter = new HostLimiter(httpFetcherConfig.getMaxConcurrentRequestsPerHost() == null ? -1 : httpFetcherConfig.getMaxConcurrentRequestsPerHost(),
+                httpFetcherConfig.getMaxRequestsPerSecondPerHost() == null ? -1 : httpFetcherConfig.getMaxRequestsPerSecondPerHost());
+        if (Boolean.TRUE.equals(httpFetcherConfig.getAsyncClient())) {
+            asyncHttpDownloader = new AsyncHttpDownloader(httpFetcherConfig, hostLimiter);
+        }
         isInit = true;
     }
 
+    /**
+     * Close the connection pools of all clients.
+     */
+    @Override
+    public synchronized void close() {
+        if (asyncHttpDownloader != null) {
+            asyncHttpDownloader.close();
+        }
+        for (HttpClient client : new HttpClient[]{httpClient, noCompressHttpClient}) {
+            if (client instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    log.warn("Could not close http client", e);
+                }
+            }
+        }
+    }
+
     public void checkInitialization(HttpFetcherConfig httpFetcherConfig) throws TikaConfigException {
         if (!StringUtils.isBlank(httpFetcherConfig.getAuthConfig().getJwtConfig().getJwtSecret()) && !StringUtils.isBlank(httpFetcherConfig.getAuthConfig().getJwtConfig().getJwtPrivateKeyBase64())) {
             throw new TikaConfigException("Both JWT secret and JWT private key base 64 were " + "specified. Only one or the other is supported");
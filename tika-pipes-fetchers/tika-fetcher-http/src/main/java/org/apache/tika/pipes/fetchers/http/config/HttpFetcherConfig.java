@@ -40,6 +40,35 @@ public class HttpFetcherConfig extends DefaultFetcherConfig {
     private String userAgent;
     private AuthConfig authConfig;
     private ProxyConfig proxyConfig;
+    /**
+     * Fetch with the non-blocking JDK HTTP client, which keeps many downloads in flight on {@link #asyncThreads}
+     * threads and can use HTTP/2, instead of Apache HttpClient. NTLM auth and {@link #maxConnectionsPerRoute} are not
+     * supported by this client.
+     */
+    private Boolean asyncClient = false;
+    /**
+     * Threads the async client uses to handle responses.
+     */
+    private Integer asyncThreads = 4;
+    /**
+     * Let the async client negotiate HTTP/2. It falls back to HTTP/1.1 for servers that do not support it.
+     */
+    private Boolean http2Enabled = true;
+    /**
+     * Most requests to one host in flight at once, or -1 for no limit.
+     */
+    private Integer maxConcurrentRequestsPerHost = -1;
+    /**
+     * Most requests started per second to one host, or -1 for no limit. Lowered for a while when the host answers
+     * 429 or 503. A {@code Retry-After} header is honored either way.
+     */
+    private Double maxRequestsPerSecondPerHost = -1.0;
+    /**
+     * Send the {@code ETag} and {@code Last-Modified} the server stored after the last successful parse of a URL as
+     * {@code If-None-Match} and {@code If-Modified-Since}, so that a URL that answers 304 is neither downloaded nor
+     * parsed again.
+     */
+    private Boolean conditionalFetch = false;
 
     public Integer getMaxConnectionsPerRoute() {
         return maxConnectionsPerRoute;
@@ -166,4 +195,58 @@ public class HttpFetcherConfig extends DefaultFetcherConfig {
         this.proxyConfig = proxyConfig;
         return this;
     }
+
+    public Boolean getAsyncClient() {
+        return asyncClient;
+    }
+
+    public HttpFetcherConfig setAsyncClient(Boolean asyncClient) {
+        this.asyncClient = asyncClient;
+        return this;
+    }
+
+    public Integer getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public HttpFetcherConfig setAsyncThreads(Integer asyncThreads) {
+        this.asyncThreads = asyncThreads;
+        return this;
+    }
+
+    public Boolean getHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    public HttpFetcherConfig setHttp2Enabled(Boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+        return this;
+    }
+
+    public Integer getMaxConcurrentRequestsPerHost() {
+        return maxConcurrentRequestsPerHost;
+    }
+
+    public HttpFetcherConfig setMaxConcurrentRequestsPerHost(Integer maxConcurrentRequestsPerHost) {
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+        return this;
+    }
+
+    public Double getMaxRequestsPerSecondPerHost() {
+        return maxRequestsPerSecondPerHost;
+    }
+
+    public HttpFetcherConfig setMaxRequestsPerSecondPerHost(Double maxRequestsPerSecondPerHost) {
+        this.maxRequestsPerSecondPerHost = maxRequestsPerSecondPerHost;
+        return this;
+    }
+
+    public Boolean getConditionalFetch() {
+        return conditionalFetch;
+    }
+
+    public HttpFetcherConfig setConditionalFetch(Boolean conditionalFetch) {
+        this.conditionalFetch = conditionalFetch;
+        return this;
+    }
 }
@@ -0,0 +1,115 @@
+package org.apache.tika.pipes.fetchers.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.fetchers.http.config.HttpFetcherConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpFetcherAsyncTest {
+    private HttpServer server;
+    private HttpFetcher httpFetcher;
+    private HttpFetcherConfig httpFetcherConfig;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/doc", exchange -> {
+            byte[] body = bytes(Integer.parseInt(exchange.getRequestURI().getQuery()));
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            byte[] body = "no such document".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        httpFetcherConfig = new HttpFetcherConfig().setAsyncClient(true);
+        httpFetcher = new HttpFetcher();
+        httpFetcher.init(httpFetcherConfig);
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpFetcher.close();
+        server.stop(0);
+    }
+
+    @Test
+    void fetchesSmallAndLargeDocuments() throws Exception {
+        for (int length : new int[]{1000, 1_000_000}) {
+            Map<String, Object> fetchMetadata = new HashMap<>();
+            Map<String, Object> responseMetadata = new HashMap<>();
+            try (InputStream is = httpFetcher.fetch(httpFetcherConfig, url("/doc?" + length), fetchMetadata, responseMetadata)) {
+                assertArrayEquals(bytes(length), is.readAllBytes());
+            }
+            assertEquals(200, fetchMetadata.get(HttpFetcher.HTTP_STATUS_CODE.getName()));
+            assertEquals("application/octet-stream", fetchMetadata.get(HttpFetcher.HTTP_CONTENT_TYPE.getName()));
+            assertEquals(Integer.toString(length), responseMetadata.get(Metadata.CONTENT_LENGTH));
+            assertNull(fetchMetadata.get(HttpFetcher.HTTP_FETCH_TRUNCATED.getName()));
+        }
+    }
+
+    @Test
+    void truncatesAtMaxSpoolSize() throws Exception {
+        httpFetcherConfig.setMaxSpoolSize(500_000L);
+        Map<String, Object> fetchMetadata = new HashMap<>();
+        try (InputStream is = httpFetcher.fetch(httpFetcherConfig, url("/doc?1000000"), fetchMetadata, new HashMap<>())) {
+            assertEquals(500_000, is.readAllBytes().length);
+        }
+        assertEquals("true", fetchMetadata.get(HttpFetcher.HTTP_FETCH_TRUNCATED.getName()));
+    }
+
+    @Test
+    void failsOnBadStatusAndOverallTimeout() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> httpFetcher.fetch(httpFetcherConfig, url("/missing"), new HashMap<>(), new HashMap<>()));
+        assertTrue(e.getMessage().contains("bad status code: 404 :: no such document"), e.getMessage());
+
+        httpFetcherConfig.setOverallTimeout(200L);
+        e = assertThrows(RuntimeException.class, () -> httpFetcher.fetch(httpFetcherConfig, url("/slow"), new HashMap<>(), new HashMap<>()));
+        assertTrue(e.getMessage().contains("Overall timeout after 200ms"), e.getMessage());
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,112 @@
+package org.apache.tika.pipes.fetchers.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.tika.pipes.fetchers.core.conditional.ConditionalFetch;
+import org.apache.tika.pipes.fetchers.http.config.HttpFetcherConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpFetcherConditionalFetchTest {
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+    private static final byte[] BODY = "hello".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/doc", exchange -> {
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(BODY);
+            }
+        });
+        server.createContext("/unconditional", exchange -> {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void reportsValidatorsAndShortCircuitsOnNotModified() throws Exception {
+        for (boolean asyncClient : new boolean[]{false, true}) {
+            HttpFetcherConfig httpFetcherConfig = new HttpFetcherConfig().setAsyncClient(asyncClient).setConditionalFetch(true);
+            try (HttpFetcher httpFetcher = new HttpFetcher()) {
+                httpFetcher.init(httpFetcherConfig);
+                assertTrue(httpFetcher.isConditionalFetch(httpFetcherConfig));
+
+                Map<String, Object> responseMetadata = new HashMap<>();
+                try (InputStream is = httpFetcher.fetch(httpFetcherConfig, url("/doc"), new HashMap<>(), responseMetadata)) {
+                    assertEquals("hello", new String(is.readAllBytes(), StandardCharsets.UTF_8));
+                }
+                assertEquals(ETAG, responseMetadata.get(ConditionalFetch.ETAG));
+                assertEquals(LAST_MODIFIED, responseMetadata.get(ConditionalFetch.LAST_MODIFIED));
+                assertFalse(ConditionalFetch.isNotModified(responseMetadata));
+
+                Map<String, Object> fetchMetadata = new HashMap<>();
+                fetchMetadata.put(ConditionalFetch.IF_NONE_MATCH, ETAG);
+                fetchMetadata.put(ConditionalFetch.IF_MODIFIED_SINCE, LAST_MODIFIED);
+                responseMetadata = new HashMap<>();
+                try (InputStream is = httpFetcher.fetch(httpFetcherConfig, url("/doc"), fetchMetadata, responseMetadata)) {
+                    assertEquals(0, is.readAllBytes().length);
+                }
+                assertTrue(ConditionalFetch.isNotModified(responseMetadata), "asyncClient=" + asyncClient);
+                assertEquals(304, fetchMetadata.get(HttpFetcher.HTTP_STATUS_CODE.getName()));
+            }
+        }
+    }
+
+    @Test
+    void ignoresValidatorsWhenOff() throws Exception {
+        HttpFetcherConfig httpFetcherConfig = new HttpFetcherConfig();
+        try (HttpFetcher httpFetcher = new HttpFetcher()) {
+            httpFetcher.init(httpFetcherConfig);
+            assertFalse(httpFetcher.isConditionalFetch(httpFetcherConfig));
+            Map<String, Object> fetchMetadata = new HashMap<>();
+            fetchMetadata.put(ConditionalFetch.IF_NONE_MATCH, ETAG);
+            Map<String, Object> responseMetadata = new HashMap<>();
+            try (InputStream is = httpFetcher.fetch(httpFetcherConfig, url("/doc"), fetchMetadata, responseMetadata)) {
+                assertEquals("hello", new String(is.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            assertFalse(responseMetadata.containsKey(ConditionalFetch.ETAG));
+
+            // a 304 to a request that was not conditional is still an error
+            httpFetcherConfig.setConditionalFetch(true);
+            RuntimeException e = assertThrows(RuntimeException.class, () -> httpFetcher.fetch(httpFetcherConfig, url("/unconditional"), new HashMap<>(), new HashMap<>()));
+            assertTrue(e.getMessage().contains("bad status code: 304"), e.getMessage());
+        }
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
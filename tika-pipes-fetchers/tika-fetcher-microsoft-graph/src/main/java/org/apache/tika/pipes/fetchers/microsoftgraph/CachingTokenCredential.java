@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.fetchers.microsoftgraph;
+
+import com.azure.core.credential.AccessToken;
+import com.azure.core.credential.TokenCredential;
+import com.azure.core.credential.TokenRequestContext;
+import org.apache.tika.pipes.fetchers.core.oauth.TokenCache;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.ZoneOffset;
+
+/**
+ * Gets Graph access tokens through the shared {@link TokenCache}, so every fetcher using the same tenant, client and
+ * credentials shares one token and it is refreshed before it expires.
+ */
+class CachingTokenCredential implements TokenCredential {
+    private final TokenCredential credential;
+    private final String cacheKey;
+
+    /**
+     * @param credentialsHash {@link TokenCache#credentialsHash} of the secret or certificate
+     */
+    CachingTokenCredential(TokenCredential credential, String tenantId, String clientId, String credentialsHash) {
+        this.credential = credential;
+        this.cacheKey = "microsoft-graph/" + tenantId + "/" + clientId + "/" + credentialsHash;
+    }
+
+    @Override
+    public Mono<AccessToken> getToken(TokenRequestContext request) {
+        return Mono.fromCallable(() -> getTokenSync(request));
+    }
+
+    @Override
+    public AccessToken getTokenSync(TokenRequestContext request) {
+        try {
+            TokenCache.Token token = TokenCache.shared().getToken(cacheKey + "/" + String.join(" ", request.getScopes()), () -> {
+                AccessToken accessToken = credential.getTokenSync(request);
+                return new TokenCache.Token(accessToken.getToken(), accessToken.getExpiresAt().toInstant());
+            });
+            return new AccessToken(token.value(), token.expiresAt().atOffset(ZoneOffset.UTC));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -19,22 +19,24 @@ package org.apache.tika.pipes.fetchers.microsoftgraph;
 import com.azure.identity.ClientCertificateCredentialBuilder;
 import com.azure.identity.ClientSecretCredentialBuilder;
 import com.microsoft.graph.serviceclient.GraphServiceClient;
-import org.apache.commons.io.FileUtils;
+import com.microsoft.kiota.ApiException;
 import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
 import org.apache.tika.pipes.fetchers.core.Fetcher;
 import org.apache.tika.pipes.fetchers.core.FetcherConfig;
+import org.apache.tika.pipes.fetchers.core.oauth.TokenCache;
+import org.apache.tika.pipes.fetchers.core.retry.Retrier;
+import org.apache.tika.pipes.fetchers.core.retry.RetryPolicy;
+import org.apache.tika.pipes.fetchers.core.spool.Spooler;
 import org.apache.tika.pipes.fetchers.microsoftgraph.config.MicrosoftGraphFetcherConfig;
 import org.pf4j.Extension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.util.Base64;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -44,11 +46,25 @@ import java.util.Map;
 @Extension
 public class MicrosoftGraphFetcher implements Fetcher {
     private static final Logger LOGGER = LoggerFactory.getLogger(MicrosoftGraphFetcher.class);
-    private GraphServiceClient graphClient;
+    private volatile GraphServiceClient graphClient;
+    private volatile Retrier retrier;
 
+    /**
+     * Build the credential and Graph client once, so that HTTP connections are reused by every fetch. Access tokens
+     * come from the shared {@link TokenCache}.
+     */
     @Override
-    public InputStream fetch(FetcherConfig fetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) {
-        MicrosoftGraphFetcherConfig config = (MicrosoftGraphFetcherConfig) fetcherConfig;
+    public synchronized void init(FetcherConfig fetcherConfig) {
+        if (graphClient == null) {
+            MicrosoftGraphFetcherConfig config = (MicrosoftGraphFetcherConfig) fetcherConfig;
+            retrier = new Retrier(RetryPolicy.forConfig(config, config.getThrottleSeconds())
+                    .noRetryOn(ArrayIndexOutOfBoundsException.class)
+                    .noRetryIf(e -> e instanceof ApiException apiException && !RetryPolicy.isRetryableStatus(apiException.getResponseStatusCode())));
+            graphClient = newGraphClient(config);
+        }
+    }
+
+    private static GraphServiceClient newGraphClient(MicrosoftGraphFetcherConfig config) {
         if (config.getScopes().isEmpty()) {
             config.getScopes().add("https://graph.microsoft.com/.default");
         }
@@ -56,72 +72,68 @@ public class MicrosoftGraphFetcher implements Fetcher {
                 .getScopes()
                 .toArray(new String[0]);
         if (config.getCertificateBytesBase64() != null) {
-            graphClient = new GraphServiceClient(new ClientCertificateCredentialBuilder()
+            return new GraphServiceClient(new CachingTokenCredential(new ClientCertificateCredentialBuilder()
                     .clientId(config.getClientId())
                     .tenantId(config.getTenantId())
                     .pfxCertificate(new ByteArrayInputStream(Base64.getDecoder().decode(config.getCertificateBytesBase64())))
                     .clientCertificatePassword(config.getCertificatePassword())
-                    .build(), scopes);
+                    .build(), config.getTenantId(), config.getClientId(),
+                    TokenCache.credentialsHash(config.getCertificateBytesBase64(), config.getCertificatePassword())), scopes);
         } else if (config.getClientSecret() != null) {
-            graphClient = new GraphServiceClient(new ClientSecretCredentialBuilder()
+            return new GraphServiceClient(new CachingTokenCredential(new ClientSecretCredentialBuilder()
                     .tenantId(config.getTenantId())
                     .clientId(config.getClientId())
                     .clientSecret(config.getClientSecret())
-                    .build(), scopes);
+                    .build(), config.getTenantId(), config.getClientId(), TokenCache.credentialsHash(config.getClientSecret())), scopes);
         }
-        int tries = 0;
-        Exception ex;
-        List<Long> throttleSeconds = config.getThrottleSeconds() == null ? List.of(0L) : config.getThrottleSeconds();
-        do {
-            long start = System.currentTimeMillis();
-            try {
-                String[] fetchKeySplit = fetchKey.split(",");
-                String siteDriveId = fetchKeySplit[0];
-                String driveItemId = fetchKeySplit[1];
-                InputStream is = graphClient
-                        .drives()
-                        .byDriveId(siteDriveId)
-                        .items()
-                        .byDriveItemId(driveItemId)
-                        .content()
-                        .get();
+        throw new IllegalArgumentException("Either certificateBytesBase64 or clientSecret is required");
+    }
 
-                if (is == null) {
-                    throw new IOException("Empty input stream when we tried to parse " + fetchKey);
-                }
-                if (config.isSpoolToTemp()) {
-                    File tempFile = Files
-                            .createTempFile("spooled-temp", ".dat")
-                            .toFile();
-                    FileUtils.copyInputStreamToFile(is, tempFile);
-                    LOGGER.info("Spooled to temp file {}", tempFile);
-                    return TikaInputStream.get(tempFile.toPath());
-                }
-                return TikaInputStream.get(is);
-            } catch (Exception e) {
-                LOGGER.warn("Exception fetching on retry=" + tries, e);
-                ex = e;
-            } finally {
-                long elapsed = System.currentTimeMillis() - start;
-                LOGGER.debug("Total to fetch {}", elapsed);
-            }
-            handlePostFetch(throttleSeconds, tries);
-        } while (++tries < throttleSeconds.size());
-        throw new RuntimeException("Could not parse " + fetchKey, ex);
+    @Override
+    public boolean isBackendFailure(Throwable error) {
+        return RetryPolicy.isBackendFailure(error, e -> e instanceof ApiException apiException ? apiException.getResponseStatusCode() : -1);
     }
 
-    private static void handlePostFetch(List<Long> throttleSeconds, int tries) {
-        if (throttleSeconds.isEmpty()) {
-            return;
+    @Override
+    public InputStream fetch(FetcherConfig fetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) {
+        MicrosoftGraphFetcherConfig config = (MicrosoftGraphFetcherConfig) fetcherConfig;
+        if (graphClient == null) {
+            init(config);
         }
-        Long secs = throttleSeconds.get(tries);
-        LOGGER.warn("Sleeping for {} seconds before retry", secs);
         try {
-            Thread.sleep(secs);
-        } catch (InterruptedException e) {
-            Thread
-                    .currentThread()
-                    .interrupt();
+            return retrier.execute(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    String[] fetchKeySplit = fetchKey.split(",");
+                    String siteDriveId = fetchKeySplit[0];
+                    String driveItemId = fetchKeySplit[1];
+                    InputStream is = graphClient
+                            .drives()
+                            .byDriveId(siteDriveId)
+                            .items()
+                            .byDriveItemId(driveItemId)
+                            .content()
+                            .get();
+
+                    if (is == null) {
+                        throw new IOException("Empty input stream when we tried to parse " + fetchKey);
+                    }
+                    if (config.isSpoolToTemp()) {
+                        // the temp file is deleted when the parse closes the stream
+                        try (InputStream content = is) {
+                            Spooler.Spooled spooled = Spooler.forConfig(config).spool(content, ".dat");
+                            responseMetadata.put(Metadata.CONTENT_LENGTH, Long.toString(spooled.length()));
+                            return spooled.stream();
+                        }
+                    }
+                    return TikaInputStream.get(is);
+                } finally {
+                    long elapsed = System.currentTimeMillis() - start;
+                    LOGGER.debug("Total to fetch {}", elapsed);
+                }
+            }, responseMetadata);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not parse " + fetchKey, e);
         }
     }
 }
@@ -0,0 +1,199 @@
+package org.apache.tika.pipes.fetchers.s3;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.pipes.fetchers.core.retry.Retrier;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads a byte range of an object with parallel ranged GETs. Each part is streamed straight into its place in the
+ * file through an {@link AsynchronousFileChannel}, so no part is held in memory. Failed parts are retried without
+ * blocking a thread while they wait.
+ */
+@Slf4j
+class S3AsyncDownloader {
+    private final S3AsyncClient s3AsyncClient;
+    private final Retrier retrier;
+    private final long partSize;
+    private final int maxConcurrentParts;
+
+    S3AsyncDownloader(S3AsyncClient s3AsyncClient, Retrier retrier, long partSize, int maxConcurrentParts) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.retrier = retrier;
+        this.partSize = partSize;
+        this.maxConcurrentParts = maxConcurrentParts;
+    }
+
+    /**
+     * @param first first byte of the object to download
+     * @param last  last byte of the object to download, inclusive
+     * @param path  file to write to. Byte {@code first} of the object is written at the start of the file.
+     */
+    void download(String bucket, String key, long first, long last, Path path) throws IOException {
+        long start = System.currentTimeMillis();
+        int parts = (int) ((last - first) / partSize + 1);
+        AtomicInteger nextPart = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < Math.min(parts, maxConcurrentParts); i++) {
+                workers.add(downloadParts(bucket, key, first, last, channel, nextPart, parts, failed));
+            }
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).get();
+        } catch (InterruptedException e) {
+            failed.set(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted downloading " + key, e);
+        } catch (ExecutionException e) {
+            failed.set(true);
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                // keep S3Exception visible to the fetcher's retry handling
+                throw runtimeException;
+            }
+            throw new IOException("Could not download " + key, cause);
+        }
+        log.debug("took {} ms to download {} bytes of {} in {} parts", System.currentTimeMillis() - start, last - first + 1, key, parts);
+    }
+
+    /**
+     * Download parts one after another until none are left, so that each call keeps one GET in flight.
+     */
+    private CompletableFuture<Void> downloadParts(String bucket, String key, long first, long last, AsynchronousFileChannel channel, AtomicInteger nextPart, int parts, AtomicBoolean failed) {
+        int part = nextPart.getAndIncrement();
+        if (part >= parts || failed.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long partFirst = first + part * partSize;
+        long partLast = Math.min(partFirst + partSize - 1, last);
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .range("bytes=" + partFirst + "-" + partLast)
+                .build();
+        // a failed part is retried on its own, rewriting its region of the file
+        return retrier.executeAsync(() -> s3AsyncClient.getObject(request, new FileRegionTransformer(channel, partFirst - first)))
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        failed.set(true);
+                    }
+                })
+                .thenCompose(response -> downloadParts(bucket, key, first, last, channel, nextPart, parts, failed));
+    }
+
+    /**
+     * Writes a response body into a file starting at a given position.
+     */
+    private static class FileRegionTransformer implements AsyncResponseTransformer<GetObjectResponse, GetObjectResponse> {
+        private final AsynchronousFileChannel channel;
+        private final long position;
+        private volatile CompletableFuture<GetObjectResponse> future;
+        private volatile GetObjectResponse response;
+
+        FileRegionTransformer(AsynchronousFileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public CompletableFuture<GetObjectResponse> prepare() {
+            future = new CompletableFuture<>();
+            return future;
+        }
+
+        @Override
+        public void onResponse(GetObjectResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onStream(SdkPublisher<ByteBuffer> publisher) {
+            publisher.subscribe(new Subscriber<ByteBuffer>() {
+                private Subscription subscription;
+                private long writePosition = position;
+                private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(ByteBuffer byteBuffer) {
+                    long at = writePosition;
+                    writePosition += byteBuffer.remaining();
+                    lastWrite = write(byteBuffer, at).whenComplete((v, e) -> {
+                        if (e != null) {
+                            subscription.cancel();
+                            future.completeExceptionally(e);
+                        } else {
+                            subscription.request(1);
+                        }
+                    });
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    future.completeExceptionally(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    lastWrite.whenComplete((v, e) -> {
+                        if (e == null) {
+                            future.complete(response);
+                        }
+                    });
+                }
+            });
+        }
+
+        @Override
+        public void exceptionOccurred(Throwable error) {
+            future.completeExceptionally(error);
+        }
+
+        private CompletableFuture<Void> write(ByteBuffer byteBuffer, long at) {
+            CompletableFuture<Void> written = new CompletableFuture<>();
+            channel.write(byteBuffer, at, null, new CompletionHandler<Integer, Void>() {
+                private long writeAt = at;
+
+                @Override
+                public void completed(Integer bytes, Void attachment) {
+                    writeAt += bytes;
+                    if (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer, writeAt, null, this);
+                    } else {
+                        written.complete(null);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable e, Void attachment) {
+                    written.completeExceptionally(e);
+                }
+            });
+            return written;
+        }
+    }
+}
@@ -11,25 +11,40 @@ import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.WebIdentityTokenFileCredentialsProvider;
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
 
 import java.net.Socket;
 import java.net.URI;
+import java.time.Duration;
 
+/**
+ * The S3 clients for one fetcher config. The clients are thread safe, so every fetch with the config shares them and
+ * their pools of HTTP connections. The async client is only built when {@code asyncDownload} is on.
+ */
 @Slf4j
-public class S3ClientManager {
+public class S3ClientManager implements AutoCloseable {
 
-    private final ThreadLocal<S3Client> s3ClientThreadLocal;
     private final S3FetcherConfig s3FetcherConfig;
+    private final S3Client s3Client;
+    private final S3AsyncClient s3AsyncClient;
 
     public S3ClientManager(S3FetcherConfig s3FetcherConfig) {
         this.s3FetcherConfig = s3FetcherConfig;
-        this.s3ClientThreadLocal = ThreadLocal.withInitial(this::initialize);
+        AwsCredentialsProvider provider = credentialsProvider();
+        if (!StringUtils.isBlank(s3FetcherConfig.getEndpointOverride()) && !testEndpointConnectivity()) {
+            throw new IllegalArgumentException("Failed to connect to the specified S3 endpoint: " + s3FetcherConfig.getEndpointOverride());
+        }
+        this.s3Client = initialize(provider);
+        this.s3AsyncClient = s3FetcherConfig.isAsyncDownload() ? initializeAsync(provider) : null;
     }
 
-    private S3Client initialize() {
+    private AwsCredentialsProvider credentialsProvider() {
         String credentialsProvider = s3FetcherConfig.getCredentialsProvider();
         AwsCredentialsProvider provider;
         if (StringUtils.equals(credentialsProvider, "instance")) {
@@ -47,23 +62,75 @@ public class S3ClientManager {
         } else {
             throw new IllegalArgumentException("credentialsProvider must be set and must be either 'instance', 'identity', 'profile' or 'key_secret'");
         }
+        return provider;
+    }
 
+    private S3Client initialize(AwsCredentialsProvider provider) {
         ClientOverrideConfiguration clientConfiguration = ClientOverrideConfiguration.builder().build();
         S3ClientBuilder s3ClientBuilder = S3Client.builder()
                 .overrideConfiguration(clientConfiguration)
+                .httpClientBuilder(httpClientBuilder())
                 .credentialsProvider(provider)
+                .forcePathStyle(s3FetcherConfig.isPathStyleAccessEnabled())
                 .region(Region.of(s3FetcherConfig.getRegion()));
 
         if (!StringUtils.isBlank(s3FetcherConfig.getEndpointOverride())) {
-           if (!testEndpointConnectivity()) {
-                throw new IllegalArgumentException("Failed to connect to the specified S3 endpoint: " + s3FetcherConfig.getEndpointOverride());
-            }
             s3ClientBuilder.endpointOverride(URI.create(s3FetcherConfig.getEndpointOverride()));
         }
 
         return s3ClientBuilder.build();
     }
 
+    private S3AsyncClient initializeAsync(AwsCredentialsProvider provider) {
+        NettyNioAsyncHttpClient.Builder httpClientBuilder = NettyNioAsyncHttpClient.builder()
+                .tcpKeepAlive(s3FetcherConfig.isTcpKeepAlive());
+        if (s3FetcherConfig.getMaxConnections() > 0) {
+            httpClientBuilder.maxConcurrency(s3FetcherConfig.getMaxConnections());
+        }
+        if (s3FetcherConfig.getConnectionTimeToLiveMillis() > 0) {
+            httpClientBuilder.connectionTimeToLive(Duration.ofMillis(s3FetcherConfig.getConnectionTimeToLiveMillis()));
+        }
+        if (s3FetcherConfig.getConnectionMaxIdleMillis() > 0) {
+            httpClientBuilder.connectionMaxIdleTime(Duration.ofMillis(s3FetcherConfig.getConnectionMaxIdleMillis()));
+        }
+        if (s3FetcherConfig.getConnectionTimeoutMillis() > 0) {
+            httpClientBuilder.connectionTimeout(Duration.ofMillis(s3FetcherConfig.getConnectionTimeoutMillis()));
+        }
+        if (s3FetcherConfig.getSocketTimeoutMillis() > 0) {
+            httpClientBuilder.readTimeout(Duration.ofMillis(s3FetcherConfig.getSocketTimeoutMillis()));
+        }
+        S3AsyncClientBuilder s3AsyncClientBuilder = S3AsyncClient.builder()
+                .httpClientBuilder(httpClientBuilder)
+                .credentialsProvider(provider)
+                .forcePathStyle(s3FetcherConfig.isPathStyleAccessEnabled())
+                .region(Region.of(s3FetcherConfig.getRegion()));
+        if (!StringUtils.isBlank(s3FetcherConfig.getEndpointOverride())) {
+            s3AsyncClientBuilder.endpointOverride(URI.create(s3FetcherConfig.getEndpointOverride()));
+        }
+        return s3AsyncClientBuilder.build();
+    }
+
+    private ApacheHttpClient.Builder httpClientBuilder() {
+        ApacheHttpClient.Builder builder = ApacheHttpClient.builder()
+                .tcpKeepAlive(s3FetcherConfig.isTcpKeepAlive());
+        if (s3FetcherConfig.getMaxConnections() > 0) {
+            builder.maxConnections(s3FetcherConfig.getMaxConnections());
+        }
+        if (s3FetcherConfig.getConnectionTimeToLiveMillis() > 0) {
+            builder.connectionTimeToLive(Duration.ofMillis(s3FetcherConfig.getConnectionTimeToLiveMillis()));
+        }
+        if (s3FetcherConfig.getConnectionMaxIdleMillis() > 0) {
+            builder.connectionMaxIdleTime(Duration.ofMillis(s3FetcherConfig.getConnectionMaxIdleMillis()));
+        }
+        if (s3FetcherConfig.getConnectionTimeoutMillis() > 0) {
+            builder.connectionTimeout(Duration.ofMillis(s3FetcherConfig.getConnectionTimeoutMillis()));
+        }
+        if (s3FetcherConfig.getSocketTimeoutMillis() > 0) {
+            builder.socketTimeout(Duration.ofMillis(s3FetcherConfig.getSocketTimeoutMillis()));
+        }
+        return builder;
+    }
+
     public boolean testEndpointConnectivity() {
         String endpoint = s3FetcherConfig.getEndpointOverride();
         try {
@@ -82,6 +149,24 @@ public class S3ClientManager {
     }
 
     public S3Client getS3Client() {
-        return s3ClientThreadLocal.get();
+        return s3Client;
+    }
+
+    /**
+     * @return the async client, or null if {@code asyncDownload} is off
+     */
+    public S3AsyncClient getS3AsyncClient() {
+        return s3AsyncClient;
+    }
+
+    /**
+     * Close the clients and their connection pools.
+     */
+    @Override
+    public void close() {
+        s3Client.close();
+        if (s3AsyncClient != null) {
+            s3AsyncClient.close();
+        }
     }
 }
@@ -25,27 +25,28 @@ import org.apache.tika.metadata.Metadata;
 import org.apache.tika.pipes.core.exception.TikaPipesException;
 import org.apache.tika.pipes.fetchers.core.Fetcher;
 import org.apache.tika.pipes.fetchers.core.FetcherConfig;
+import org.apache.tika.pipes.fetchers.core.retry.Retrier;
+import org.apache.tika.pipes.fetchers.core.retry.RetryPolicy;
+import org.apache.tika.pipes.fetchers.core.spool.Spooler;
 import org.apache.tika.pipes.fetchers.s3.config.S3FetcherConfig;
 import org.apache.tika.utils.StringUtils;
 import org.pf4j.Extension;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 @Extension
 @Slf4j
@@ -54,7 +55,6 @@ public class S3Fetcher implements Fetcher {
 
     //Do not retry if there's an AmazonS3Exception with this error code
     private static final Set<String> NO_RETRY_ERROR_CODES = new HashSet<>();
-    private static final ConcurrentMap<S3FetcherConfig, S3Client> clientMap = new ConcurrentHashMap<>();
 
     //Keep this private so that we can change as needed.
     //Not sure if it is better to have an accept list (only throttle on too many requests)
@@ -68,66 +68,107 @@ public class S3Fetcher implements Fetcher {
         NO_RETRY_ERROR_CODES.add("InvalidRequest");
     }
 
+    private static final long DEFAULT_ASYNC_THRESHOLD_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_ASYNC_PART_SIZE_BYTES = 8L * 1024 * 1024;
+    private static final int DEFAULT_ASYNC_MAX_CONCURRENT_PARTS = 8;
+
+    private volatile S3ClientManager s3ClientManager;
+    private volatile Retrier retrier;
+
+    /**
+     * Build the S3 client and its connection pool, shared by every fetch with this fetcher's config.
+     */
+    @Override
+    public synchronized void init(FetcherConfig fetcherConfig) {
+        if (s3ClientManager == null) {
+            retrier = new Retrier(retryPolicy((S3FetcherConfig) fetcherConfig));
+            s3ClientManager = new S3ClientManager((S3FetcherConfig) fetcherConfig);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (s3ClientManager != null) {
+            s3ClientManager.close();
+            s3ClientManager = null;
+        }
+    }
+
     @Override
     public InputStream fetch(FetcherConfig fetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) {
         S3FetcherConfig s3FetcherConfig = (S3FetcherConfig) fetcherConfig;
-        List<Long> throttleSeconds = s3FetcherConfig.getThrottleSeconds() == null ? List.of(0L) : s3FetcherConfig.getThrottleSeconds();
-        int tries = 0;
-        IOException ex;
-        do {
-            S3Client s3Client = clientMap.computeIfAbsent(s3FetcherConfig, k -> new S3ClientManager(s3FetcherConfig).getS3Client());
-            String prefix = s3FetcherConfig.getPrefix();
-            if (org.apache.commons.lang3.StringUtils.isNotBlank(prefix) && !prefix.endsWith("/")) {
-                prefix += "/";
-            }
-            String theFetchKey;
-            if (StringUtils.isBlank(prefix) || fetchKey.startsWith(prefix)) {
-                theFetchKey = fetchKey;
-            } else {
-                theFetchKey = prefix + fetchKey;
-            }
-            try {
+        if (s3ClientManager == null) {
+            init(s3FetcherConfig);
+        }
+        S3ClientManager clientManager = s3ClientManager;
+        String prefix = s3FetcherConfig.getPrefix();
+        if (org.apache.commons.lang3.StringUtils.isNotBlank(prefix) && !prefix.endsWith("/")) {
+            prefix += "/";
+        }
+        String theFetchKey;
+        if (StringUtils.isBlank(prefix) || fetchKey.startsWith(prefix)) {
+            theFetchKey = fetchKey;
+        } else {
+            theFetchKey = prefix + fetchKey;
+        }
+        try {
+            return retrier.execute(() -> {
                 long start = System.currentTimeMillis();
-                InputStream is = fetchImpl(s3Client, s3FetcherConfig, theFetchKey, fetchMetadata, responseMetadata);
+                InputStream is = fetchImpl(clientManager, s3FetcherConfig, theFetchKey, fetchMetadata, responseMetadata);
                 long elapsed = System.currentTimeMillis() - start;
                 log.debug("total to fetch {}", elapsed);
                 return is;
-            } catch (S3Exception e) {
-                if (e.awsErrorDetails().errorCode() != null && NO_RETRY_ERROR_CODES.contains(e.awsErrorDetails().errorCode())) {
-                    log.warn("Hit a no retry error code for key {}. Not retrying." + tries, theFetchKey, e);
-                    throw new RuntimeException(e);
-                }
-                log.warn("client exception fetching on retry=" + tries, e);
-                ex = new IOException(e);
-            } catch (SdkException e) {
-                log.warn("client exception fetching on retry=" + tries, e);
-                ex = new IOException(e);
-            } catch (IOException e) {
-                log.warn("client exception fetching on retry=" + tries, e);
-                ex = e;
+            }, responseMetadata);
+        } catch (S3Exception e) {
+            if (isNoRetryError(e)) {
+                log.warn("Hit a no retry error code for key {}. Not retrying.", theFetchKey, e);
+                throw new RuntimeException(e);
             }
-            handlePostFail(throttleSeconds, tries);
-        } while (++tries < throttleSeconds.size());
+            throw new TikaPipesException("S3 operation failed after " + attempts(responseMetadata) + " attempts", new IOException(e));
+        } catch (SdkException e) {
+            throw new TikaPipesException("S3 operation failed after " + attempts(responseMetadata) + " attempts", new IOException(e));
+        } catch (IOException e) {
+            throw new TikaPipesException("S3 operation failed after " + attempts(responseMetadata) + " attempts", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new TikaPipesException("S3 operation failed", e);
+        }
+    }
 
-        throw new TikaPipesException("S3 operation failed after max number of retries " + tries, ex);
+    /**
+     * Retry client errors and I/O errors, but not errors that retrying cannot fix.
+     */
+    private static RetryPolicy retryPolicy(S3FetcherConfig s3FetcherConfig) {
+        return RetryPolicy.forConfig(s3FetcherConfig, s3FetcherConfig.getThrottleSeconds())
+                .noRetryOn(FileTooLongException.class)
+                .noRetryIf(e -> !(e instanceof IOException || e instanceof SdkException) || isNoRetryError(e));
     }
 
-    private static void handlePostFail(List<Long> throttleSeconds, int tries) {
-        if (throttleSeconds.isEmpty()) {
-            return;
-        }
-        log.warn("sleeping for {} seconds before retry", throttleSeconds.get(tries));
-        try {
-            Thread.sleep(throttleSeconds.get(tries));
-        } catch (InterruptedException e) {
-            throw new RuntimeException("interrupted");
-        }
+    @Override
+    public boolean isBackendFailure(Throwable error) {
+        return RetryPolicy.isBackendFailure(error, e -> e instanceof AwsServiceException awsServiceException ? awsServiceException.statusCode() : -1);
+    }
+
+    private static boolean isNoRetryError(Throwable e) {
+        return e instanceof S3Exception s3Exception && s3Exception.awsErrorDetails() != null && NO_RETRY_ERROR_CODES.contains(s3Exception.awsErrorDetails().errorCode());
+    }
+
+    private static int attempts(Map<String, Object> responseMetadata) {
+        return (Integer) responseMetadata.getOrDefault(Retrier.FETCH_RETRIES, 0) + 1;
     }
 
-    private InputStream fetchImpl(S3Client s3Client, S3FetcherConfig s3FetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) throws IOException {
+    private InputStream fetchImpl(S3ClientManager clientManager, S3FetcherConfig s3FetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) throws IOException {
         Long startRange = (Long) fetchMetadata.get("startRange");
         Long endRange = (Long) fetchMetadata.get("endRange");
-        TemporaryResources tmp = null;
+        S3Client s3Client = clientManager.getS3Client();
+        if (s3FetcherConfig.isAsyncDownload() && clientManager.getS3AsyncClient() != null) {
+            InputStream is = fetchInParts(clientManager, s3FetcherConfig, fetchKey, startRange, endRange, fetchMetadata, responseMetadata);
+            if (is != null) {
+                return is;
+            }
+        }
+        ResponseInputStream<GetObjectResponse> s3Object = null;
         String bucket = s3FetcherConfig.getBucket();
         try {
             long start = System.currentTimeMillis();
@@ -139,7 +180,7 @@ public class S3Fetcher implements Fetcher {
             }
             GetObjectRequest objectRequest = builder
                     .build();
-            ResponseInputStream<GetObjectResponse> s3Object = s3Client.getObject(objectRequest);
+            s3Object = s3Client.getObject(objectRequest);
             long length = s3Object.response()
                     .contentLength();
             responseMetadata.put(Metadata.CONTENT_LENGTH, Long.toString(length));
@@ -162,18 +203,66 @@ public class S3Fetcher implements Fetcher {
                 return TikaInputStream.get(s3Object);
             } else {
                 start = System.currentTimeMillis();
-                tmp = new TemporaryResources();
-                Path tmpPath = tmp.createTempFile(FilenameUtils.getSuffixFromPath(fetchKey));
-                Files.copy(s3Object, tmpPath, StandardCopyOption.REPLACE_EXISTING);
-                Metadata metadata = new Metadata();
-                TikaInputStream tis = TikaInputStream.get(tmpPath, metadata, tmp);
-                log.debug("took {} ms to fetch metadata and copy to local tmp file", System.currentTimeMillis() - start);
-                return tis;
+                try (InputStream content = s3Object) {
+                    TikaInputStream tis = Spooler.forConfig(s3FetcherConfig).spool(content, FilenameUtils.getSuffixFromPath(fetchKey)).stream();
+                    log.debug("took {} ms to fetch metadata and spool", System.currentTimeMillis() - start);
+                    return tis;
+                }
             }
         } catch (Throwable e) {
-            if (tmp != null) {
-                tmp.close();
+            if (s3Object != null) {
+                s3Object.abort();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Download the object, or its {@code startRange}-{@code endRange} range, in parallel parts into a temp file.
+     *
+     * @return null if the download is smaller than {@link S3FetcherConfig#getAsyncThresholdBytes()}, so should be
+     * streamed with a single GET
+     */
+    private InputStream fetchInParts(S3ClientManager clientManager, S3FetcherConfig s3FetcherConfig, String fetchKey, Long startRange, Long endRange, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) throws IOException {
+        long start = System.currentTimeMillis();
+        String bucket = s3FetcherConfig.getBucket();
+        HeadObjectResponse head = clientManager.getS3Client().headObject(HeadObjectRequest.builder()
+                .bucket(bucket)
+                .key(fetchKey)
+                .build());
+        long first = 0;
+        long last = head.contentLength() - 1;
+        if (startRange != null && endRange != null && startRange > -1 && endRange > -1) {
+            first = startRange;
+            last = Math.min(endRange, last);
+        }
+        long length = last - first + 1;
+        long threshold = s3FetcherConfig.getAsyncThresholdBytes() > 0 ? s3FetcherConfig.getAsyncThresholdBytes() : DEFAULT_ASYNC_THRESHOLD_BYTES;
+        if (length <= 0 || length < threshold) {
+            return null;
+        }
+        long maxLength = s3FetcherConfig.getMaxLength();
+        if (maxLength > -1 && length > maxLength) {
+            throw new FileTooLongException(length, maxLength);
+        }
+        responseMetadata.put(Metadata.CONTENT_LENGTH, Long.toString(length));
+        if (s3FetcherConfig.isExtractUserMetadata()) {
+            for (Map.Entry<String, String> e : head.metadata()
+                    .entrySet()) {
+                fetchMetadata.put(PREFIX + ":" + e.getKey(), e.getValue());
             }
+        }
+        long partSize = s3FetcherConfig.getAsyncPartSizeBytes() > 0 ? s3FetcherConfig.getAsyncPartSizeBytes() : DEFAULT_ASYNC_PART_SIZE_BYTES;
+        int maxConcurrentParts = s3FetcherConfig.getAsyncMaxConcurrentParts() > 0 ? s3FetcherConfig.getAsyncMaxConcurrentParts() : DEFAULT_ASYNC_MAX_CONCURRENT_PARTS;
+        TemporaryResources tmp = Spooler.forConfig(s3FetcherConfig).newTemporaryResources();
+        try {
+            Path tmpPath = tmp.createTempFile(FilenameUtils.getSuffixFromPath(fetchKey));
+            new S3AsyncDownloader(clientManager.getS3AsyncClient(), retrier, partSize, maxConcurrentParts).download(bucket, fetchKey, first, last, tmpPath);
+            TikaInputStream tis = TikaInputStream.get(tmpPath, new Metadata(), tmp);
+            log.debug("took {} ms to fetch {} bytes in parts to local tmp file", System.currentTimeMillis() - start, length);
+            return tis;
+        } catch (Throwable e) {
+            tmp.close();
             throw e;
         }
     }
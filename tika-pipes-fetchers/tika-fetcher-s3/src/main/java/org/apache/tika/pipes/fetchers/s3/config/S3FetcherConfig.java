@@ -35,7 +35,30 @@ public class S3FetcherConfig extends DefaultFetcherConfig {
     private String commaDelimitedLongs;
     private String prefix;
     private boolean extractUserMetadata;
+    /**
+     * Size of the HTTP connection pool shared by all fetches with this config. 0 for the SDK's default of 50.
+     */
     private int maxConnections;
+    /**
+     * How long a pooled connection may be reused before it is closed, in milliseconds. 0 for no limit.
+     */
+    private long connectionTimeToLiveMillis;
+    /**
+     * How long a pooled connection may sit idle before it is closed, in milliseconds. 0 for the SDK's default.
+     */
+    private long connectionMaxIdleMillis;
+    /**
+     * Send TCP keep-alive packets on pooled connections.
+     */
+    private boolean tcpKeepAlive;
+    /**
+     * 0 for the SDK's default.
+     */
+    private long connectionTimeoutMillis;
+    /**
+     * 0 for the SDK's default.
+     */
+    private long socketTimeoutMillis;
     private String credentialsProvider;
     private long maxLength;
     private String sessionToken;
@@ -43,6 +66,23 @@ public class S3FetcherConfig extends DefaultFetcherConfig {
     private String secretKey;
     private String endpointOverride;
     private boolean pathStyleAccessEnabled;
+    /**
+     * Download objects of at least {@link #asyncThresholdBytes} with parallel ranged GETs into a temp file, instead of
+     * one sequential stream.
+     */
+    private boolean asyncDownload;
+    /**
+     * Smallest object or range to download in parts. 0 for 64 MB.
+     */
+    private long asyncThresholdBytes;
+    /**
+     * Size of each ranged GET. 0 for 8 MB.
+     */
+    private long asyncPartSizeBytes;
+    /**
+     * How many parts of one object to download at once. 0 for 8.
+     */
+    private int asyncMaxConcurrentParts;
     private List<Long> throttleSeconds;
 
     @Override
@@ -54,13 +94,13 @@ public class S3FetcherConfig extends DefaultFetcherConfig {
             return false;
         }
         S3FetcherConfig that = (S3FetcherConfig) o;
-        return spoolToTemp == that.spoolToTemp && extractUserMetadata == that.extractUserMetadata && maxConnections == that.maxConnections && maxLength == that.maxLength && pathStyleAccessEnabled == that.pathStyleAccessEnabled && Objects.equals(region, that.region) && Objects.equals(profile, that.profile) && Objects.equals(bucket, that.bucket) &&
+        return spoolToTemp == that.spoolToTemp && extractUserMetadata == that.extractUserMetadata && maxConnections == that.maxConnections && connectionTimeToLiveMillis == that.connectionTimeToLiveMillis && connectionMaxIdleMillis == that.connectionMaxIdleMillis && tcpKeepAlive == that.tcpKeepAlive && connectionTimeoutMillis == that.connectionTimeoutMillis && socketTimeoutMillis == that.socketTimeoutMillis && maxLength == that.maxLength && pathStyleAccessEnabled == that.pathStyleAccessEnabled && asyncDownload == that.asyncDownload && asyncThresholdBytes == that.asyncThresholdBytes && asyncPartSizeBytes == that.asyncPartSizeBytes && asyncMaxConcurrentParts == that.asyncMaxConcurrentParts && Objects.equals(region, that.region) && Objects.equals(profile, that.profile) && Objects.equals(bucket, that.bucket) &&
                 Objects.equals(commaDelimitedLongs, that.commaDelimitedLongs) && Objects.equals(prefix, that.prefix) && Objects.equals(credentialsProvider, that.credentialsProvider) && Objects.equals(accessKey, that.accessKey) && Objects.equals(secretKey, that.secretKey) && Objects.equals(endpointOverride, that.endpointOverride) &&
                 Objects.equals(throttleSeconds, that.throttleSeconds);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(spoolToTemp, region, profile, bucket, commaDelimitedLongs, prefix, extractUserMetadata, maxConnections, credentialsProvider, maxLength, accessKey, secretKey, endpointOverride, pathStyleAccessEnabled, throttleSeconds);
+        return Objects.hash(spoolToTemp, region, profile, bucket, commaDelimitedLongs, prefix, extractUserMetadata, maxConnections, connectionTimeToLiveMillis, connectionMaxIdleMillis, tcpKeepAlive, connectionTimeoutMillis, socketTimeoutMillis, credentialsProvider, maxLength, accessKey, secretKey, endpointOverride, pathStyleAccessEnabled, asyncDownload, asyncThresholdBytes, asyncPartSizeBytes, asyncMaxConcurrentParts, throttleSeconds);
     }
 }
@@ -0,0 +1,31 @@
+package org.apache.tika.pipes.fetchers.s3;
+
+import org.apache.tika.pipes.fetchers.s3.config.S3FetcherConfig;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class S3ClientManagerTest {
+    @Test
+    void sharesOneClientAcrossThreads() throws Exception {
+        S3FetcherConfig config = new S3FetcherConfig();
+        config.setCredentialsProvider("key_secret");
+        config.setAccessKey("access");
+        config.setSecretKey("secret");
+        config.setRegion("us-east-1");
+        config.setMaxConnections(200);
+        config.setConnectionTimeToLiveMillis(60_000);
+        config.setConnectionMaxIdleMillis(30_000);
+        config.setTcpKeepAlive(true);
+
+        try (S3ClientManager s3ClientManager = new S3ClientManager(config)) {
+            S3Client client = s3ClientManager.getS3Client();
+            S3Client fromOtherThread = CompletableFuture.supplyAsync(s3ClientManager::getS3Client).get(10, TimeUnit.SECONDS);
+            assertSame(client, fromOtherThread);
+        }
+    }
+}
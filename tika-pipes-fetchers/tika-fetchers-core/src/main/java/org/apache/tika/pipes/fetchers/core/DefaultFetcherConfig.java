@@ -10,6 +10,29 @@ public class DefaultFetcherConfig implements FetcherConfig {
 
     private String configJson;
 
+    /**
+     * Where to write temp files of spooled content. Blank for the default temp directory.
+     */
+    private String spoolDirectory;
+    /**
+     * Spooled content of up to this many bytes is kept in a pooled byte array instead of a temp file. 0 to always use
+     * a temp file.
+     */
+    private int inMemorySpoolThresholdBytes = 256 * 1024;
+    /**
+     * How many times fetchers that retry (S3, Microsoft Graph, Google Drive) try a failed fetch again. Ignored if the
+     * fetcher's {@code throttleSeconds} is set.
+     */
+    private int maxRetries;
+    /**
+     * Delay before the first retry. Each retry after it waits twice as long, less some jitter.
+     */
+    private long retryInitialDelayMillis = 1000;
+    /**
+     * Longest delay before a retry.
+     */
+    private long retryMaxDelayMillis = 30_000;
+
     public String getPluginId() {
         return pluginId;
     }
@@ -36,4 +59,49 @@ public class DefaultFetcherConfig implements FetcherConfig {
         this.configJson = configJson;
         return this;
     }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public DefaultFetcherConfig setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+        return this;
+    }
+
+    public int getInMemorySpoolThresholdBytes() {
+        return inMemorySpoolThresholdBytes;
+    }
+
+    public DefaultFetcherConfig setInMemorySpoolThresholdBytes(int inMemorySpoolThresholdBytes) {
+        this.inMemorySpoolThresholdBytes = inMemorySpoolThresholdBytes;
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public DefaultFetcherConfig setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public long getRetryInitialDelayMillis() {
+        return retryInitialDelayMillis;
+    }
+
+    public DefaultFetcherConfig setRetryInitialDelayMillis(long retryInitialDelayMillis) {
+        this.retryInitialDelayMillis = retryInitialDelayMillis;
+        return this;
+    }
+
+    public long getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis;
+    }
+
+    public DefaultFetcherConfig setRetryMaxDelayMillis(long retryMaxDelayMillis) {
+        this.retryMaxDelayMillis = retryMaxDelayMillis;
+        return this;
+    }
 }
@@ -3,8 +3,49 @@ package org.apache.tika.pipes.fetchers.core;
 import java.io.InputStream;
 import java.util.Map;
 
+import org.apache.tika.pipes.fetchers.core.retry.RetryPolicy;
 import org.pf4j.ExtensionPoint;
 
-public interface Fetcher extends ExtensionPoint {
+/**
+ * Fetches documents for one saved fetcher config.
+ * <p>
+ * The server makes one instance per saved config, calls {@link #init(FetcherConfig)} once with that config, uses the
+ * instance for every fetch until the config is saved again or deleted, and then calls {@link #close()}. Clients,
+ * credentials and connection pools should be built in {@code init} so that they are shared by all of its fetches.
+ * {@link #fetch} is called from many threads at once.
+ */
+public interface Fetcher extends ExtensionPoint, AutoCloseable {
+    /**
+     * Build whatever is reused across fetches. Called once, before the first fetch.
+     */
+    default void init(FetcherConfig fetcherConfig) {
+    }
+
     InputStream fetch(FetcherConfig fetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata);
+
+    /**
+     * @return true if fetches with this config send the validators in the fetch metadata and report those of the
+     * response, as described in {@link org.apache.tika.pipes.fetchers.core.conditional.ConditionalFetch}. The server
+     * only looks up stored validators for fetchers that do.
+     */
+    default boolean isConditionalFetch(FetcherConfig fetcherConfig) {
+        return false;
+    }
+
+    /**
+     * @param error what a failed {@link #fetch} threw
+     * @return true if the source is down or overloaded, rather than the request being wrong. Only these failures count
+     * toward the fetcher's circuit breaker. Fetchers whose client exceptions carry a status code should override this
+     * with {@link RetryPolicy#isBackendFailure(Throwable, java.util.function.ToIntFunction)}.
+     */
+    default boolean isBackendFailure(Throwable error) {
+        return RetryPolicy.isBackendFailure(error);
+    }
+
+    /**
+     * Release what {@link #init(FetcherConfig)} built. Called once no fetch is running.
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -0,0 +1,61 @@
+package org.apache.tika.pipes.fetchers.core.conditional;
+
+import java.util.Map;
+
+/**
+ * Keys by which the server and a fetcher that supports conditional fetches, such as the HTTP fetcher, pass validators
+ * to each other, so that a document that has not changed since it was last parsed is not downloaded or parsed again.
+ * <ol>
+ *     <li>The server puts the validators it stored after the last successful parse of the fetch key in the fetch
+ *     metadata as {@link #IF_NONE_MATCH} and {@link #IF_MODIFIED_SINCE}.</li>
+ *     <li>The fetcher sends them with the request. It puts the validators of the response in the response metadata as
+ *     {@link #ETAG} and {@link #LAST_MODIFIED}.</li>
+ *     <li>If the source says the document has not changed, the fetcher returns an empty stream and puts
+ *     {@link #NOT_MODIFIED} in the response metadata, and the server replies without parsing.</li>
+ * </ol>
+ */
+public final class ConditionalFetch {
+    /**
+     * Fetch metadata with the entity tag the document had when it was last parsed.
+     */
+    public static final String IF_NONE_MATCH = "conditional-fetch:if-none-match";
+
+    /**
+     * Fetch metadata with the last modified date, as an HTTP date, the document had when it was last parsed.
+     */
+    public static final String IF_MODIFIED_SINCE = "conditional-fetch:if-modified-since";
+
+    /**
+     * Response metadata with the entity tag of the fetched document.
+     */
+    public static final String ETAG = "conditional-fetch:etag";
+
+    /**
+     * Response metadata with the last modified date, as an HTTP date, of the fetched document.
+     */
+    public static final String LAST_MODIFIED = "conditional-fetch:last-modified";
+
+    /**
+     * Response metadata set to {@code true} if the document has not changed since the validators in the fetch metadata
+     * were stored.
+     */
+    public static final String NOT_MODIFIED = "conditional-fetch:not-modified";
+
+    private ConditionalFetch() {
+    }
+
+    public static boolean isNotModified(Map<String, Object> responseMetadata) {
+        return Boolean.TRUE.equals(responseMetadata.get(NOT_MODIFIED));
+    }
+
+    /**
+     * @return the value as a string, or null if it is missing or blank
+     */
+    public static String getValidator(Map<String, Object> metadata, String key) {
+        Object value = metadata.get(key);
+        if (value == null || value.toString().isBlank()) {
+            return null;
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package org.apache.tika.pipes.fetchers.core.deadline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces overall fetch timeouts for every fetcher on one scheduler thread, instead of a {@link java.util.Timer}
+ * thread per fetch. A fetch schedules a {@link Deadline} with what to do if it runs out of time, such as aborting
+ * the request, and closes it when it finishes. Closed deadlines are removed from the scheduler straight away.
+ * Fetcher plugins share {@link #shared()}.
+ */
+@Slf4j
+public class DeadlineScheduler implements AutoCloseable {
+    private static final DeadlineScheduler SHARED = new DeadlineScheduler();
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicLong scheduledCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    public DeadlineScheduler() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "fetch-deadline-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    public static DeadlineScheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param onExpiry run on the scheduler thread if the deadline is not closed in time. It must not block.
+     */
+    public Deadline schedule(long timeoutMillis, Runnable onExpiry) {
+        scheduledCount.incrementAndGet();
+        Deadline deadline = new Deadline();
+        deadline.future = executor.schedule(() -> deadline.expire(onExpiry), timeoutMillis, TimeUnit.MILLISECONDS);
+        return deadline;
+    }
+
+    /**
+     * @return deadlines scheduled so far
+     */
+    public long getScheduledCount() {
+        return scheduledCount.get();
+    }
+
+    /**
+     * @return deadlines that ran out before they were closed
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * @return deadlines that are neither closed nor expired
+     */
+    public int getPendingCount() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public class Deadline implements AutoCloseable {
+        private final AtomicBoolean expired = new AtomicBoolean();
+        private volatile ScheduledFuture<?> future;
+
+        private Deadline() {
+        }
+
+        private void expire(Runnable onExpiry) {
+            expired.set(true);
+            expiredCount.incrementAndGet();
+            try {
+                onExpiry.run();
+            } catch (RuntimeException e) {
+                log.warn("Could not stop a fetch that ran out of time", e);
+            }
+        }
+
+        /**
+         * @return true if the time ran out, even if the fetch finished while it was being stopped
+         */
+        public boolean isExpired() {
+            return expired.get();
+        }
+
+        /**
+         * Cancel the deadline because the fetch finished.
+         */
+        @Override
+        public void close() {
+            future.cancel(false);
+        }
+    }
+}
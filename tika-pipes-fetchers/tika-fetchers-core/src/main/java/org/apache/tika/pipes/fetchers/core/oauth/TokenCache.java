@@ -0,0 +1,232 @@
+package org.apache.tika.pipes.fetchers.core.oauth;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OAuth access tokens shared by every fetch that authenticates as the same tenant, client and subject user.
+ * <ul>
+ *     <li>Only one thread asks the identity provider for a given key's token at a time. Other threads that need it
+ *     wait for that request instead of sending their own.</li>
+ *     <li>A token is refreshed in the background {@code refreshAhead} before it expires, so fetches do not wait for
+ *     the identity provider while it is still in use.</li>
+ *     <li>A key that has not been used since its last refresh is dropped rather than refreshed again.</li>
+ * </ul>
+ * Fetcher plugins share {@link #shared()}, so saving a fetcher config again does not cost a new token. Keys must
+ * include {@link #credentialsHash} of the credentials, so that a config with the same IDs but a wrong or revoked secret
+ * does not get another config's token.
+ */
+@Slf4j
+public class TokenCache implements AutoCloseable {
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(10);
+
+    private static final TokenCache SHARED = new TokenCache(Duration.ofMinutes(5), Duration.ofSeconds(30), Clock.systemUTC());
+
+    public record Token(String value, Instant expiresAt) {
+    }
+
+    @FunctionalInterface
+    public interface TokenLoader {
+        /**
+         * Ask the identity provider for a new token.
+         */
+        Token load() throws IOException;
+    }
+
+    private final Duration refreshAhead;
+    private final Duration expirySkew;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param refreshAhead how long before a token expires to refresh it in the background
+     * @param expirySkew   how long before a token expires to stop handing it out, for clock skew and request latency
+     */
+    public TokenCache(Duration refreshAhead, Duration expirySkew, Clock clock) {
+        this.refreshAhead = refreshAhead;
+        this.expirySkew = expirySkew;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "oauth-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static TokenCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * A key part that tells configs with the same IDs but different credentials apart, without putting the
+     * credentials themselves in the key.
+     *
+     * @param credentials secrets, certificates, passwords or keys. Nulls are allowed.
+     */
+    public static String credentialsHash(String... credentials) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (String credential : credentials) {
+            // length prefixed, so that moving characters from one credential to the next changes the hash
+            String value = credential == null ? "" : credential;
+            digest.update((value.length() + ":" + value).getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param key    who the token is for, such as {@code tenantId/clientId/credentialsHash/subjectUser/scopes}
+     * @param loader how to get a new token for the key. The latest loader is kept for background refreshes.
+     * @return an access token that is not about to expire
+     */
+    public Token getToken(String key, TokenLoader loader) throws IOException {
+        Entry entry = entries.computeIfAbsent(key, Entry::new);
+        entry.loader = loader;
+        entry.used = true;
+        Token token = entry.token;
+        if (isUsable(token)) {
+            return token;
+        }
+        try {
+            return entry.refresh(false).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Could not get an access token for " + key, e.getCause());
+        }
+    }
+
+    /**
+     * Forget a key's token, such as after the service rejected it.
+     */
+    public void invalidate(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            entry.cancelRefresh();
+        }
+    }
+
+    private boolean isUsable(Token token) {
+        return token != null && clock.instant().isBefore(token.expiresAt().minus(expirySkew));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        entries.clear();
+    }
+
+    private class Entry {
+        private final String key;
+        private volatile TokenLoader loader;
+        private volatile Token token;
+        private volatile boolean used;
+        private CompletableFuture<Token> inFlight;
+        private ScheduledFuture<?> scheduledRefresh;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Load a new token, or join the load that another thread already started.
+         *
+         * @param background true to load even if the current token is still usable
+         */
+        private CompletableFuture<Token> refresh(boolean background) {
+            CompletableFuture<Token> future;
+            synchronized (this) {
+                if (inFlight != null) {
+                    return inFlight;
+                }
+                if (!background && isUsable(token)) {
+                    // another thread finished loading it since the caller looked
+                    return CompletableFuture.completedFuture(token);
+                }
+                inFlight = new CompletableFuture<>();
+                future = inFlight;
+            }
+            try {
+                Token loaded = loader.load();
+                token = loaded;
+                used = false;
+                future.complete(loaded);
+                Duration lifetime = Duration.between(clock.instant(), loaded.expiresAt());
+                if (!lifetime.isNegative()) {
+                    // short-lived tokens are refreshed halfway through their life instead
+                    Duration ahead = refreshAhead.compareTo(lifetime.dividedBy(2)) < 0 ? refreshAhead : lifetime.dividedBy(2);
+                    scheduleRefresh(lifetime.minus(ahead));
+                }
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    inFlight = null;
+                }
+            }
+            return future;
+        }
+
+        private synchronized void scheduleRefresh(Duration delay) {
+            if (scheduler.isShutdown()) {
+                return;
+            }
+            if (scheduledRefresh != null) {
+                scheduledRefresh.cancel(false);
+            }
+            scheduledRefresh = scheduler.schedule(this::refreshInBackground, Math.max(0, delay.toMillis()), TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void cancelRefresh() {
+            if (scheduledRefresh != null) {
+                scheduledRefresh.cancel(false);
+            }
+        }
+
+        private void refreshInBackground() {
+            if (!used) {
+                entries.remove(key, this);
+                log.debug("Dropped unused access token for {}", key);
+                return;
+            }
+            refresh(true).whenComplete((loaded, e) -> {
+                if (e == null) {
+                    return;
+                }
+                Token current = token;
+                if (current != null && clock.instant().plus(RETRY_DELAY).isBefore(current.expiresAt())) {
+                    log.warn("Could not refresh the access token for {}, retrying in {}", key, RETRY_DELAY, e);
+                    scheduleRefresh(RETRY_DELAY);
+                } else {
+                    log.warn("Could not refresh the access token for {}, the next fetch will try again", key, e);
+                }
+            });
+        }
+    }
+}
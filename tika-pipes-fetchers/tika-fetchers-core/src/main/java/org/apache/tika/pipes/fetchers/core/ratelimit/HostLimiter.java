@@ -0,0 +1,227 @@
+package org.apache.tika.pipes.fetchers.core.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how hard one fetcher hits each host, so that a pipe job full of URLs on one host does not get it throttled
+ * while other hosts sit idle.
+ * <ul>
+ *     <li>At most {@code maxConcurrentPerHost} requests to a host are in flight at once.</li>
+ *     <li>Requests to a host start at most {@code maxRequestsPerSecondPerHost} times a second. The rate halves each
+ *     time the host answers 429 or 503 and climbs back a step with each success.</li>
+ *     <li>No request is sent to a host until the time in its last {@code Retry-After} header has passed.</li>
+ * </ul>
+ */
+@Slf4j
+public class HostLimiter {
+    private static final int MIN_RATE_DIVISOR = 64;
+    private static final int RATE_STEPS = 20;
+    private static final Duration IDLE_HOST_EXPIRY = Duration.ofMinutes(10);
+
+    private final int maxConcurrentPerHost;
+    private final double maxRequestsPerSecondPerHost;
+    private final Clock clock;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private volatile long nextExpiryCheckMillis;
+
+    /**
+     * @param maxConcurrentPerHost        requests in flight to one host, or -1 for no limit
+     * @param maxRequestsPerSecondPerHost requests started per second to one host, or -1 for no limit
+     */
+    public HostLimiter(int maxConcurrentPerHost, double maxRequestsPerSecondPerHost) {
+        this(maxConcurrentPerHost, maxRequestsPerSecondPerHost, Clock.systemUTC());
+    }
+
+    HostLimiter(int maxConcurrentPerHost, double maxRequestsPerSecondPerHost, Clock clock) {
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+        this.maxRequestsPerSecondPerHost = maxRequestsPerSecondPerHost;
+        this.clock = clock;
+    }
+
+    public interface Permit extends AutoCloseable {
+        /**
+         * The request is finished, so another may be sent to the host.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Wait until a request may be sent to the host.
+     *
+     * @param maxWaitMillis how long to wait, or -1 for as long as it takes
+     * @throws IOException if the host will not take a request within {@code maxWaitMillis}
+     */
+    public Permit acquire(String host, long maxWaitMillis) throws IOException {
+        expireIdleHosts();
+        Host state = hosts.computeIfAbsent(normalize(host), h -> new Host());
+        long deadline = maxWaitMillis < 0 ? Long.MAX_VALUE : clock.millis() + maxWaitMillis;
+        try {
+            if (state.concurrency != null) {
+                if (maxWaitMillis < 0) {
+                    state.concurrency.acquire();
+                } else if (!state.concurrency.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Timed out after " + maxWaitMillis + " ms waiting for one of " + maxConcurrentPerHost + " connections to " + host);
+                }
+            }
+            try {
+                long startAt = state.reserveStart();
+                if (startAt > deadline) {
+                    throw new IOException("Host " + host + " will not take another request for " + (startAt - clock.millis()) + " ms");
+                }
+                long wait = startAt - clock.millis();
+                if (wait > 0) {
+                    log.debug("Waiting {} ms to fetch from {}", wait, host);
+                    Thread.sleep(wait);
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                state.release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting to fetch from " + host, e);
+        }
+        return state::release;
+    }
+
+    /**
+     * Adapt the host's rate to how it answered.
+     *
+     * @param retryAfter the {@code Retry-After} header, or null
+     */
+    public void onResponse(String host, int statusCode, String retryAfter) {
+        Host state = hosts.get(normalize(host));
+        if (state == null) {
+            return;
+        }
+        Instant until = parseRetryAfter(retryAfter);
+        if (until != null) {
+            state.pauseUntil(until.toEpochMilli());
+        }
+        if (statusCode == 429 || statusCode == 503) {
+            state.slowDown();
+            log.info("{} answered {}, slowing down to {} requests per second", host, statusCode, state.getRate());
+        } else if (statusCode >= 200 && statusCode < 400) {
+            state.speedUp();
+        }
+    }
+
+    Instant parseRetryAfter(String retryAfter) {
+        if (StringUtils.isBlank(retryAfter)) {
+            return null;
+        }
+        String value = retryAfter.trim();
+        if (StringUtils.isNumeric(value)) {
+            return clock.instant().plusSeconds(Long.parseLong(value));
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            log.debug("Could not parse Retry-After: {}", retryAfter);
+            return null;
+        }
+    }
+
+    /**
+     * @return the host's current requests per second, or -1 if there is no limit
+     */
+    double getRate(String host) {
+        Host state = hosts.get(normalize(host));
+        return state == null ? maxRequestsPerSecondPerHost : state.getRate();
+    }
+
+    int size() {
+        return hosts.size();
+    }
+
+    private void expireIdleHosts() {
+        long now = clock.millis();
+        if (now < nextExpiryCheckMillis) {
+            return;
+        }
+        nextExpiryCheckMillis = now + IDLE_HOST_EXPIRY.toMillis();
+        hosts.values().removeIf(host -> host.isIdleSince(now - IDLE_HOST_EXPIRY.toMillis()));
+    }
+
+    private static String normalize(String host) {
+        return StringUtils.defaultString(host).toLowerCase(Locale.ROOT);
+    }
+
+    private class Host {
+        private final Semaphore concurrency;
+        private double rate;
+        private long nextStartMillis;
+        private long pausedUntilMillis;
+        private int inFlight;
+        private long lastUsedMillis;
+
+        private Host() {
+            this.concurrency = maxConcurrentPerHost > 0 ? new Semaphore(maxConcurrentPerHost, true) : null;
+            this.rate = maxRequestsPerSecondPerHost;
+        }
+
+        /**
+         * @return when the caller may start its request
+         */
+        private synchronized long reserveStart() {
+            long now = clock.millis();
+            inFlight++;
+            lastUsedMillis = now;
+            long startAt = Math.max(now, pausedUntilMillis);
+            if (rate > 0) {
+                startAt = Math.max(startAt, nextStartMillis);
+                nextStartMillis = startAt + (long) (1000 / rate);
+            }
+            return startAt;
+        }
+
+        private void release() {
+            synchronized (this) {
+                inFlight--;
+                lastUsedMillis = clock.millis();
+            }
+            if (concurrency != null) {
+                concurrency.release();
+            }
+        }
+
+        private synchronized void pauseUntil(long untilMillis) {
+            pausedUntilMillis = Math.max(pausedUntilMillis, untilMillis);
+        }
+
+        private synchronized void slowDown() {
+            if (maxRequestsPerSecondPerHost > 0) {
+                rate = Math.max(maxRequestsPerSecondPerHost / MIN_RATE_DIVISOR, rate / 2);
+            }
+        }
+
+        private synchronized void speedUp() {
+            if (maxRequestsPerSecondPerHost > 0) {
+                rate = Math.min(maxRequestsPerSecondPerHost, rate + maxRequestsPerSecondPerHost / RATE_STEPS);
+            }
+        }
+
+        private synchronized double getRate() {
+            return rate;
+        }
+
+        private synchronized boolean isIdleSince(long millis) {
+            return inFlight == 0 && lastUsedMillis < millis && pausedUntilMillis < clock.millis();
+        }
+    }
+}
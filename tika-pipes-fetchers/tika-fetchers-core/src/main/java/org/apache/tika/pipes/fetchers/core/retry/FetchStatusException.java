@@ -0,0 +1,20 @@
+package org.apache.tika.pipes.fetchers.core.retry;
+
+import java.io.IOException;
+
+/**
+ * A fetch that the source answered with an error status, such as an HTTP 404 or 503. The status tells a missing
+ * document apart from a source that is down, see {@link RetryPolicy#isBackendFailure(Throwable)}.
+ */
+public class FetchStatusException extends IOException {
+    private final int statusCode;
+
+    public FetchStatusException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
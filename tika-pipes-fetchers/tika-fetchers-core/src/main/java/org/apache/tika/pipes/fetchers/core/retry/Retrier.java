@@ -0,0 +1,197 @@
+package org.apache.tika.pipes.fetchers.core.retry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retries failed fetches by a {@link RetryPolicy}. A fetcher keeps one, so that its retry budget covers all of its
+ * fetches.
+ * <ul>
+ *     <li>{@link #executeAsync} waits between attempts on one scheduler thread shared by every fetcher, so that no
+ *     thread is parked while a retry is pending.</li>
+ *     <li>{@link #execute} is for fetchers that return a stream, whose caller has to wait for the content anyway.</li>
+ * </ul>
+ * Counts of failures and retries across all fetchers are in {@link #stats()}.
+ */
+@Slf4j
+public class Retrier {
+    /**
+     * Response metadata with how many times the fetch was retried, if it was.
+     */
+    public static final String FETCH_RETRIES = "fetch-retries";
+
+    private static final Stats STATS = new Stats();
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "fetch-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RetryPolicy retryPolicy;
+    private double budget;
+
+    public Retrier(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        this.budget = retryPolicy.getBudgetReserve();
+    }
+
+    public static Stats stats() {
+        return STATS;
+    }
+
+    @FunctionalInterface
+    public interface Attempt<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * Run the attempt until it succeeds or the policy says to stop.
+     *
+     * @param responseMetadata gets {@link #FETCH_RETRIES} if the attempt was retried
+     * @throws Exception the error from the last attempt. {@link InterruptedIOException} if interrupted while waiting to
+     *                   retry.
+     */
+    public <T> T execute(Attempt<T> attempt, Map<String, Object> responseMetadata) throws Exception {
+        depositBudget();
+        for (int retries = 0; ; retries++) {
+            try {
+                return attempt.run();
+            } catch (Exception e) {
+                long delayMillis = onFailure(e, retries);
+                if (delayMillis < 0) {
+                    throw e;
+                }
+                responseMetadata.put(FETCH_RETRIES, retries + 1);
+                log.warn("Attempt {} failed, retrying in {} ms", retries + 1, delayMillis, e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delayMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    InterruptedIOException interruptedIOException = new InterruptedIOException("Interrupted waiting to retry");
+                    interruptedIOException.addSuppressed(e);
+                    throw interruptedIOException;
+                }
+            }
+        }
+    }
+
+    /**
+     * Start attempts until one succeeds or the policy says to stop. Retries are started on the shared scheduler
+     * thread, so {@code attempt} must not block.
+     *
+     * @return completes with the result, or with the error from the last attempt
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> attempt) {
+        depositBudget();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attemptAsync(attempt, 0, result);
+        return result;
+    }
+
+    private <T> void attemptAsync(Supplier<CompletableFuture<T>> attempt, int retries, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // cancelled
+            return;
+        }
+        CompletableFuture<T> future;
+        try {
+            future = attempt.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable error = e instanceof CompletionException || e instanceof ExecutionException ? e.getCause() : e;
+            long delayMillis = onFailure(error, retries);
+            if (delayMillis < 0) {
+                result.completeExceptionally(error);
+                return;
+            }
+            log.debug("Attempt {} failed, retrying in {} ms", retries + 1, delayMillis, error);
+            SCHEDULER.schedule(() -> attemptAsync(attempt, retries + 1, result), delayMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * @return how long to wait before the next attempt, or -1 to give up
+     */
+    private long onFailure(Throwable error, int retries) {
+        STATS.failures.incrementAndGet();
+        if (retries >= retryPolicy.maxRetriesFor(error)) {
+            if (retries > 0) {
+                STATS.exhausted.incrementAndGet();
+            }
+            return -1;
+        }
+        if (!withdrawBudget()) {
+            STATS.budgetRejected.incrementAndGet();
+            log.warn("Not retrying because the retry budget is spent: {}", error.toString());
+            return -1;
+        }
+        STATS.retries.incrementAndGet();
+        return retryPolicy.delayMillis(retries + 1, ThreadLocalRandom.current().nextDouble());
+    }
+
+    private synchronized void depositBudget() {
+        budget = Math.min(retryPolicy.getBudgetReserve(), budget + retryPolicy.getBudgetRatio());
+    }
+
+    private synchronized boolean withdrawBudget() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    /**
+     * Counts across every fetcher.
+     */
+    public static class Stats {
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong exhausted = new AtomicLong();
+        private final AtomicLong budgetRejected = new AtomicLong();
+
+        private Stats() {
+        }
+
+        /**
+         * @return failed attempts, whether or not they were retried
+         */
+        public long getFailureCount() {
+            return failures.get();
+        }
+
+        public long getRetryCount() {
+            return retries.get();
+        }
+
+        /**
+         * @return fetches that were retried as many times as their policy allows and still failed
+         */
+        public long getExhaustedCount() {
+            return exhausted.get();
+        }
+
+        /**
+         * @return retries not made because the fetcher's retry budget was spent
+         */
+        public long getBudgetRejectedCount() {
+            return budgetRejected.get();
+        }
+    }
+}
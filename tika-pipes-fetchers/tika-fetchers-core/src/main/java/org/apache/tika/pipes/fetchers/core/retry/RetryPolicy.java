@@ -0,0 +1,216 @@
+package org.apache.tika.pipes.fetchers.core.retry;
+
+import org.apache.tika.exception.TikaTimeoutException;
+import org.apache.tika.pipes.fetchers.core.DefaultFetcherConfig;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * When and how soon a {@link Retrier} tries a failed fetch again.
+ * <ul>
+ *     <li>Retry {@code n} waits {@code initialDelayMillis * 2^(n-1)}, capped at {@code maxDelayMillis}, less a random
+ *     part of up to {@code jitter} of that, so that fetches that failed together do not all retry together. A fixed
+ *     list of delays may be given instead.</li>
+ *     <li>Each error class can have its own number of retries. Errors that retrying cannot fix, such as a missing
+ *     document, should get none.</li>
+ *     <li>Retries also draw on a budget that refills by {@code budgetRatio} for each fetch, up to
+ *     {@code budgetReserve}. When a source is down, this keeps retries to a fraction of fetches instead of multiplying
+ *     the load on it.</li>
+ * </ul>
+ */
+public class RetryPolicy {
+    private int maxRetries;
+    private long initialDelayMillis = 1000;
+    private long maxDelayMillis = 30_000;
+    private double jitter = 0.5;
+    private List<Long> delaysMillis = List.of();
+    private double budgetRatio = 0.2;
+    private int budgetReserve = 20;
+    private final Map<Class<? extends Throwable>, Integer> maxRetriesByErrorClass = new LinkedHashMap<>();
+    private final List<Predicate<Throwable>> noRetryConditions = new ArrayList<>();
+
+    /**
+     * The policy for a fetcher config. A fetcher's {@code throttleSeconds} list, if it has one, keeps its meaning: one
+     * attempt per entry, waiting that many seconds after each failed attempt.
+     *
+     * @param throttleSeconds the fetcher's {@code throttleSeconds}, or null
+     */
+    public static RetryPolicy forConfig(DefaultFetcherConfig fetcherConfig, List<Long> throttleSeconds) {
+        RetryPolicy retryPolicy = new RetryPolicy()
+                .setMaxRetries(fetcherConfig.getMaxRetries())
+                .setInitialDelayMillis(fetcherConfig.getRetryInitialDelayMillis())
+                .setMaxDelayMillis(fetcherConfig.getRetryMaxDelayMillis());
+        if (throttleSeconds != null && !throttleSeconds.isEmpty()) {
+            retryPolicy.setMaxRetries(throttleSeconds.size() - 1)
+                       .setDelaysMillis(throttleSeconds.stream().map(seconds -> seconds * 1000).toList());
+        }
+        return retryPolicy;
+    }
+
+    /**
+     * @return true for HTTP statuses that may go away if the request is retried: 408, 429 and 5xx
+     */
+    public static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * @see #isBackendFailure(Throwable, ToIntFunction)
+     */
+    public static boolean isBackendFailure(Throwable error) {
+        return isBackendFailure(error, cause -> -1);
+    }
+
+    /**
+     * Whether a failed fetch points at the source being down or overloaded, rather than at the request, such as a
+     * missing document or a bad fetch key. The error and its causes are looked at in turn:
+     * <ul>
+     *     <li>The first status code found decides, by {@link #isRetryableStatus(int)}.</li>
+     *     <li>Otherwise a missing or forbidden file, or an interrupted fetch, is not a backend failure.</li>
+     *     <li>Otherwise timeouts and other I/O errors are.</li>
+     * </ul>
+     *
+     * @param statusCode the status code of a cause whose class only the fetcher knows, or -1 if it has none
+     */
+    public static boolean isBackendFailure(Throwable error, ToIntFunction<Throwable> statusCode) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            int status = cause instanceof FetchStatusException fetchStatusException ? fetchStatusException.getStatusCode() : statusCode.applyAsInt(cause);
+            if (status > 0) {
+                return isRetryableStatus(status);
+            }
+        }
+        boolean ioError = false;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FileNotFoundException || cause instanceof NoSuchFileException || cause instanceof AccessDeniedException
+                    || cause instanceof InterruptedException || cause.getClass() == InterruptedIOException.class) {
+                return false;
+            }
+            if (cause instanceof TimeoutException || cause instanceof TikaTimeoutException) {
+                return true;
+            }
+            ioError |= cause instanceof IOException;
+        }
+        return ioError;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param maxRetries retries for errors without a class specific number. 0 to not retry.
+     */
+    public RetryPolicy setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    /**
+     * @param maxRetries retries for errors of this class or a subclass of it. Where more than one class matches, the
+     *                   one set first wins.
+     */
+    public RetryPolicy setMaxRetries(Class<? extends Throwable> errorClass, int maxRetries) {
+        maxRetriesByErrorClass.put(errorClass, Math.max(0, maxRetries));
+        return this;
+    }
+
+    @SafeVarargs
+    public final RetryPolicy noRetryOn(Class<? extends Throwable>... errorClasses) {
+        for (Class<? extends Throwable> errorClass : errorClasses) {
+            setMaxRetries(errorClass, 0);
+        }
+        return this;
+    }
+
+    /**
+     * Do not retry errors that match, such as those with an error code that means retrying cannot help.
+     */
+    public RetryPolicy noRetryIf(Predicate<Throwable> condition) {
+        noRetryConditions.add(condition);
+        return this;
+    }
+
+    public RetryPolicy setInitialDelayMillis(long initialDelayMillis) {
+        this.initialDelayMillis = Math.max(0, initialDelayMillis);
+        return this;
+    }
+
+    public RetryPolicy setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = Math.max(0, maxDelayMillis);
+        return this;
+    }
+
+    /**
+     * @param jitter fraction of each delay that is random, from 0 to 1
+     */
+    public RetryPolicy setJitter(double jitter) {
+        this.jitter = Math.min(1, Math.max(0, jitter));
+        return this;
+    }
+
+    /**
+     * @param delaysMillis delay before each retry, without jitter. Retries past the end of the list use the last one.
+     */
+    public RetryPolicy setDelaysMillis(List<Long> delaysMillis) {
+        this.delaysMillis = List.copyOf(delaysMillis);
+        return this;
+    }
+
+    /**
+     * @param budgetRatio   how much of a retry each fetch earns
+     * @param budgetReserve most retries saved up, which is also how many a fetcher starts with
+     */
+    public RetryPolicy setBudget(double budgetRatio, int budgetReserve) {
+        this.budgetRatio = Math.max(0, budgetRatio);
+        this.budgetReserve = Math.max(0, budgetReserve);
+        return this;
+    }
+
+    double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    int getBudgetReserve() {
+        return budgetReserve;
+    }
+
+    int maxRetriesFor(Throwable error) {
+        if (error instanceof Error || error instanceof InterruptedException || error instanceof InterruptedIOException) {
+            return 0;
+        }
+        for (Predicate<Throwable> condition : noRetryConditions) {
+            if (condition.test(error)) {
+                return 0;
+            }
+        }
+        for (Map.Entry<Class<? extends Throwable>, Integer> entry : maxRetriesByErrorClass.entrySet()) {
+            if (entry.getKey().isInstance(error)) {
+                return entry.getValue();
+            }
+        }
+        return maxRetries;
+    }
+
+    /**
+     * @param retry  1 for the first retry
+     * @param random from 0 to 1
+     */
+    long delayMillis(int retry, double random) {
+        if (!delaysMillis.isEmpty()) {
+            return delaysMillis.get(Math.min(retry, delaysMillis.size()) - 1);
+        }
+        double delay = Math.min(maxDelayMillis, initialDelayMillis * Math.pow(2, Math.min(retry - 1, 30)));
+        return Math.round(delay - delay * jitter * random);
+    }
+}
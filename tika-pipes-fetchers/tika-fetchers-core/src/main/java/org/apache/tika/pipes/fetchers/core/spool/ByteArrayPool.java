@@ -0,0 +1,71 @@
+package org.apache.tika.pipes.fetchers.core.spool;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte arrays for in-memory spooling, reused instead of allocated for every fetch. Arrays come in power of two sizes
+ * and at most {@code maxRetainedBytes} of released arrays are kept for reuse. Fetcher plugins share {@link #shared()}.
+ */
+public class ByteArrayPool {
+    private static final ByteArrayPool SHARED = new ByteArrayPool(64L * 1024 * 1024);
+
+    private final long maxRetainedBytes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final ConcurrentMap<Integer, Queue<byte[]>> freeArrays = new ConcurrentHashMap<>();
+
+    public ByteArrayPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    public static ByteArrayPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return an array of at least {@code minLength} bytes. Its contents are not cleared.
+     */
+    public byte[] acquire(int minLength) {
+        int length = sizeClass(minLength);
+        Queue<byte[]> queue = freeArrays.get(length);
+        byte[] array = queue == null ? null : queue.poll();
+        if (array == null) {
+            return new byte[length];
+        }
+        retainedBytes.addAndGet(-length);
+        return array;
+    }
+
+    /**
+     * Give back an array from {@link #acquire}. It must not be used afterward.
+     */
+    public void release(byte[] array) {
+        int length = array.length;
+        if (Integer.bitCount(length) != 1) {
+            return;
+        }
+        if (retainedBytes.addAndGet(length) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-length);
+            return;
+        }
+        freeArrays.computeIfAbsent(length, l -> new ConcurrentLinkedQueue<>()).offer(array);
+    }
+
+    long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    static int sizeClass(int minLength) {
+        if (minLength <= 1) {
+            return 1;
+        }
+        if (minLength > 1 << 30) {
+            // too big for a power of two array
+            return minLength;
+        }
+        return Integer.highestOneBit(minLength - 1) << 1;
+    }
+}
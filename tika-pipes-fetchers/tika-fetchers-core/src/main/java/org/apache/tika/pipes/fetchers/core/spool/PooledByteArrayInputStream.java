@@ -0,0 +1,89 @@
+package org.apache.tika.pipes.fetchers.core.spool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * Reads a byte array from a {@link ByteArrayPool} and gives it back to the pool when closed.
+ * <p>
+ * A parse that times out has its stream closed by the watchdog while its thread, if the parser ignores interrupts, may
+ * still be reading it, and the next fetch may then be given the same array. So reads and close take the same lock,
+ * close waits for a read in progress, and reads after close throw instead of seeing another document's bytes.
+ */
+final class PooledByteArrayInputStream extends InputStream {
+    private final ByteArrayPool byteArrayPool;
+    private byte[] array;
+    private final int length;
+    private int position;
+    private int mark;
+
+    PooledByteArrayInputStream(ByteArrayPool byteArrayPool, byte[] array, int length) {
+        this.byteArrayPool = byteArrayPool;
+        this.array = array;
+        this.length = length;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        ensureOpen();
+        return position < length ? array[position++] & 0xff : -1;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        ensureOpen();
+        if (position >= length) {
+            return len == 0 ? 0 : -1;
+        }
+        int count = Math.min(len, length - position);
+        System.arraycopy(array, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public synchronized long skip(long n) throws IOException {
+        ensureOpen();
+        long count = Math.max(0, Math.min(n, length - position));
+        position += (int) count;
+        return count;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        ensureOpen();
+        return length - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = position;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        ensureOpen();
+        position = mark;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (array != null) {
+            byteArrayPool.release(array);
+            array = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (array == null) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
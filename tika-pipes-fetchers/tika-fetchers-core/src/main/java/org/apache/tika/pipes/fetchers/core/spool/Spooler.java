@@ -0,0 +1,276 @@
+package org.apache.tika.pipes.fetchers.core.spool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.fetchers.core.DefaultFetcherConfig;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Copies fetched content somewhere it can be read more than once while it is parsed.
+ * <ul>
+ *     <li>Content of at most {@code inMemoryThresholdBytes} is kept in a byte array from the shared
+ *     {@link ByteArrayPool}, so small documents cost no temp file. The array goes back to the pool when the returned
+ *     stream is closed, and the stream cannot be read after that, even by a parse that timed out but is still
+ *     running.</li>
+ *     <li>Larger content is written to a temp file in {@code spoolDirectory} with {@link FileChannel#transferFrom},
+ *     which copies through a direct buffer instead of a heap buffer per fetch.</li>
+ *     <li>The temp file is deleted when the returned stream is closed, which the parse does when it finishes.</li>
+ * </ul>
+ */
+@Slf4j
+public class Spooler {
+    private static final long TRANSFER_CHUNK_BYTES = 8L * 1024 * 1024;
+
+    private final Path spoolDirectory;
+    private final int inMemoryThresholdBytes;
+    private final ByteArrayPool byteArrayPool;
+
+    /**
+     * @param spoolDirectory         where to write temp files, or null for the default temp directory
+     * @param inMemoryThresholdBytes content of up to this many bytes is kept in memory. 0 to always use a temp file.
+     */
+    public Spooler(Path spoolDirectory, int inMemoryThresholdBytes) {
+        this(spoolDirectory, inMemoryThresholdBytes, ByteArrayPool.shared());
+    }
+
+    public Spooler(Path spoolDirectory, int inMemoryThresholdBytes, ByteArrayPool byteArrayPool) {
+        this.spoolDirectory = spoolDirectory;
+        this.inMemoryThresholdBytes = Math.max(0, inMemoryThresholdBytes);
+        this.byteArrayPool = byteArrayPool;
+    }
+
+    public static Spooler forConfig(DefaultFetcherConfig fetcherConfig) {
+        Path spoolDirectory = StringUtils.isBlank(fetcherConfig.getSpoolDirectory()) ? null : Paths.get(fetcherConfig.getSpoolDirectory());
+        return new Spooler(spoolDirectory, fetcherConfig.getInMemorySpoolThresholdBytes());
+    }
+
+    /**
+     * The spooled content.
+     *
+     * @param length    how many bytes were spooled
+     * @param truncated true if the content was longer than the {@code maxLength} it was spooled with
+     */
+    public record Spooled(TikaInputStream stream, long length, boolean truncated) {
+    }
+
+    /**
+     * Spool all of the content. Does not close it.
+     *
+     * @param suffix temp file suffix such as {@code .pdf}, or null
+     */
+    public Spooled spool(InputStream content, String suffix) throws IOException {
+        return spool(content, suffix, -1);
+    }
+
+    /**
+     * Spool the content, up to {@code maxLength} bytes. Does not close it.
+     *
+     * @param suffix    temp file suffix such as {@code .pdf}, or null
+     * @param maxLength most bytes to spool, or -1 for no limit
+     */
+    public Spooled spool(InputStream content, String suffix, long maxLength) throws IOException {
+        long limit = maxLength < 0 ? Long.MAX_VALUE : maxLength;
+        int headLength = (int) Math.min(inMemoryThresholdBytes, limit);
+        if (headLength == 0 && inMemoryThresholdBytes == 0) {
+            return spoolToFile(content, suffix, limit, null, 0);
+        }
+        byte[] head = byteArrayPool.acquire(headLength);
+        boolean inMemory = false;
+        try {
+            int read = content.readNBytes(head, 0, headLength);
+            if (read < headLength || read == limit) {
+                // all of it, or all that is wanted, fit in memory
+                boolean truncated = read == limit && content.read() != -1;
+                Spooled spooled = new Spooled(inMemory(head, read), read, truncated);
+                inMemory = true;
+                return spooled;
+            }
+            return spoolToFile(content, suffix, limit, head, read);
+        } finally {
+            if (!inMemory) {
+                byteArrayPool.release(head);
+            }
+        }
+    }
+
+    private TikaInputStream inMemory(byte[] array, int length) {
+        return TikaInputStream.get(new PooledByteArrayInputStream(byteArrayPool, array, length), new TemporaryResources(), new Metadata());
+    }
+
+    /**
+     * @param head the first bytes of the content, already read, or null
+     */
+    private Spooled spoolToFile(InputStream content, String suffix, long limit, byte[] head, int headLength) throws IOException {
+        long start = System.currentTimeMillis();
+        TemporaryResources tmp = newTemporaryResources();
+        try {
+            Path tmpFile = tmp.createTempFile(suffix);
+            long length = headLength;
+            try (FileChannel out = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+                if (headLength > 0) {
+                    ByteBuffer buffer = ByteBuffer.wrap(head, 0, headLength);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                }
+                length += transfer(content, out, length, limit - length);
+            }
+            boolean truncated = length == limit && content.read() != -1;
+            log.debug("took {} ms to spool {} bytes to {}", System.currentTimeMillis() - start, length, tmpFile);
+            return new Spooled(TikaInputStream.get(tmpFile, new Metadata(), tmp), length, truncated);
+        } catch (IOException | RuntimeException e) {
+            tmp.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Temporary resources whose temp files go in the spool directory, for fetchers that write files themselves.
+     */
+    public TemporaryResources newTemporaryResources() throws IOException {
+        TemporaryResources tmp = new TemporaryResources();
+        if (spoolDirectory != null) {
+            Files.createDirectories(spoolDirectory);
+            tmp.setTemporaryFileDirectory(spoolDirectory);
+        }
+        return tmp;
+    }
+
+    /**
+     * For content that arrives in buffers, such as from a non-blocking HTTP client, rather than as a stream.
+     *
+     * @param suffix    temp file suffix such as {@code .pdf}, or null
+     * @param maxLength most bytes to spool, or -1 for no limit
+     */
+    public Writer newWriter(String suffix, long maxLength) {
+        return new Writer(suffix, maxLength < 0 ? Long.MAX_VALUE : maxLength);
+    }
+
+    /**
+     * Spools content pushed to it. Content starts in a pooled array and moves to a temp file once it is larger than
+     * {@code inMemoryThresholdBytes}. Not thread safe, but may be used by one thread after another.
+     */
+    public class Writer implements AutoCloseable {
+        private final String suffix;
+        private final long limit;
+        private byte[] head;
+        private TemporaryResources tmp;
+        private Path tmpFile;
+        private FileChannel out;
+        private long length;
+        private boolean truncated;
+        private boolean finished;
+
+        private Writer(String suffix, long limit) {
+            this.suffix = suffix;
+            this.limit = limit;
+        }
+
+        /**
+         * @return false once content past {@code maxLength} has been dropped, so the rest of it is not wanted
+         */
+        public boolean write(ByteBuffer buffer) throws IOException {
+            if (length == limit) {
+                truncated |= buffer.hasRemaining();
+                return !truncated;
+            }
+            if (buffer.remaining() > limit - length) {
+                truncated = true;
+                buffer.limit(buffer.position() + (int) (limit - length));
+            }
+            int count = buffer.remaining();
+            if (out == null && length + count <= inMemoryThresholdBytes) {
+                if (head == null) {
+                    head = byteArrayPool.acquire(inMemoryThresholdBytes);
+                }
+                buffer.get(head, (int) length, count);
+            } else {
+                if (out == null) {
+                    openFile();
+                }
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            length += count;
+            return !truncated;
+        }
+
+        private void openFile() throws IOException {
+            tmp = newTemporaryResources();
+            tmpFile = tmp.createTempFile(suffix);
+            out = FileChannel.open(tmpFile, StandardOpenOption.WRITE);
+            if (head != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(head, 0, (int) length);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                byteArrayPool.release(head);
+                head = null;
+            }
+        }
+
+        /**
+         * @return what was written. Closing the writer afterward does not affect it.
+         */
+        public Spooled finish() throws IOException {
+            finished = true;
+            if (out == null) {
+                byte[] array = head == null ? byteArrayPool.acquire(0) : head;
+                head = null;
+                return new Spooled(inMemory(array, (int) length), length, truncated);
+            }
+            out.close();
+            return new Spooled(TikaInputStream.get(tmpFile, new Metadata(), tmp), length, truncated);
+        }
+
+        /**
+         * Throw away what was written, unless {@link #finish()} was called.
+         */
+        @Override
+        public void close() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (head != null) {
+                byteArrayPool.release(head);
+                head = null;
+            }
+            if (out != null) {
+                try {
+                    out.close();
+                } finally {
+                    tmp.close();
+                }
+            }
+        }
+    }
+
+    private static long transfer(InputStream content, FileChannel out, long position, long maxBytes) throws IOException {
+        ReadableByteChannel in = content instanceof FileInputStream fileInputStream ? fileInputStream.getChannel() : Channels.newChannel(content);
+        long transferred = 0;
+        while (transferred < maxBytes) {
+            long count = out.transferFrom(in, position + transferred, Math.min(TRANSFER_CHUNK_BYTES, maxBytes - transferred));
+            if (count <= 0) {
+                break;
+            }
+            transferred += count;
+        }
+        return transferred;
+    }
+}
@@ -0,0 +1,41 @@
+package org.apache.tika.pipes.fetchers.core.deadline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineSchedulerTest {
+    private final DeadlineScheduler deadlineScheduler = new DeadlineScheduler();
+
+    @AfterEach
+    void tearDown() {
+        deadlineScheduler.close();
+    }
+
+    @Test
+    void runsExpiryActionOnlyIfNotClosedInTime() throws Exception {
+        CountDownLatch aborted = new CountDownLatch(1);
+        DeadlineScheduler.Deadline expiring = deadlineScheduler.schedule(50, aborted::countDown);
+        AtomicBoolean closedAborted = new AtomicBoolean();
+        DeadlineScheduler.Deadline closed = deadlineScheduler.schedule(50, () -> closedAborted.set(true));
+        closed.close();
+        assertEquals(1, deadlineScheduler.getPendingCount());
+
+        assertTrue(aborted.await(10, TimeUnit.SECONDS));
+        expiring.close();
+        assertTrue(expiring.isExpired());
+        Thread.sleep(100);
+        assertFalse(closed.isExpired());
+        assertFalse(closedAborted.get());
+        assertEquals(2, deadlineScheduler.getScheduledCount());
+        assertEquals(1, deadlineScheduler.getExpiredCount());
+        assertEquals(0, deadlineScheduler.getPendingCount());
+    }
+}
@@ -0,0 +1,121 @@
+package org.apache.tika.pipes.fetchers.core.oauth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenCacheTest {
+    private final TokenCache tokenCache = new TokenCache(Duration.ofMinutes(5), Duration.ofMillis(50), Clock.systemUTC());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        tokenCache.close();
+    }
+
+    @Test
+    void loadsOnceForConcurrentCallers() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch finishLoad = new CountDownLatch(1);
+        TokenCache.TokenLoader loader = () -> {
+            loading.countDown();
+            try {
+                finishLoad.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return token(Duration.ofHours(1));
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TokenCache.Token>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executorService.submit(() -> tokenCache.getToken("tenant/client/user", loader)));
+            }
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            finishLoad.countDown();
+            for (Future<TokenCache.Token> future : futures) {
+                assertEquals("token-1", future.get(10, TimeUnit.SECONDS).value());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void refreshesBeforeExpiryWhileInUse() throws Exception {
+        TokenCache.TokenLoader loader = () -> token(Duration.ofMillis(400));
+        assertEquals("token-1", tokenCache.getToken("tenant/client/user", loader).value());
+        // short-lived tokens are refreshed halfway through their life
+        Thread.sleep(100);
+        assertEquals("token-1", tokenCache.getToken("tenant/client/user", loader).value());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loads.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, loads.get());
+        assertEquals("token-2", tokenCache.getToken("tenant/client/user", loader).value());
+    }
+
+    @Test
+    void dropsTokensThatAreNotUsed() throws Exception {
+        tokenCache.getToken("tenant/client/user", () -> token(Duration.ofMillis(200)));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tokenCache.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, tokenCache.size());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void reloadsAfterInvalidateAndReportsFailures() throws Exception {
+        assertEquals("token-1", tokenCache.getToken("tenant/client/user", () -> token(Duration.ofHours(1))).value());
+        tokenCache.invalidate("tenant/client/user");
+        assertEquals("token-2", tokenCache.getToken("tenant/client/user", () -> token(Duration.ofHours(1))).value());
+
+        IOException e = assertThrows(IOException.class, () -> tokenCache.getToken("other", () -> {
+            throw new IOException("invalid_client");
+        }));
+        assertEquals("invalid_client", e.getMessage());
+    }
+
+    @Test
+    void doesNotShareTokensBetweenDifferentCredentials() throws Exception {
+        TokenCache.TokenLoader loader = () -> token(Duration.ofHours(1));
+        String good = "tenant/client/" + TokenCache.credentialsHash("secret");
+        String revoked = "tenant/client/" + TokenCache.credentialsHash("revoked-secret");
+        assertEquals("token-1", tokenCache.getToken(good + "/scope", loader).value());
+        assertEquals("token-2", tokenCache.getToken(revoked + "/scope", loader).value());
+        // the same credentials share a token
+        assertEquals("token-1", tokenCache.getToken("tenant/client/" + TokenCache.credentialsHash("secret") + "/scope", loader).value());
+        assertEquals(2, loads.get());
+
+        assertNotEquals(TokenCache.credentialsHash("ab", "c"), TokenCache.credentialsHash("a", "bc"));
+        assertNotEquals(TokenCache.credentialsHash("cert", null), TokenCache.credentialsHash("cert", "password"));
+        assertFalse(good.contains("secret"));
+    }
+
+    private TokenCache.Token token(Duration lifetime) {
+        return new TokenCache.Token("token-" + loads.incrementAndGet(), Instant.now().plus(lifetime));
+    }
+}
@@ -0,0 +1,62 @@
+package org.apache.tika.pipes.fetchers.core.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostLimiterTest {
+    @Test
+    void limitsConcurrentRequestsPerHost() throws Exception {
+        HostLimiter hostLimiter = new HostLimiter(1, -1);
+        HostLimiter.Permit permit = hostLimiter.acquire("example.com", -1);
+        assertThrows(IOException.class, () -> hostLimiter.acquire("EXAMPLE.com", 50));
+        // other hosts are not held up
+        hostLimiter.acquire("example.org", 50).close();
+        permit.close();
+        hostLimiter.acquire("example.com", 50).close();
+    }
+
+    @Test
+    void spacesRequestsAndAdaptsRate() throws Exception {
+        HostLimiter hostLimiter = new HostLimiter(-1, 20);
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            hostLimiter.acquire("example.com", -1).close();
+        }
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 140);
+
+        hostLimiter.onResponse("example.com", 429, null);
+        assertEquals(10, hostLimiter.getRate("example.com"), 0.001);
+        hostLimiter.onResponse("example.com", 503, null);
+        assertEquals(5, hostLimiter.getRate("example.com"), 0.001);
+        hostLimiter.onResponse("example.com", 200, null);
+        assertEquals(6, hostLimiter.getRate("example.com"), 0.001);
+        for (int i = 0; i < 100; i++) {
+            hostLimiter.onResponse("example.com", 200, null);
+        }
+        assertEquals(20, hostLimiter.getRate("example.com"), 0.001);
+    }
+
+    @Test
+    void honorsRetryAfter() throws Exception {
+        HostLimiter hostLimiter = new HostLimiter(-1, -1);
+        hostLimiter.acquire("example.com", -1).close();
+        hostLimiter.onResponse("example.com", 429, "30");
+        IOException e = assertThrows(IOException.class, () -> hostLimiter.acquire("example.com", 1000));
+        assertTrue(e.getMessage().contains("will not take another request"), e.getMessage());
+
+        Instant at = Instant.now().plusSeconds(120).truncatedTo(ChronoUnit.SECONDS);
+        assertEquals(at, hostLimiter.parseRetryAfter(DateTimeFormatter.RFC_1123_DATE_TIME.format(at.atOffset(ZoneOffset.UTC))));
+        assertNull(hostLimiter.parseRetryAfter("soon"));
+    }
+}
@@ -0,0 +1,123 @@
+package org.apache.tika.pipes.fetchers.core.retry;
+
+import org.apache.tika.pipes.fetchers.core.DefaultFetcherConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetrierTest {
+    @Test
+    void retriesUntilSuccessAndRecordsRetries() throws Exception {
+        Retrier retrier = new Retrier(new RetryPolicy().setMaxRetries(3).setInitialDelayMillis(1));
+        AtomicInteger attempts = new AtomicInteger();
+        Map<String, Object> responseMetadata = new HashMap<>();
+        String result = retrier.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("connection reset");
+            }
+            return "content";
+        }, responseMetadata);
+        assertEquals("content", result);
+        assertEquals(2, responseMetadata.get(Retrier.FETCH_RETRIES));
+
+        attempts.set(0);
+        responseMetadata.clear();
+        assertThrows(IOException.class, () -> retrier.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IOException("connection reset");
+        }, responseMetadata));
+        assertEquals(4, attempts.get());
+        assertEquals(3, responseMetadata.get(Retrier.FETCH_RETRIES));
+    }
+
+    @Test
+    void retriesByErrorClass() {
+        Retrier retrier = new Retrier(new RetryPolicy()
+                .setMaxRetries(2)
+                .setInitialDelayMillis(1)
+                .noRetryOn(FileNotFoundException.class)
+                .noRetryIf(e -> e.getMessage().contains("AccessDenied")));
+        for (Exception error : List.of(new FileNotFoundException("missing"), new IOException("AccessDenied"))) {
+            AtomicInteger attempts = new AtomicInteger();
+            Map<String, Object> responseMetadata = new HashMap<>();
+            Exception thrown = assertThrows(Exception.class, () -> retrier.execute(() -> {
+                attempts.incrementAndGet();
+                throw error;
+            }, responseMetadata));
+            assertEquals(error, thrown);
+            assertEquals(1, attempts.get());
+            assertFalse(responseMetadata.containsKey(Retrier.FETCH_RETRIES));
+        }
+    }
+
+    @Test
+    void stopsRetryingWhenBudgetIsSpent() {
+        Retrier retrier = new Retrier(new RetryPolicy().setMaxRetries(5).setInitialDelayMillis(1).setBudget(0, 3));
+        AtomicInteger attempts = new AtomicInteger();
+        long rejected = Retrier.stats().getBudgetRejectedCount();
+        assertThrows(IOException.class, () -> retrier.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IOException("unavailable");
+        }, new HashMap<>()));
+        assertEquals(4, attempts.get());
+        assertTrue(Retrier.stats().getBudgetRejectedCount() > rejected);
+    }
+
+    @Test
+    void retriesAsyncAttempts() throws Exception {
+        Retrier retrier = new Retrier(new RetryPolicy().setMaxRetries(2).setInitialDelayMillis(1));
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> result = retrier.executeAsync(() -> attempts.incrementAndGet() < 3 ?
+                CompletableFuture.failedFuture(new IOException("slow down")) : CompletableFuture.completedFuture("part"));
+        assertEquals("part", result.get(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> failed = retrier.executeAsync(() -> CompletableFuture.failedFuture(new IOException("slow down")));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void backsOffWithJitterOrUsesThrottleSeconds() {
+        RetryPolicy retryPolicy = new RetryPolicy().setInitialDelayMillis(100).setMaxDelayMillis(1000).setJitter(0.5);
+        assertEquals(100, retryPolicy.delayMillis(1, 0));
+        assertEquals(50, retryPolicy.delayMillis(1, 1));
+        assertEquals(400, retryPolicy.delayMillis(3, 0));
+        assertEquals(1000, retryPolicy.delayMillis(10, 0));
+
+        RetryPolicy throttled = RetryPolicy.forConfig(new DefaultFetcherConfig(), List.of(1L, 5L, 30L));
+        assertEquals(2, throttled.getMaxRetries());
+        assertEquals(1000, throttled.delayMillis(1, 0.5));
+        assertEquals(5000, throttled.delayMillis(2, 0.5));
+    }
+
+    @Test
+    void tellsBackendFailuresFromBadRequests() {
+        assertTrue(RetryPolicy.isBackendFailure(new RuntimeException(new FetchStatusException(503, "bad status code: 503"))));
+        assertTrue(RetryPolicy.isBackendFailure(new RuntimeException(new SocketTimeoutException("read timed out"))));
+        assertTrue(RetryPolicy.isBackendFailure(new IOException("connection reset")));
+        assertFalse(RetryPolicy.isBackendFailure(new RuntimeException(new FetchStatusException(404, "bad status code: 404"))));
+        assertFalse(RetryPolicy.isBackendFailure(new FileNotFoundException("missing.txt")));
+        assertFalse(RetryPolicy.isBackendFailure(new IllegalArgumentException("Invalid fetch key")));
+
+        // status codes that only the fetcher knows how to read
+        ToIntFunction<Throwable> statusCode = e -> e instanceof IllegalStateException ? Integer.parseInt(e.getMessage()) : -1;
+        assertFalse(RetryPolicy.isBackendFailure(new IOException(new IllegalStateException("403")), statusCode));
+        assertTrue(RetryPolicy.isBackendFailure(new RuntimeException(new IllegalStateException("429")), statusCode));
+    }
+}
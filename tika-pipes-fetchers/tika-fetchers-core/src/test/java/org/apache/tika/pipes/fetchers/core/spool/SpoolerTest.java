@@ -0,0 +1,127 @@
+package org.apache.tika.pipes.fetchers.core.spool;
+
+import org.apache.tika.io.TikaInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpoolerTest {
+    @TempDir
+    Path spoolDirectory;
+
+    @Test
+    void keepsSmallContentInMemory() throws Exception {
+        Spooler spooler = new Spooler(spoolDirectory, 1024);
+        Spooler.Spooled spooled = spooler.spool(new ByteArrayInputStream(bytes(1000)), ".txt");
+        try (TikaInputStream tis = spooled.stream()) {
+            assertEquals(1000, spooled.length());
+            assertFalse(spooled.truncated());
+            assertFalse(tis.hasFile());
+            assertArrayEquals(bytes(1000), tis.readAllBytes());
+        }
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void reusesPooledArraysAfterClose() throws Exception {
+        ByteArrayPool byteArrayPool = new ByteArrayPool(1024 * 1024);
+        Spooler spooler = new Spooler(spoolDirectory, 1000, byteArrayPool);
+        Spooler.Spooled spooled = spooler.spool(new ByteArrayInputStream(bytes(10)), null);
+        assertEquals(0, byteArrayPool.getRetainedBytes());
+        spooled.stream().close();
+        spooled.stream().close();
+        assertEquals(1024, byteArrayPool.getRetainedBytes());
+
+        spooled = spooler.spool(new ByteArrayInputStream(bytes(20)), null);
+        assertEquals(0, byteArrayPool.getRetainedBytes());
+        try (TikaInputStream tis = spooled.stream()) {
+            assertArrayEquals(bytes(20), tis.readAllBytes());
+        }
+
+        // content that spills to disk gives its array back straight away
+        spooled = spooler.spool(new ByteArrayInputStream(bytes(5000)), null);
+        assertEquals(1024, byteArrayPool.getRetainedBytes());
+        try (TikaInputStream tis = spooled.stream()) {
+            assertArrayEquals(bytes(5000), Files.readAllBytes(tis.getPath()));
+        }
+    }
+
+    @Test
+    void streamClosedByTimeoutCannotReadReusedArray() throws Exception {
+        ByteArrayPool byteArrayPool = new ByteArrayPool(1024 * 1024);
+        Spooler spooler = new Spooler(spoolDirectory, 1000, byteArrayPool);
+        TikaInputStream abandoned = spooler.spool(new ByteArrayInputStream(bytes(100)), null).stream();
+        assertEquals(0, abandoned.read());
+        // the watchdog closes the stream while the parse thread still holds it
+        abandoned.close();
+        assertEquals(1024, byteArrayPool.getRetainedBytes());
+
+        byte[] next = new byte[100];
+        Arrays.fill(next, (byte) 7);
+        try (TikaInputStream tis = spooler.spool(new ByteArrayInputStream(next), null).stream()) {
+            assertEquals(0, byteArrayPool.getRetainedBytes());
+            assertThrows(IOException.class, abandoned::read);
+            assertThrows(IOException.class, () -> abandoned.read(new byte[10]));
+            assertArrayEquals(next, tis.readAllBytes());
+        }
+    }
+
+    @Test
+    void spillsLargeContentToSpoolDirectoryAndDeletesItOnClose() throws Exception {
+        Spooler spooler = new Spooler(spoolDirectory, 1024);
+        Spooler.Spooled spooled = spooler.spool(new ByteArrayInputStream(bytes(100_000)), ".bin");
+        try (TikaInputStream tis = spooled.stream()) {
+            assertEquals(100_000, spooled.length());
+            assertTrue(tis.hasFile());
+            assertEquals(spoolDirectory, tis.getPath().getParent());
+            assertArrayEquals(bytes(100_000), Files.readAllBytes(tis.getPath()));
+        }
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void truncatesAtMaxLength() throws Exception {
+        Spooler inMemory = new Spooler(spoolDirectory, 1024);
+        Spooler.Spooled spooled = inMemory.spool(new ByteArrayInputStream(bytes(1000)), null, 100);
+        assertEquals(100, spooled.length());
+        assertTrue(spooled.truncated());
+        spooled.stream().close();
+
+        Spooler onDisk = new Spooler(spoolDirectory, 0);
+        spooled = onDisk.spool(new ByteArrayInputStream(bytes(100_000)), null, 50_000);
+        try (TikaInputStream tis = spooled.stream()) {
+            assertEquals(50_000, Files.size(tis.getPath()));
+            assertTrue(spooled.truncated());
+        }
+
+        spooled = onDisk.spool(new ByteArrayInputStream(bytes(50_000)), null, 50_000);
+        spooled.stream().close();
+        assertFalse(spooled.truncated());
+    }
+
+    private long countFiles() throws Exception {
+        try (Stream<Path> files = Files.list(spoolDirectory)) {
+            return files.count();
+        }
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
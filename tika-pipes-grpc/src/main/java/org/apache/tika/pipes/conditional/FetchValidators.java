@@ -0,0 +1,27 @@
+package org.apache.tika.pipes.conditional;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.ignite.cache.query.annotations.QuerySqlField;
+
+import java.io.Serializable;
+
+/**
+ * The validators a document had when it was last parsed successfully, sent with its next fetch so that the source can
+ * say it has not changed.
+ */
+@Builder
+@Getter
+@Setter
+public class FetchValidators implements Serializable {
+    @QuerySqlField(index = true)
+    private String fetcherId;
+    private String fetchKey;
+    private String etag;
+    /**
+     * An HTTP date.
+     */
+    private String lastModified;
+    private Long savedAtMillis;
+}
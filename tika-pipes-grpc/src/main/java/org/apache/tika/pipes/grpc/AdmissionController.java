@@ -0,0 +1,210 @@
+package org.apache.tika.pipes.grpc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.core.exception.AdmissionRejectedException;
+import org.apache.tika.pipes.core.exception.TikaPipesException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-wide limit on the documents being parsed at once, counted both as documents and as bytes.
+ * <p>
+ * A document's size is its fetched {@code Content-Length} where the fetcher reports one (S3 and HTTP do) and
+ * {@code admission.unknownDocumentBytes} otherwise. A document larger than {@code admission.maxInFlightBytes} is
+ * admitted on its own once nothing else is running, so it is never refused just for being big.
+ * <p>
+ * A request that does not fit waits in a queue of at most {@code admission.maxQueued} requests for up to
+ * {@code admission.queueTimeoutMillis}. If the queue is full or the wait runs out it is rejected with an
+ * {@link AdmissionRejectedException}, which is sent to clients as {@code RESOURCE_EXHAUSTED}.
+ */
+@Component
+@Slf4j
+public class AdmissionController {
+    @Value("${admission.maxConcurrentParses:64}")
+    private Integer maxConcurrentParses;
+
+    @Value("${admission.maxInFlightBytes:1073741824}")
+    private Long maxInFlightBytes;
+
+    @Value("${admission.maxQueued:1000}")
+    private Integer maxQueued;
+
+    @Value("${admission.queueTimeoutMillis:30000}")
+    private Long queueTimeoutMillis;
+
+    @Value("${admission.unknownDocumentBytes:1048576}")
+    private Long unknownDocumentBytes;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final Object lock = new Object();
+    private int inFlight;
+    private long inFlightBytes;
+    private int queued;
+    private Timer waitTimer;
+    private Counter rejectedCounter;
+
+    /**
+     * Held while a document is being parsed. Closing it lets the next document in.
+     */
+    public class Permit implements AutoCloseable {
+        private final long bytes;
+        private boolean closed;
+
+        private Permit(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                inFlight--;
+                inFlightBytes -= bytes;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            Gauge.builder("tika.admission.in_flight", this, AdmissionController::getInFlightCount)
+                 .description("Documents admitted for parsing")
+                 .register(meterRegistry);
+            Gauge.builder("tika.admission.in_flight_bytes", this, AdmissionController::getInFlightBytes)
+                 .description("Estimated bytes of the documents admitted for parsing")
+                 .baseUnit("bytes")
+                 .register(meterRegistry);
+            Gauge.builder("tika.admission.queued", this, AdmissionController::getQueuedCount)
+                 .description("Requests waiting to be admitted")
+                 .register(meterRegistry);
+            waitTimer = Timer.builder("tika.admission.wait")
+                             .description("Time requests waited to be admitted")
+                             .register(meterRegistry);
+            rejectedCounter = Counter.builder("tika.admission.rejected")
+                                     .description("Requests rejected because the server was at capacity")
+                                     .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Wait up to {@code admission.queueTimeoutMillis} to be admitted.
+     *
+     * @param description  what is being parsed, for logging
+     * @param bytes        size of the document, or -1 if unknown
+     * @throws AdmissionRejectedException if the queue is full or the wait timed out
+     */
+    public Permit acquire(String description, long bytes) {
+        return acquire(description, bytes, queueTimeoutMillis);
+    }
+
+    /**
+     * Wait as long as it takes to be admitted. For callers such as pipe jobs that already bound their own
+     * concurrency and would rather be slowed down than fail documents.
+     */
+    public Permit acquireWithoutTimeout(String description, long bytes) {
+        return acquire(description, bytes, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the {@code Content-Length} a fetcher put in its response metadata, or -1
+     */
+    public static long getContentLength(Map<String, Object> responseMetadata) {
+        Object contentLength = responseMetadata.get(Metadata.CONTENT_LENGTH);
+        if (contentLength == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.toString());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public int getInFlightCount() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    public long getInFlightBytes() {
+        synchronized (lock) {
+            return inFlightBytes;
+        }
+    }
+
+    public int getQueuedCount() {
+        synchronized (lock) {
+            return queued;
+        }
+    }
+
+    private Permit acquire(String description, long bytes, long timeoutMillis) {
+        long weight = Math.min(bytes >= 0 ? bytes : unknownDocumentBytes, maxInFlightBytes > 0 ? maxInFlightBytes : Long.MAX_VALUE);
+        long start = System.nanoTime();
+        synchronized (lock) {
+            if (fits(weight)) {
+                return admit(weight, start);
+            }
+            if (queued >= maxQueued || timeoutMillis <= 0) {
+                throw reject("Too many documents being parsed, could not admit " + description);
+            }
+            queued++;
+            try {
+                long deadline = timeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE : start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                while (!fits(weight)) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        throw reject("Timed out after " + timeoutMillis + " ms waiting to admit " + description);
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TikaPipesException("Interrupted while waiting to admit " + description, e);
+            } finally {
+                queued--;
+            }
+            return admit(weight, start);
+        }
+    }
+
+    private boolean fits(long weight) {
+        if (inFlight >= maxConcurrentParses) {
+            return false;
+        }
+        return maxInFlightBytes <= 0 || inFlight == 0 || inFlightBytes + weight <= maxInFlightBytes;
+    }
+
+    private Permit admit(long weight, long start) {
+        inFlight++;
+        inFlightBytes += weight;
+        if (waitTimer != null) {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return new Permit(weight);
+    }
+
+    private AdmissionRejectedException reject(String message) {
+        if (rejectedCounter != null) {
+            rejectedCounter.increment();
+        }
+        log.warn("{}: in flight={}, in flight bytes={}, queued={}", message, inFlight, inFlightBytes, queued);
+        return new AdmissionRejectedException(message);
+    }
+}
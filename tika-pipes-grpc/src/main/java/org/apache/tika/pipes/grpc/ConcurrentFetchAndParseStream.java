@@ -0,0 +1,146 @@
+package org.apache.tika.pipes.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.tika.FetchAndParseReply;
+import org.apache.tika.FetchAndParseRequest;
+import org.apache.tika.pipes.core.exception.AdmissionRejectedException;
+import org.apache.tika.pipes.core.exception.CircuitBreakerOpenException;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Request side of the bidirectional fetch and parse stream.
+ * <p>
+ * Up to {@code window} requests from one stream are processed in parallel and each reply is sent as soon as it is
+ * ready, so replies can arrive out of order and clients should match them up by fetch key. Intake uses manual flow
+ * control: the client is only allowed to send a new request once a reply has been handed to the transport. A reply
+ * is only handed over while the call is ready. Requests that are running plus replies waiting for the transport
+ * therefore never exceed the window, however fast the client sends.
+ */
+@Slf4j
+class ConcurrentFetchAndParseStream implements StreamObserver<FetchAndParseRequest> {
+    @FunctionalInterface
+    interface RequestHandler {
+        FetchAndParseReply handle(FetchAndParseRequest request) throws Exception;
+    }
+
+    private final ServerCallStreamObserver<FetchAndParseReply> responseObserver;
+    private final Executor executor;
+    private final RequestHandler handler;
+    private final Object lock = new Object();
+    private final Queue<FetchAndParseReply> pendingReplies = new ArrayDeque<>();
+    private int inFlight;
+    private boolean halfClosed;
+    private boolean terminated;
+
+    /**
+     * Must be created during the initial call of the service method.
+     */
+    ConcurrentFetchAndParseStream(ServerCallStreamObserver<FetchAndParseReply> responseObserver, int window, Executor executor, RequestHandler handler) {
+        this.responseObserver = responseObserver;
+        this.executor = executor;
+        this.handler = handler;
+        responseObserver.disableAutoRequest();
+        responseObserver.setOnReadyHandler(this::drain);
+        responseObserver.setOnCancelHandler(() -> {
+            synchronized (lock) {
+                terminated = true;
+                pendingReplies.clear();
+            }
+        });
+        responseObserver.request(Math.max(1, window));
+    }
+
+    @Override
+    public void onNext(FetchAndParseRequest request) {
+        synchronized (lock) {
+            if (terminated) {
+                return;
+            }
+            inFlight++;
+        }
+        executor.execute(() -> {
+            try {
+                FetchAndParseReply reply = handler.handle(request);
+                synchronized (lock) {
+                    inFlight--;
+                    if (!terminated) {
+                        pendingReplies.add(reply);
+                    }
+                }
+                drain();
+            } catch (AdmissionRejectedException e) {
+                synchronized (lock) {
+                    inFlight--;
+                    fail(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).withCause(e));
+                }
+            } catch (CircuitBreakerOpenException e) {
+                synchronized (lock) {
+                    inFlight--;
+                    fail(Status.UNAVAILABLE.withDescription(e.getMessage()).withCause(e));
+                }
+            } catch (Exception e) {
+                synchronized (lock) {
+                    inFlight--;
+                    fail(Status.NOT_FOUND.withDescription("Could not handle next fetch and parse request " + request + " - " + ExceptionUtils.getStackTrace(e)).withCause(e));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        log.error("Parse error occurred", throwable);
+        synchronized (lock) {
+            terminated = true;
+            pendingReplies.clear();
+        }
+    }
+
+    @Override
+    public void onCompleted() {
+        synchronized (lock) {
+            halfClosed = true;
+        }
+        drain();
+    }
+
+    /**
+     * Send as many pending replies as the transport will take, let the client send one more request for each, and
+     * finish the call once the client is done and every reply has been sent.
+     */
+    private void drain() {
+        synchronized (lock) {
+            if (terminated) {
+                return;
+            }
+            int sent = 0;
+            while (!pendingReplies.isEmpty() && responseObserver.isReady()) {
+                responseObserver.onNext(pendingReplies.poll());
+                sent++;
+            }
+            if (sent > 0 && !halfClosed) {
+                responseObserver.request(sent);
+            }
+            if (halfClosed && inFlight == 0 && pendingReplies.isEmpty()) {
+                terminated = true;
+                responseObserver.onCompleted();
+            }
+        }
+    }
+
+    private void fail(Status status) {
+        if (terminated) {
+            return;
+        }
+        terminated = true;
+        pendingReplies.clear();
+        responseObserver.onError(status.asRuntimeException());
+    }
+}
@@ -0,0 +1,83 @@
+package org.apache.tika.pipes.grpc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.pipes.conditional.FetchValidators;
+import org.apache.tika.pipes.fetchers.core.conditional.ConditionalFetch;
+import org.apache.tika.pipes.repo.FetchValidatorsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Keeps the {@code ETag} and {@code Last-Modified} of each fetch key that was last parsed successfully, and hands them
+ * to the fetcher on the next fetch of the key, so that a fetcher with conditional fetches on can skip documents that
+ * have not changed. See {@link ConditionalFetch}.
+ * <p>
+ * Validators are only looked up for fetchers with conditional fetches on, and only stored for fetchers that report
+ * them. They are stored after a successful parse, or in a pipe job after the document has been emitted, so that a
+ * document whose parse or emit failed is processed again the next time. A client can still force a full fetch by putting blank
+ * validators in the fetch metadata. Deleting a fetcher forgets its validators.
+ */
+@Component
+@Slf4j
+public class ConditionalFetches {
+    @Value("${conditionalFetch.enabled:true}")
+    private Boolean enabled;
+
+    @Autowired
+    private FetchValidatorsRepository fetchValidatorsRepository;
+
+    /**
+     * Put the stored validators of the fetch key in the fetch metadata, unless the client set its own.
+     */
+    public void putValidators(String fetcherId, String fetchKey, Map<String, Object> fetchMetadata) {
+        if (!enabled || fetchMetadata.containsKey(ConditionalFetch.IF_NONE_MATCH) || fetchMetadata.containsKey(ConditionalFetch.IF_MODIFIED_SINCE)) {
+            return;
+        }
+        FetchValidators fetchValidators = fetchValidatorsRepository.findById(key(fetcherId, fetchKey)).orElse(null);
+        if (fetchValidators == null) {
+            return;
+        }
+        if (fetchValidators.getEtag() != null) {
+            fetchMetadata.put(ConditionalFetch.IF_NONE_MATCH, fetchValidators.getEtag());
+        }
+        if (fetchValidators.getLastModified() != null) {
+            fetchMetadata.put(ConditionalFetch.IF_MODIFIED_SINCE, fetchValidators.getLastModified());
+        }
+    }
+
+    /**
+     * Store the validators the fetcher reported, once the document has been parsed, and in a pipe job emitted,
+     * successfully.
+     */
+    public void saveValidators(String fetcherId, String fetchKey, Map<String, Object> responseMetadata) {
+        if (!enabled) {
+            return;
+        }
+        String etag = ConditionalFetch.getValidator(responseMetadata, ConditionalFetch.ETAG);
+        String lastModified = ConditionalFetch.getValidator(responseMetadata, ConditionalFetch.LAST_MODIFIED);
+        if (etag == null && lastModified == null) {
+            return;
+        }
+        fetchValidatorsRepository.save(key(fetcherId, fetchKey), FetchValidators.builder()
+                .fetcherId(fetcherId)
+                .fetchKey(fetchKey)
+                .etag(etag)
+                .lastModified(lastModified)
+                .savedAtMillis(System.currentTimeMillis())
+                .build());
+    }
+
+    public void deleteValidators(String fetcherId) {
+        fetchValidatorsRepository.deleteByFetcherId(fetcherId);
+    }
+
+    /**
+     * The fetcher ID is length prefixed so that no two pairs of fetcher ID and fetch key have the same key.
+     */
+    static String key(String fetcherId, String fetchKey) {
+        return fetcherId.length() + ":" + fetcherId + fetchKey;
+    }
+}
@@ -0,0 +1,278 @@
+package org.apache.tika.pipes.grpc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.pipes.core.exception.CircuitBreakerOpenException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A circuit breaker per fetcher ID, so that while a backend such as an S3 endpoint or a SharePoint tenant is down its
+ * fetches fail straight away instead of each one waiting through its retries.
+ * <ul>
+ *     <li>CLOSED: fetches go ahead. The outcomes of the last {@code circuitBreaker.windowSize} fetches are kept, and
+ *     once there are at least {@code circuitBreaker.minimumCalls} of them the breaker opens if the share that failed
+ *     reaches {@code circuitBreaker.failureRateThreshold}, or the share that took longer than
+ *     {@code circuitBreaker.slowCallMillis} reaches {@code circuitBreaker.slowCallRateThreshold}.</li>
+ *     <li>OPEN: fetches are refused with a {@link CircuitBreakerOpenException}, which is sent to clients as
+ *     {@code UNAVAILABLE}, for {@code circuitBreaker.openMillis}.</li>
+ *     <li>HALF_OPEN: up to {@code circuitBreaker.halfOpenProbes} fetches are let through to probe the backend and the
+ *     rest are refused. The breaker closes if all of the probes succeed and opens again if one fails or is slow.</li>
+ * </ul>
+ * Only failures of the backend, such as timeouts, connection errors and retryable statuses, are counted. Saving or
+ * deleting a fetcher's config resets its breaker, since the new config may fix what was failing.
+ */
+@Component
+@Slf4j
+public class FetcherCircuitBreakers {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @Value("${circuitBreaker.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${circuitBreaker.windowSize:20}")
+    private Integer windowSize;
+
+    @Value("${circuitBreaker.minimumCalls:10}")
+    private Integer minimumCalls;
+
+    @Value("${circuitBreaker.failureRateThreshold:0.5}")
+    private Double failureRateThreshold;
+
+    @Value("${circuitBreaker.slowCallMillis:60000}")
+    private Long slowCallMillis;
+
+    @Value("${circuitBreaker.slowCallRateThreshold:0.8}")
+    private Double slowCallRateThreshold;
+
+    @Value("${circuitBreaker.openMillis:30000}")
+    private Long openMillis;
+
+    @Value("${circuitBreaker.halfOpenProbes:3}")
+    private Integer halfOpenProbes;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * A breaker's state at one moment.
+     *
+     * @param windowCalls         fetches in the window the rates are worked out from
+     * @param remainingOpenMillis while OPEN, how long until probes are let through
+     * @param rejectedCount       fetches refused since the breaker was created or reset
+     */
+    public record Snapshot(String fetcherId, State state, int windowCalls, double failureRate, double slowCallRate,
+                           long remainingOpenMillis, long rejectedCount) {
+    }
+
+    /**
+     * Held for one fetch. Exactly one of {@link #onSuccess()}, {@link #onFailure()} and {@link #onFailure(boolean)}
+     * should be called when the fetch returns.
+     */
+    public interface Permit {
+        void onSuccess();
+
+        void onFailure();
+
+        /**
+         * Report a fetch that threw. Only failures of the backend count against it. A fetch that failed because of its
+         * request, such as a missing document or a bad fetch key, counts as a success, since the backend answered.
+         *
+         * @param backendFailure see {@link org.apache.tika.pipes.fetchers.core.Fetcher#isBackendFailure(Throwable)}
+         */
+        default void onFailure(boolean backendFailure) {
+            if (backendFailure) {
+                onFailure();
+            } else {
+                onSuccess();
+            }
+        }
+    }
+
+    private static final Permit NO_OP_PERMIT = new Permit() {
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public void onFailure() {
+        }
+    };
+
+    /**
+     * @throws CircuitBreakerOpenException if the fetcher's breaker is open, or half open with all of its probes taken
+     */
+    public Permit acquire(String fetcherId) {
+        if (!enabled) {
+            return NO_OP_PERMIT;
+        }
+        return breakers.computeIfAbsent(fetcherId, Breaker::new).acquire();
+    }
+
+    /**
+     * Forget the fetcher's failures, such as when its config is saved or deleted.
+     */
+    public void reset(String fetcherId) {
+        breakers.remove(fetcherId);
+    }
+
+    /**
+     * @return the breakers of every fetcher that has fetched since the server started or its breaker was reset
+     */
+    public List<Snapshot> getSnapshots() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Breaker breaker : breakers.values()) {
+            snapshots.add(breaker.snapshot());
+        }
+        snapshots.sort(Comparator.comparing(Snapshot::fetcherId));
+        return snapshots;
+    }
+
+    /**
+     * @return the fetcher's breaker, or null if it has not fetched since the server started or its breaker was reset
+     */
+    public Snapshot getSnapshot(String fetcherId) {
+        Breaker breaker = breakers.get(fetcherId);
+        return breaker == null ? null : breaker.snapshot();
+    }
+
+    private class Breaker {
+        private final String fetcherId;
+        private final boolean[] failed = new boolean[windowSize];
+        private final boolean[] slow = new boolean[windowSize];
+        private final Counter rejectedCounter;
+        private State state = State.CLOSED;
+        /**
+         * Bumped on every change of state, so that fetches that started in an earlier state are not counted.
+         */
+        private long generation;
+        private int calls;
+        private int next;
+        private int failures;
+        private int slowCalls;
+        private long openedAtMillis;
+        private int probesStarted;
+        private int probesSucceeded;
+        private long rejectedCount;
+
+        Breaker(String fetcherId) {
+            this.fetcherId = fetcherId;
+            rejectedCounter = meterRegistry == null ? null : Counter.builder("tika.fetch.circuit_breaker.rejected")
+                                                                     .description("Fetches refused because the fetcher's circuit breaker was open")
+                                                                     .tag("fetcher_id", fetcherId)
+                                                                     .register(meterRegistry);
+        }
+
+        synchronized Permit acquire() {
+            if (state == State.OPEN) {
+                long remainingMillis = remainingOpenMillis();
+                if (remainingMillis > 0) {
+                    throw reject("Fetcher " + fetcherId + " is failing, not fetching with it for another " + remainingMillis + " ms");
+                }
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= halfOpenProbes) {
+                    throw reject("Fetcher " + fetcherId + " is failing and is being probed, not fetching with it until the probes succeed");
+                }
+                probesStarted++;
+            }
+            long permitGeneration = generation;
+            long start = System.nanoTime();
+            return new Permit() {
+                @Override
+                public void onSuccess() {
+                    record(permitGeneration, false, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) > slowCallMillis);
+                }
+
+                @Override
+                public void onFailure() {
+                    record(permitGeneration, true, false);
+                }
+            };
+        }
+
+        private CircuitBreakerOpenException reject(String message) {
+            rejectedCount++;
+            if (rejectedCounter != null) {
+                rejectedCounter.increment();
+            }
+            return new CircuitBreakerOpenException(message);
+        }
+
+        private synchronized void record(long permitGeneration, boolean isFailure, boolean isSlow) {
+            if (permitGeneration != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                if (isFailure || isSlow) {
+                    log.warn("Probe of fetcher {} {}, opening its circuit breaker again", fetcherId, isFailure ? "failed" : "was slow");
+                    transition(State.OPEN);
+                } else if (++probesSucceeded >= halfOpenProbes) {
+                    log.info("Probes of fetcher {} succeeded, closing its circuit breaker", fetcherId);
+                    transition(State.CLOSED);
+                }
+                return;
+            }
+            if (calls == windowSize) {
+                failures -= failed[next] ? 1 : 0;
+                slowCalls -= slow[next] ? 1 : 0;
+            } else {
+                calls++;
+            }
+            failed[next] = isFailure;
+            slow[next] = isSlow;
+            failures += isFailure ? 1 : 0;
+            slowCalls += isSlow ? 1 : 0;
+            next = (next + 1) % windowSize;
+            if (calls >= minimumCalls && (failureRate() >= failureRateThreshold || slowCallRate() >= slowCallRateThreshold)) {
+                log.warn("Opening the circuit breaker of fetcher {} for {} ms: {} of the last {} fetches failed and {} were slow",
+                        fetcherId, openMillis, failures, calls, slowCalls);
+                transition(State.OPEN);
+            }
+        }
+
+        private void transition(State newState) {
+            state = newState;
+            generation++;
+            calls = 0;
+            next = 0;
+            failures = 0;
+            slowCalls = 0;
+            probesStarted = 0;
+            probesSucceeded = 0;
+            if (newState == State.OPEN) {
+                openedAtMillis = System.currentTimeMillis();
+            }
+        }
+
+        private long remainingOpenMillis() {
+            return Math.max(0, openedAtMillis + openMillis - System.currentTimeMillis());
+        }
+
+        private double failureRate() {
+            return calls == 0 ? 0 : (double) failures / calls;
+        }
+
+        private double slowCallRate() {
+            return calls == 0 ? 0 : (double) slowCalls / calls;
+        }
+
+        synchronized Snapshot snapshot() {
+            return new Snapshot(fetcherId, state, calls, failureRate(), slowCallRate(), state == State.OPEN ? remainingOpenMillis() : 0, rejectedCount);
+        }
+    }
+}
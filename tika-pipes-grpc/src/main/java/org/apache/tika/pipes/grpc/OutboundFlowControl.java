@@ -0,0 +1,46 @@
+package org.apache.tika.pipes.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * Lets a thread that produces replies wait until the client is ready for more, so that a slow client makes the
+ * producer slow down instead of having every pending reply buffered in the server's heap.
+ * <p>
+ * Must be created during the initial call of the service method, because that is the only time the on-ready and
+ * on-cancel handlers may be set.
+ */
+class OutboundFlowControl {
+    private final ServerCallStreamObserver<?> responseObserver;
+    private final Object lock = new Object();
+
+    OutboundFlowControl(ServerCallStreamObserver<?> responseObserver) {
+        this.responseObserver = responseObserver;
+        responseObserver.setOnReadyHandler(this::signal);
+        responseObserver.setOnCancelHandler(this::signal);
+    }
+
+    /**
+     * Block until the call can take another message without buffering or has been cancelled.
+     *
+     * @return false if the call was cancelled
+     */
+    boolean awaitReady() throws InterruptedException {
+        synchronized (lock) {
+            while (!responseObserver.isReady() && !responseObserver.isCancelled()) {
+                // isReady() can flip without a callback if the call is cancelled, so don't wait forever
+                lock.wait(1000);
+            }
+        }
+        return !responseObserver.isCancelled();
+    }
+
+    boolean isCancelled() {
+        return responseObserver.isCancelled();
+    }
+
+    private void signal() {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+}
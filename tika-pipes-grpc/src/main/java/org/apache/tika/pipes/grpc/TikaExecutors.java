@@ -0,0 +1,182 @@
+package org.apache.tika.pipes.grpc;
+
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.pipes.core.exception.TikaPipesException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Threads used to serve fetch and parse requests.
+ * <p>
+ * Fetching is mostly waiting on HTTP, S3, Graph or Drive, while parsing is CPU bound. With
+ * {@code executor.fetchMode: virtual} gRPC calls and fetches run on virtual threads, so thousands of slow fetches can be
+ * in progress without thousands of OS threads. Either way, parses are handed to a fixed pool of
+ * {@code executor.parseThreads} platform threads (0 means one per core) so that the number of fetches in progress
+ * never turns into the same number of parses competing for the CPU.
+ * <p>
+ * Virtual threads need Java 21. The server is built for Java 17, so they are looked up reflectively and
+ * {@code virtual} falls back to platform threads, with a warning, on older runtimes.
+ */
+@Component
+@Slf4j
+public class TikaExecutors {
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    @FunctionalInterface
+    public interface Task<T> {
+        T call() throws IOException;
+    }
+
+    @Value("${executor.fetchMode:platform}")
+    private String fetchMode;
+
+    @Value("${executor.parseThreads:0}")
+    private Integer parseThreads;
+
+    @Value("${grpc.server.numThreads:4}")
+    private Integer serverThreads;
+
+    /**
+     * Creates a virtual thread per task executor, or returns null without virtual threads. Replaced in tests.
+     */
+    Supplier<ExecutorService> virtualExecutorFactory = TikaExecutors::newVirtualThreadPerTaskExecutor;
+
+    private boolean virtual;
+    private ExecutorService fetchExecutor;
+    private ExecutorService parseExecutor;
+    private ExecutorService serverExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (VIRTUAL.equalsIgnoreCase(fetchMode)) {
+            fetchExecutor = virtualExecutorFactory.get();
+            virtual = fetchExecutor != null;
+        } else if (!PLATFORM.equalsIgnoreCase(fetchMode)) {
+            throw new IllegalArgumentException("executor.fetchMode must be " + PLATFORM + " or " + VIRTUAL + " but was " + fetchMode);
+        }
+        if (virtual) {
+            serverExecutor = virtualExecutorFactory.get();
+        } else {
+            fetchExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("tika-fetch-", true));
+            serverExecutor = Executors.newFixedThreadPool(serverThreads, new NamedThreadFactory("grpc-server-", false));
+        }
+        int parsePoolSize = parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors();
+        parseExecutor = Executors.newFixedThreadPool(parsePoolSize, new NamedThreadFactory("tika-parse-runner-", true));
+        // carry the submitting thread's trace context over to the fetch and parse threads
+        fetchExecutor = Context.taskWrapping(fetchExecutor);
+        parseExecutor = Context.taskWrapping(parseExecutor);
+        log.info("Fetching on {} threads, parsing on {} platform threads", virtual ? VIRTUAL : PLATFORM, parsePoolSize);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        fetchExecutor.shutdownNow();
+        parseExecutor.shutdownNow();
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * @return true if fetches run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return executor for work that spends most of its time blocked on I/O
+     */
+    public ExecutorService getFetchExecutor() {
+        return fetchExecutor;
+    }
+
+    /**
+     * @return executor for gRPC calls. A fixed pool of {@code grpc.server.numThreads} unless fetches run on virtual
+     * threads, in which case calls do too.
+     */
+    public ExecutorService getServerExecutor() {
+        return serverExecutor;
+    }
+
+    /**
+     * Run a CPU bound task on the parse pool and wait for it. Blocks while every parse thread is busy.
+     */
+    public <T> T parse(Task<T> task) throws IOException {
+        return await(submitParse(task));
+    }
+
+    /**
+     * Start a CPU bound task on the parse pool without waiting for it, for callers that have other work to do while
+     * it runs. It waits in the pool's queue while every parse thread is busy.
+     */
+    public <T> Future<T> submitParse(Task<T> task) {
+        return parseExecutor.submit(task::call);
+    }
+
+    /**
+     * Wait for a task from {@link #submitParse} and throw what it threw.
+     */
+    public static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new TikaPipesException("Interrupted while waiting for a parse thread", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TikaPipesException("Parse failed", cause);
+        }
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, or null if this JVM does not have virtual threads.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads need Java 21 or later, running on Java {} - falling back to platform threads", Runtime.version().feature());
+            return null;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final boolean daemon;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        private NamedThreadFactory(String namePrefix, boolean daemon) {
+            this.namePrefix = namePrefix;
+            this.daemon = daemon;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(daemon);
+            return thread;
+        }
+    }
+}
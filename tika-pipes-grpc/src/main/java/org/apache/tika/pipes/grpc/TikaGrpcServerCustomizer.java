@@ -2,18 +2,25 @@ package org.apache.tika.pipes.grpc;
 
 import grpcstarter.server.GrpcServerCustomizer;
 import io.grpc.ServerBuilder;
-import org.springframework.beans.factory.annotation.Value;
+import org.apache.tika.pipes.tracing.TikaTracing;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.Executors;
-
 @Component
 public class TikaGrpcServerCustomizer implements GrpcServerCustomizer {
-    @Value("${grpc.server.numThreads}")
-    private int numThreads;
+    @Autowired
+    private TikaExecutors tikaExecutors;
+
+    @Autowired
+    private TikaMetrics tikaMetrics;
+
+    @Autowired
+    private TikaTracing tikaTracing;
 
     @Override
     public void customize(ServerBuilder<?> serverBuilder) {
-        serverBuilder.executor(Executors.newFixedThreadPool(numThreads));
+        serverBuilder.executor(tikaExecutors.getServerExecutor());
+        serverBuilder.intercept(tikaMetrics.getServerInterceptor());
+        serverBuilder.intercept(tikaTracing.getServerInterceptor());
     }
 }
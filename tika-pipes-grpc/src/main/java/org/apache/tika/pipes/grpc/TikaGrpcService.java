@@ -9,6 +9,11 @@ import grpcstarter.server.GrpcService;
 import io.grpc.Status;
 import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -20,10 +25,13 @@ import org.apache.tika.DeletePipeIteratorReply;
 import org.apache.tika.DeletePipeIteratorRequest;
 import org.apache.tika.FetchAndParseReply;
 import org.apache.tika.FetchAndParseRequest;
+import org.apache.tika.FetcherCircuitBreaker;
 import org.apache.tika.GetEmitterConfigJsonSchemaReply;
 import org.apache.tika.GetEmitterConfigJsonSchemaRequest;
 import org.apache.tika.GetEmitterReply;
 import org.apache.tika.GetEmitterRequest;
+import org.apache.tika.GetFetcherCircuitBreakersReply;
+import org.apache.tika.GetFetcherCircuitBreakersRequest;
 import org.apache.tika.GetFetcherConfigJsonSchemaReply;
 import org.apache.tika.GetFetcherConfigJsonSchemaRequest;
 import org.apache.tika.GetFetcherReply;
@@ -58,22 +66,30 @@ import org.apache.tika.pipes.core.emitter.DefaultEmitterConfig;
 import org.apache.tika.pipes.core.emitter.EmitOutput;
 import org.apache.tika.pipes.core.emitter.Emitter;
 import org.apache.tika.pipes.core.emitter.EmitterConfig;
+import org.apache.tika.pipes.core.exception.AdmissionRejectedException;
+import org.apache.tika.pipes.core.exception.CircuitBreakerOpenException;
 import org.apache.tika.pipes.core.exception.TikaPipesException;
 import org.apache.tika.pipes.core.exception.TikaServerParseException;
 import org.apache.tika.pipes.core.iterators.DefaultPipeIteratorConfig;
-import org.apache.tika.pipes.core.iterators.PipeInput;
 import org.apache.tika.pipes.core.iterators.PipeIterator;
 import org.apache.tika.pipes.core.iterators.PipeIteratorConfig;
 import org.apache.tika.pipes.core.parser.ParseService;
 import org.apache.tika.pipes.fetchers.core.DefaultFetcherConfig;
 import org.apache.tika.pipes.fetchers.core.Fetcher;
 import org.apache.tika.pipes.fetchers.core.FetcherConfig;
+import org.apache.tika.pipes.fetchers.core.conditional.ConditionalFetch;
+import org.apache.tika.pipes.job.EmitBatcher;
 import org.apache.tika.pipes.job.JobStatus;
+import org.apache.tika.pipes.job.PipeJob;
 import org.apache.tika.pipes.model.FetchAndParseStatus;
+import org.apache.tika.pipes.plugin.ManagedEmitter;
+import org.apache.tika.pipes.plugin.ManagedFetcher;
+import org.apache.tika.pipes.plugin.ResolvedPluginCache;
 import org.apache.tika.pipes.repo.EmitterRepository;
 import org.apache.tika.pipes.repo.FetcherRepository;
 import org.apache.tika.pipes.repo.JobStatusRepository;
 import org.apache.tika.pipes.repo.PipeIteratorRepository;
+import org.apache.tika.pipes.tracing.TikaTracing;
 import org.jetbrains.annotations.NotNull;
 import org.pf4j.PluginManager;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -83,16 +99,23 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
@@ -101,6 +124,14 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
     private final ExecutorService executorService = Executors.newCachedThreadPool(new TikaRunnerThreadFactory());
     public static final TypeReference<Map<String, Object>> MAP_STRING_OBJ_TYPE_REF = new TypeReference<>() {
     };
+    /**
+     * Documents a streaming parse may get ahead of the client before it waits.
+     */
+    private static final int STREAMING_BUFFER_DOCUMENTS = 16;
+    /**
+     * Put after the last document of a streaming parse.
+     */
+    private static final Map<String, Object> END_OF_DOCUMENTS = Collections.unmodifiableMap(new HashMap<>());
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -128,6 +159,112 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
     @Autowired
     private PluginManager pluginManager;
 
+    @Autowired
+    private TikaExecutors tikaExecutors;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private FetcherCircuitBreakers fetcherCircuitBreakers;
+
+    @Autowired
+    private ConditionalFetches conditionalFetches;
+
+    @Autowired
+    private TikaMetrics tikaMetrics;
+
+    @Autowired
+    private TikaTracing tikaTracing;
+
+    /**
+     * How many requests of one bidirectional fetch and parse stream are processed in parallel.
+     */
+    @org.springframework.beans.factory.annotation.Value("${grpc.server.streamConcurrency:8}")
+    private Integer streamConcurrency;
+
+    @org.springframework.beans.factory.annotation.Value("${pipeJob.fetchParallelism:4}")
+    private Integer pipeJobFetchParallelism;
+
+    /**
+     * 0 means one per available processor.
+     */
+    @org.springframework.beans.factory.annotation.Value("${pipeJob.parseParallelism:0}")
+    private Integer pipeJobParseParallelism;
+
+    @org.springframework.beans.factory.annotation.Value("${pipeJob.emitParallelism:1}")
+    private Integer pipeJobEmitParallelism;
+
+    @org.springframework.beans.factory.annotation.Value("${pipeJob.queueCapacity:100}")
+    private Integer pipeJobQueueCapacity;
+
+    @org.springframework.beans.factory.annotation.Value("${pipeJob.emitBatchSize:100}")
+    private Integer pipeJobEmitBatchSize;
+
+    @org.springframework.beans.factory.annotation.Value("${pipeJob.emitBatchMaxBytes:10000000}")
+    private Long pipeJobEmitBatchMaxBytes;
+
+    @org.springframework.beans.factory.annotation.Value("${pipeJob.emitBatchLingerMillis:1000}")
+    private Long pipeJobEmitBatchLingerMillis;
+
+    private final ResolvedPluginCache<ManagedFetcher> resolvedFetchers = new ResolvedPluginCache<>(ManagedFetcher::close);
+    private final ResolvedPluginCache<ManagedEmitter> resolvedEmitters = new ResolvedPluginCache<>(ManagedEmitter::close);
+    private final ResolvedPluginCache<ResolvedPipeIterator> resolvedPipeIterators = new ResolvedPluginCache<>();
+
+    /**
+     * A saved pipe iterator config with the iterator's class. Iterators keep their position, so each pipe job makes
+     * its own.
+     */
+    private record ResolvedPipeIterator(String pluginId, Class<? extends PipeIterator> type, PipeIteratorConfig config) {
+    }
+
+    private ManagedFetcher resolveFetcher(String fetcherId) throws IOException {
+        DefaultFetcherConfig fetcherConfig = fetcherRepository.findByFetcherId(fetcherId);
+        if (fetcherConfig == null) {
+            return null;
+        }
+        // The fetcherRepository returns objects in the gprc server's classloader
+        // But the fetcher.fetch will be done within the pf4j plugin.
+        // If you send DefaultFetcherConfig and try to cast to the respective config you'll get a class loading error.
+        // To get past this, get the correct class from the plugin manager, and convert to it.
+        FetcherConfig fetcherConfigFromPluginManager = objectMapper.readValue(fetcherConfig.getConfigJson(), getFetcherConfigClassFromPluginManager(fetcherConfig));
+        return new ManagedFetcher(fetcherId, fetcherConfig.getPluginId(), getFetcher(fetcherConfig.getPluginId()), fetcherConfigFromPluginManager);
+    }
+
+    /**
+     * Close every fetcher once its running fetches return, and every emitter once its pipe jobs finish.
+     */
+    @PreDestroy
+    public void closeFetchers() {
+        resolvedFetchers.invalidateAll();
+        resolvedEmitters.invalidateAll();
+    }
+
+    private ManagedEmitter resolveEmitter(String emitterId) throws IOException {
+        DefaultEmitterConfig emitterConfig = emitterRepository.findByEmitterId(emitterId);
+        if (emitterConfig == null) {
+            return null;
+        }
+        EmitterConfig emitterConfigFromPluginManager = objectMapper.readValue(emitterConfig.getConfigJson(), getEmitterConfigClassFromPluginManager(emitterConfig));
+        Emitter emitter = getEmitter(emitterConfig.getPluginId());
+        emitter.init(emitterConfigFromPluginManager);
+        return new ManagedEmitter(emitterId, emitterConfig.getPluginId(), emitter);
+    }
+
+    private ResolvedPipeIterator resolvePipeIterator(String pipeIteratorId) throws IOException {
+        DefaultPipeIteratorConfig pipeIteratorConfig = pipeIteratorRepository.findByPipeIteratorId(pipeIteratorId);
+        if (pipeIteratorConfig == null) {
+            return null;
+        }
+        PipeIteratorConfig pipeIteratorConfigFromPluginManager = objectMapper.readValue(pipeIteratorConfig.getConfigJson(), getPipeIteratorConfigClassFromPluginManager(pipeIteratorConfig));
+        Class<? extends PipeIterator> type = pluginManager
+                .getExtensionClasses(PipeIterator.class, pipeIteratorConfig.getPluginId())
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new TikaPipesException("Could not find PipeIterator extension for plugin " + pipeIteratorConfig.getPluginId()));
+        return new ResolvedPipeIterator(pipeIteratorConfig.getPluginId(), type, pipeIteratorConfigFromPluginManager);
+    }
+
     private Fetcher getFetcher(String pluginId) {
         return pluginManager
                 .getExtensions(Fetcher.class, pluginId)
@@ -184,14 +321,6 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
         return emitterConfig;
     }
 
-    private PipeIterator getPipeIterator(String pluginId) {
-        return pluginManager
-                .getExtensions(PipeIterator.class, pluginId)
-                .stream()
-                .findFirst()
-                .orElseThrow(() -> new TikaPipesException("Could not find PipeIterator extension for plugin " + pluginId));
-    }
-
     private PipeIteratorConfig getPipeIteratorConfig(String pluginId) {
         return pluginManager
                 .getExtensions(PipeIteratorConfig.class, pluginId)
@@ -223,6 +352,8 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
                     .setPluginId(request.getPluginId())
                     .setConfigJson(request.getFetcherConfigJson());
             fetcherRepository.save(fetcherConfig.getFetcherId(), newFetcherConfig(request));
+            resolvedFetchers.invalidate(fetcherConfig.getFetcherId());
+            fetcherCircuitBreakers.reset(fetcherConfig.getFetcherId());
             responseObserver.onNext(SaveFetcherReply
                     .newBuilder()
                     .setFetcherId(request.getFetcherId())
@@ -280,6 +411,9 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
         boolean exists = fetcherRepository.findByFetcherId(request.getFetcherId()) != null;
         if (exists) {
             fetcherRepository.deleteByFetcherId(request.getFetcherId());
+            resolvedFetchers.invalidate(request.getFetcherId());
+            fetcherCircuitBreakers.reset(request.getFetcherId());
+            conditionalFetches.deleteValidators(request.getFetcherId());
         }
         responseObserver.onNext(DeleteFetcherReply
                 .newBuilder()
@@ -296,44 +430,86 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
         try {
             fetchAndParseImpl(request, responseObserver);
             responseObserver.onCompleted();
+        } catch (AdmissionRejectedException e) {
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).withCause(e).asException());
+        } catch (CircuitBreakerOpenException e) {
+            responseObserver.onError(Status.UNAVAILABLE.withDescription(e.getMessage()).withCause(e).asException());
         } catch (Exception e) {
             responseObserver.onError(Status.NOT_FOUND.withDescription("Could not fetch and parse - " + ExceptionUtils.getStackTrace(e)).withCause(e).asException());
         }
     }
 
     private void fetchAndParseImpl(FetchAndParseRequest request, StreamObserver<FetchAndParseReply> responseObserver) throws IOException {
-        DefaultFetcherConfig fetcherConfig = fetcherRepository.findByFetcherId(request.getFetcherId());
-        if (fetcherConfig == null) {
-            throw new IOException("Could not find fetcher with ID " + request.getFetcherId());
+        responseObserver.onNext(fetchAndParse(request));
+    }
+
+    /**
+     * Fetch on the calling thread, which may be virtual, then parse on the bounded parse pool once admitted.
+     */
+    private FetchAndParseReply fetchAndParse(FetchAndParseRequest request) throws IOException {
+        return tikaTracing.inSpan("TikaGrpcService.fetchAndParse", spanAttributes(request), () -> {
+            Map<String, Object> responseMetadata = new HashMap<>();
+            InputStream inputStream = fetch(request, responseMetadata);
+            if (ConditionalFetch.isNotModified(responseMetadata)) {
+                inputStream.close();
+                return notModified(request);
+            }
+            try (AdmissionController.Permit permit = admit(request, inputStream, responseMetadata, true)) {
+                return saveValidatorsIfParsed(request, responseMetadata, tikaExecutors.parse(() -> parse(request, inputStream)));
+            }
+        });
+    }
+
+    private static FetchAndParseReply notModified(FetchAndParseRequest request) {
+        log.info("Not parsing fetchKey={} with fetcherId={} because it has not changed since it was last parsed", request.getFetchKey(), request.getFetcherId());
+        return FetchAndParseReply.newBuilder()
+                                 .setFetchKey(request.getFetchKey())
+                                 .setStatus(FetchAndParseStatus.FETCH_NOT_MODIFIED.name())
+                                 .build();
+    }
+
+    private FetchAndParseReply saveValidatorsIfParsed(FetchAndParseRequest request, Map<String, Object> responseMetadata, FetchAndParseReply reply) {
+        if (FetchAndParseStatus.FETCH_AND_PARSE_SUCCESS.name().equals(reply.getStatus())) {
+            conditionalFetches.saveValidators(request.getFetcherId(), request.getFetchKey(), responseMetadata);
         }
-        Fetcher fetcher = getFetcher(fetcherConfig.getPluginId());
-        HashMap<String, Object> responseMetadata = new HashMap<>();
-        // The fetcherRepository returns objects in the gprc server's classloader
-        // But the fetcher.fetch will be done within the pf4j plugin.
-        // If you send DefaultFetcherConfig and try to cast to the respective config you'll get a class loading error.
-        // To get past this, get the correct class from the plugin manager, and convert to it.
-        FetcherConfig fetcherConfigFromPluginManager = objectMapper.readValue(fetcherConfig.getConfigJson(), getFetcherConfigClassFromPluginManager(fetcherConfig));
-        Map<String, Object> fetchMetadata = objectMapper.readValue(StringUtils.defaultIfBlank(request.getFetchMetadataJson(), "{}"), MAP_STRING_OBJ_TYPE_REF);
-        InputStream inputStream = fetcher.fetch(fetcherConfigFromPluginManager, request.getFetchKey(), fetchMetadata, responseMetadata);
-        FetchAndParseReply.Builder builder = FetchAndParseReply.newBuilder();
-        builder.setFetchKey(request.getFetchKey());
+        return reply;
+    }
 
-        Map<String, Object> addedMetadata = objectMapper.readValue(StringUtils.defaultIfBlank(request.getAddedMetadataJson(), "{}"), MAP_STRING_OBJ_TYPE_REF);
+    private static Map<String, String> spanAttributes(FetchAndParseRequest request) {
+        return Map.of("tika.fetcher_id", request.getFetcherId(), "tika.fetch_key", request.getFetchKey());
+    }
 
-        ParseContext parseContext;
-        if (StringUtils.isNotBlank(request.getParseContextJson())) {
-            parseContext = objectMapper.readValue(request.getParseContextJson(), ParseContext.class);
-        } else {
-            parseContext = new ParseContext();
+    /**
+     * Wait until the fetched document may be parsed. The fetched stream is closed if it is rejected.
+     *
+     * @param timeout false to wait as long as it takes instead of {@code admission.queueTimeoutMillis}
+     */
+    private AdmissionController.Permit admit(FetchAndParseRequest request, InputStream inputStream, Map<String, Object> responseMetadata, boolean timeout) throws IOException {
+        long contentLength = AdmissionController.getContentLength(responseMetadata);
+        try {
+            return timeout ? admissionController.acquire(request.getFetchKey(), contentLength) : admissionController.acquireWithoutTimeout(request.getFetchKey(), contentLength);
+        } catch (RuntimeException e) {
+            inputStream.close();
+            throw e;
         }
+    }
+
+    private FetchAndParseReply parse(FetchAndParseRequest request, InputStream inputStream) throws IOException {
+        FetchAndParseReply.Builder builder = FetchAndParseReply.newBuilder();
+        builder.setFetchKey(request.getFetchKey());
+
+        Map<String, Object> addedMetadata = getAddedMetadata(request);
+        ParseContext parseContext = getParseContext(request);
+        long start = System.nanoTime();
+        String contentType = null;
         try {
             log.info("Beginning parse for fetchKey={} with fetcherId={}", request.getFetchKey(), request.getFetcherId());
-            for (Map<String, Object> metadata : parseService.parseDocument(inputStream, parseContext)) {
-                Metadata.Builder metadataBuilder = Metadata.newBuilder();
-                putMetadataFields(metadata, metadataBuilder);
-                putMetadataFields(addedMetadata, metadataBuilder);
-                builder.addMetadata(metadataBuilder.build());
+            List<Map<String, Object>> metadataList = parseService.parseDocument(inputStream, parseContext, request.getParseContextJson());
+            for (Map<String, Object> metadata : metadataList) {
+                builder.addMetadata(toMetadata(metadata, addedMetadata));
             }
+            // the container document comes first
+            contentType = metadataList.isEmpty() ? null : getContentType(metadataList.get(0));
             builder.setStatus(FetchAndParseStatus.FETCH_AND_PARSE_SUCCESS.name());
             log.info("Successful parse for fetchKey={} with fetcherId={}", request.getFetchKey(), request.getFetcherId());
         } catch (TikaServerParseException | TikaException e) {
@@ -341,7 +517,198 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
             builder.setStatus(FetchAndParseStatus.FETCH_AND_PARSE_EXCEPTION.name());
             builder.setErrorMessage(ExceptionUtils.getRootCauseMessage(e));
         }
-        responseObserver.onNext(builder.build());
+        tikaMetrics.recordParse(contentType, builder.getStatus(), System.nanoTime() - start, builder.getMetadataCount());
+        return builder.build();
+    }
+
+    /**
+     * Like {@link #fetchAndParseImpl} but sends one reply per document as soon as it has been parsed, waiting for
+     * the client to be ready before each one. If the parse fails part way, the documents already sent are followed by
+     * a final reply with the error.
+     * <p>
+     * The calling thread fetches, and sends and waits for the client, while the parse runs on the parse pool and hands
+     * each document over through a queue of {@link #STREAMING_BUFFER_DOCUMENTS}. The parse only waits for a slow
+     * client once that many documents are waiting to be sent.
+     */
+    private void fetchAndParseStreamingImpl(FetchAndParseRequest request, ServerCallStreamObserver<FetchAndParseReply> responseObserver, OutboundFlowControl flowControl) throws IOException {
+        Map<String, Object> responseMetadata = new HashMap<>();
+        InputStream inputStream = fetch(request, responseMetadata);
+        if (ConditionalFetch.isNotModified(responseMetadata)) {
+            inputStream.close();
+            responseObserver.onNext(notModified(request));
+            return;
+        }
+        Map<String, Object> addedMetadata = getAddedMetadata(request);
+        ParseContext parseContext = getParseContext(request);
+        AdmissionController.Permit permit = admit(request, inputStream, responseMetadata, true);
+        BlockingQueue<Map<String, Object>> parsed = new ArrayBlockingQueue<>(STREAMING_BUFFER_DOCUMENTS);
+        AtomicBoolean stopped = new AtomicBoolean();
+        // the container document comes last
+        String contentType = null;
+        int documents = 0;
+        long start = System.nanoTime();
+        log.info("Beginning streaming parse for fetchKey={} with fetcherId={}", request.getFetchKey(), request.getFetcherId());
+        Future<Void> parse;
+        try {
+            parse = tikaExecutors.submitParse(() -> {
+                try {
+                    parseService.parseDocument(inputStream, parseContext, metadata -> handOver(request, parsed, metadata, stopped));
+                } catch (TikaException e) {
+                    throw new TikaServerParseException(e);
+                } finally {
+                    handOver(request, parsed, END_OF_DOCUMENTS, stopped);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            permit.close();
+            inputStream.close();
+            throw e;
+        }
+        try {
+            while (true) {
+                Map<String, Object> metadata = parsed.poll(1, TimeUnit.SECONDS);
+                if (metadata == END_OF_DOCUMENTS || (metadata == null && parse.isDone() && parsed.isEmpty())) {
+                    break;
+                } else if (metadata == null) {
+                    continue;
+                }
+                if (!flowControl.awaitReady()) {
+                    throw new TikaPipesException("Client cancelled fetch and parse of " + request.getFetchKey());
+                }
+                responseObserver.onNext(FetchAndParseReply.newBuilder()
+                                                          .setFetchKey(request.getFetchKey())
+                                                          .addMetadata(toMetadata(metadata, addedMetadata))
+                                                          .setStatus(FetchAndParseStatus.FETCH_AND_PARSE_SUCCESS.name())
+                                                          .build());
+                contentType = getContentType(metadata);
+                documents++;
+            }
+            TikaExecutors.await(parse);
+            tikaMetrics.recordParse(contentType, FetchAndParseStatus.FETCH_AND_PARSE_SUCCESS.name(), System.nanoTime() - start, documents);
+            conditionalFetches.saveValidators(request.getFetcherId(), request.getFetchKey(), responseMetadata);
+            log.info("Successful streaming parse for fetchKey={} with fetcherId={}", request.getFetchKey(), request.getFetcherId());
+        } catch (TikaServerParseException e) {
+            log.info("Failed streaming parse for fetchKey={} with fetcherId={} with message={}", request.getFetchKey(), request.getFetcherId(), e.getMessage());
+            responseObserver.onNext(FetchAndParseReply.newBuilder()
+                                                      .setFetchKey(request.getFetchKey())
+                                                      .setStatus(FetchAndParseStatus.FETCH_AND_PARSE_EXCEPTION.name())
+                                                      .setErrorMessage(ExceptionUtils.getRootCauseMessage(e))
+                                                      .build());
+            tikaMetrics.recordParse(contentType, FetchAndParseStatus.FETCH_AND_PARSE_EXCEPTION.name(), System.nanoTime() - start, documents);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TikaPipesException("Interrupted while streaming " + request.getFetchKey(), e);
+        } finally {
+            stopped.set(true);
+            // the parse stops at its next document once stopped, and keeps its admission until then
+            awaitQuietly(parse);
+            permit.close();
+        }
+    }
+
+    /**
+     * Pass a parsed document from the parse thread to the thread that sends it.
+     */
+    private static void handOver(FetchAndParseRequest request, BlockingQueue<Map<String, Object>> parsed, Map<String, Object> metadata, AtomicBoolean stopped) {
+        try {
+            while (!parsed.offer(metadata, 100, TimeUnit.MILLISECONDS)) {
+                if (stopped.get()) {
+                    throw new TikaPipesException("Streaming of " + request.getFetchKey() + " already stopped");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TikaPipesException("Interrupted while streaming " + request.getFetchKey(), e);
+        }
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // already handled, or the call failed for another reason
+        }
+    }
+
+    private static String getContentType(Map<String, Object> metadata) {
+        Object contentType = metadata.get(org.apache.tika.metadata.Metadata.CONTENT_TYPE);
+        if (contentType instanceof String[] values) {
+            return values.length > 0 ? values[0] : null;
+        }
+        return contentType == null ? null : contentType.toString();
+    }
+
+    private InputStream fetch(FetchAndParseRequest request, Map<String, Object> responseMetadata) throws IOException {
+        ManagedFetcher managedFetcher = getManagedFetcher(request.getFetcherId());
+        FetcherCircuitBreakers.Permit circuitBreakerPermit = fetcherCircuitBreakers.acquire(request.getFetcherId());
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean backendFailure = true;
+        try {
+            InputStream inputStream;
+            try {
+                inputStream = fetch(managedFetcher, request, responseMetadata);
+            } catch (ManagedFetcher.FetcherClosedException e) {
+                // the config was saved or deleted after this fetcher was looked up
+                managedFetcher = getManagedFetcher(request.getFetcherId());
+                inputStream = fetch(managedFetcher, request, responseMetadata);
+            }
+            success = true;
+            return inputStream;
+        } catch (IOException | RuntimeException e) {
+            backendFailure = managedFetcher.isBackendFailure(e);
+            throw e;
+        } finally {
+            if (success) {
+                circuitBreakerPermit.onSuccess();
+                if (ConditionalFetch.isNotModified(responseMetadata)) {
+                    tikaMetrics.recordNotModified(request.getFetcherId());
+                }
+            } else {
+                circuitBreakerPermit.onFailure(backendFailure);
+            }
+            tikaMetrics.recordFetch(managedFetcher.getPluginId(), System.nanoTime() - start, success, AdmissionController.getContentLength(responseMetadata));
+        }
+    }
+
+    private ManagedFetcher getManagedFetcher(String fetcherId) throws IOException {
+        ManagedFetcher managedFetcher = resolvedFetchers.get(fetcherId, this::resolveFetcher);
+        if (managedFetcher == null) {
+            throw new IOException("Could not find fetcher with ID " + fetcherId);
+        }
+        return managedFetcher;
+    }
+
+    /**
+     * @throws ManagedFetcher.FetcherClosedException if the fetcher was closed before it could fetch
+     */
+    private InputStream fetch(ManagedFetcher managedFetcher, FetchAndParseRequest request, Map<String, Object> responseMetadata) throws IOException {
+        Map<String, Object> fetchMetadata = objectMapper.readValue(StringUtils.defaultIfBlank(request.getFetchMetadataJson(), "{}"), MAP_STRING_OBJ_TYPE_REF);
+        if (managedFetcher.isConditionalFetch()) {
+            conditionalFetches.putValidators(request.getFetcherId(), request.getFetchKey(), fetchMetadata);
+        }
+        return tikaTracing.inSpan("Fetcher.fetch", Map.of("tika.fetcher.plugin", managedFetcher.getPluginId()), () -> managedFetcher.fetch(request.getFetchKey(), fetchMetadata, responseMetadata));
+    }
+
+    private Map<String, Object> getAddedMetadata(FetchAndParseRequest request) throws JsonProcessingException {
+        return objectMapper.readValue(StringUtils.defaultIfBlank(request.getAddedMetadataJson(), "{}"), MAP_STRING_OBJ_TYPE_REF);
+    }
+
+    private ParseContext getParseContext(FetchAndParseRequest request) throws JsonProcessingException {
+        if (StringUtils.isNotBlank(request.getParseContextJson())) {
+            return objectMapper.readValue(request.getParseContextJson(), ParseContext.class);
+        }
+        return new ParseContext();
+    }
+
+    private Metadata toMetadata(Map<String, Object> metadata, Map<String, Object> addedMetadata) throws JsonProcessingException {
+        Metadata.Builder metadataBuilder = Metadata.newBuilder();
+        putMetadataFields(metadata, metadataBuilder);
+        putMetadataFields(addedMetadata, metadataBuilder);
+        return metadataBuilder.build();
     }
 
     private void putMetadataFields(Map<String, Object> metadata, Metadata.Builder metadataBuilder) throws JsonProcessingException {
@@ -409,12 +776,23 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
         ServerCallStreamObserver<FetchAndParseReply> responseObserver =
                 (ServerCallStreamObserver<FetchAndParseReply>) plainResponseObserver;
         responseObserver.setCompression("gzip");
-        try {
-            fetchAndParseImpl(request, responseObserver);
-            responseObserver.onCompleted();
-        } catch (IOException e) {
-            responseObserver.onError(Status.INTERNAL.withDescription("Could not fetch and parse - " + ExceptionUtils.getStackTrace(e)).withCause(e).asException());
-        }
+        OutboundFlowControl flowControl = new OutboundFlowControl(responseObserver);
+        // Stream from another thread so this call's on-ready callbacks are not blocked behind the parse
+        tikaExecutors.getFetchExecutor().submit(() -> {
+            try {
+                tikaTracing.inSpan("TikaGrpcService.fetchAndParseStreaming", spanAttributes(request), () -> {
+                    fetchAndParseStreamingImpl(request, responseObserver, flowControl);
+                    return null;
+                });
+                responseObserver.onCompleted();
+            } catch (AdmissionRejectedException e) {
+                responseObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).withCause(e).asException());
+            } catch (CircuitBreakerOpenException e) {
+                responseObserver.onError(Status.UNAVAILABLE.withDescription(e.getMessage()).withCause(e).asException());
+            } catch (Exception e) {
+                responseObserver.onError(Status.INTERNAL.withDescription("Could not fetch and parse - " + ExceptionUtils.getStackTrace(e)).withCause(e).asException());
+            }
+        });
     }
 
     @Override
@@ -422,30 +800,7 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
         ServerCallStreamObserver<FetchAndParseReply> responseObserver =
                 (ServerCallStreamObserver<FetchAndParseReply>) plainResponseObserver;
         responseObserver.setCompression("gzip");
-        return fetchAndParseAsync(responseObserver);
-    }
-
-    private StreamObserver<FetchAndParseRequest> fetchAndParseAsync(StreamObserver<FetchAndParseReply> responseObserver) {
-        return new StreamObserver<>() {
-            @Override
-            public void onNext(FetchAndParseRequest fetchAndParseRequest) {
-                try {
-                    fetchAndParseImpl(fetchAndParseRequest, responseObserver);
-                } catch (Exception e) {
-                    responseObserver.onError(Status.NOT_FOUND.withDescription("Could not handle next fetch and parse request " + fetchAndParseRequest + " - " + ExceptionUtils.getStackTrace(e)).withCause(e).asRuntimeException());
-                }
-            }
-
-            @Override
-            public void onError(Throwable throwable) {
-                log.error("Parse error occurred", throwable);
-            }
-
-            @Override
-            public void onCompleted() {
-                responseObserver.onCompleted();
-            }
-        };
+        return new ConcurrentFetchAndParseStream(responseObserver, streamConcurrency, tikaExecutors.getFetchExecutor(), this::fetchAndParse);
     }
 
     @Override
@@ -469,6 +824,34 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
         responseObserver.onCompleted();
     }
 
+    @Override
+    public void getFetcherCircuitBreakers(GetFetcherCircuitBreakersRequest request, StreamObserver<GetFetcherCircuitBreakersReply> plainResponseObserver) {
+        ServerCallStreamObserver<GetFetcherCircuitBreakersReply> responseObserver =
+                (ServerCallStreamObserver<GetFetcherCircuitBreakersReply>) plainResponseObserver;
+        responseObserver.setCompression("gzip");
+        List<FetcherCircuitBreakers.Snapshot> snapshots;
+        if (StringUtils.isBlank(request.getFetcherId())) {
+            snapshots = fetcherCircuitBreakers.getSnapshots();
+        } else {
+            FetcherCircuitBreakers.Snapshot snapshot = fetcherCircuitBreakers.getSnapshot(request.getFetcherId());
+            snapshots = snapshot == null ? List.of() : List.of(snapshot);
+        }
+        GetFetcherCircuitBreakersReply.Builder builder = GetFetcherCircuitBreakersReply.newBuilder();
+        for (FetcherCircuitBreakers.Snapshot snapshot : snapshots) {
+            builder.addCircuitBreakers(FetcherCircuitBreaker.newBuilder()
+                    .setFetcherId(snapshot.fetcherId())
+                    .setState(snapshot.state().name())
+                    .setWindowCalls(snapshot.windowCalls())
+                    .setFailureRate(snapshot.failureRate())
+                    .setSlowCallRate(snapshot.slowCallRate())
+                    .setRemainingOpenMillis(snapshot.remainingOpenMillis())
+                    .setRejectedCount(snapshot.rejectedCount())
+                    .build());
+        }
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
+
     @Override
     public void saveEmitter(SaveEmitterRequest request, StreamObserver<SaveEmitterReply> plainResponseObserver) {
         ServerCallStreamObserver<SaveEmitterReply> responseObserver =
@@ -479,6 +862,7 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
                      .setPluginId(request.getPluginId())
                      .setConfigJson(request.getEmitterConfigJson());
         emitterRepository.save(emitterConfig.getEmitterId(), emitterConfig);
+        resolvedEmitters.invalidate(emitterConfig.getEmitterId());
         responseObserver.onNext(SaveEmitterReply.newBuilder().setEmitterId(request.getEmitterId()).build());
         responseObserver.onCompleted();
     }
@@ -515,6 +899,7 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
         boolean exists = emitterRepository.findByEmitterId(request.getEmitterId()) != null;
         if (exists) {
             emitterRepository.deleteByEmitterId(request.getEmitterId());
+            resolvedEmitters.invalidate(request.getEmitterId());
         }
         responseObserver.onNext(DeleteEmitterReply.newBuilder().setSuccess(exists).build());
         responseObserver.onCompleted();
@@ -548,6 +933,7 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
                           .setPluginId(request.getPluginId())
                           .setConfigJson(request.getPipeIteratorConfigJson());
         pipeIteratorRepository.save(pipeIteratorConfig.getPipeIteratorId(), pipeIteratorConfig);
+        resolvedPipeIterators.invalidate(pipeIteratorConfig.getPipeIteratorId());
         responseObserver.onNext(SavePipeIteratorReply.newBuilder().setPipeIteratorId(request.getPipeIteratorId()).build());
         responseObserver.onCompleted();
     }
@@ -578,6 +964,7 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
         boolean exists = pipeIteratorRepository.findByPipeIteratorId(request.getPipeIteratorId()) != null;
         if (exists) {
             pipeIteratorRepository.deleteByPipeIteratorId(request.getPipeIteratorId());
+            resolvedPipeIterators.invalidate(request.getPipeIteratorId());
         }
         responseObserver.onNext(DeletePipeIteratorReply.newBuilder().setSuccess(exists).build());
         responseObserver.onCompleted();
@@ -610,7 +997,7 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
         String jobId = UUID.randomUUID().toString();
         updateJobStatus(jobId, true, false, false);
 
-        executorService.submit(() -> runPipeJobImpl(request, responseObserver, jobId));
+        executorService.submit(Context.current().wrap(() -> runPipeJobImpl(request, jobId)));
 
         responseObserver.onNext(RunPipeJobReply.newBuilder().setPipeJobId(jobId).build());
         responseObserver.onCompleted();
@@ -625,74 +1012,143 @@ public class TikaGrpcService extends TikaGrpc.TikaImplBase {
                 .build());
     }
 
-    private void runPipeJobImpl(RunPipeJobRequest request, StreamObserver<RunPipeJobReply> responseObserver, String jobId) {
-        try {
-            DefaultPipeIteratorConfig pipeIteratorConfig = pipeIteratorRepository.findByPipeIteratorId(request.getPipeIteratorId());
-            PipeIteratorConfig pipeIteratorConfigFromPluginManager = objectMapper.readValue(pipeIteratorConfig.getConfigJson(), getPipeIteratorConfigClassFromPluginManager(pipeIteratorConfig));
-            PipeIterator pipeIterator = getPipeIterator(pipeIteratorConfig.getPluginId());
-            pipeIterator.init(pipeIteratorConfigFromPluginManager);
-            DefaultEmitterConfig emitterConfig = emitterRepository.findByEmitterId(request.getEmitterId());
-            EmitterConfig emitterConfigFromPluginManager = objectMapper.readValue(emitterConfig.getConfigJson(), getEmitterConfigClassFromPluginManager(emitterConfig));
-            Emitter emitter = getEmitter(emitterConfig.getPluginId());
-            emitter.init(emitterConfigFromPluginManager);
-            CountDownLatch countDownLatch = new CountDownLatch(1);
-            StreamObserver<FetchAndParseRequest> requestStreamObserver = fetchAndParseAsync(new StreamObserver<>() {
-                        @Override
-                        public void onNext(FetchAndParseReply fetchAndParseReply) {
-                            try {
-                                List<Map<String, List<Object>>> listOfMetadata = listOfMetadataToListOfMap(fetchAndParseReply);
-                                emitter.emit(List.of(EmitOutput.builder()
-                                        .fetchKey(fetchAndParseReply.getFetchKey())
-                                        .metadata(listOfMetadata)
-                                        .build()));
-                            } catch (IOException e) {
-                                log.error("Error emitting fetch key {}",
-                                        fetchAndParseReply.getFetchKey(), e);
-                                updateJobStatus(jobId, true, false, false);
-                                responseObserver.onError(Status.INTERNAL.withDescription("Could not handle next fetchAndParseReply " + fetchAndParseReply + " - " + ExceptionUtils.getStackTrace(e)).withCause(e).asException());
-                            }
+    private void runPipeJobImpl(RunPipeJobRequest request, String jobId) {
+        long jobStart = System.nanoTime();
+        Span jobSpan = tikaTracing.startSpan("PipeJob.run");
+        jobSpan.setAttribute("tika.pipe_job_id", jobId);
+        try (Scope jobScope = jobSpan.makeCurrent()) {
+            ResolvedPipeIterator resolvedPipeIterator = resolvedPipeIterators.get(request.getPipeIteratorId(), this::resolvePipeIterator);
+            if (resolvedPipeIterator == null) {
+                throw new IOException("Could not find pipe iterator with ID " + request.getPipeIteratorId());
+            }
+            PipeIterator pipeIterator = pluginManager.getExtensionFactory().create(resolvedPipeIterator.type());
+            pipeIterator.init(resolvedPipeIterator.config());
+            ManagedEmitter managedEmitter = acquireEmitter(request.getEmitterId());
+            Emitter emitter = tikaTracing.traced(tikaMetrics.timed(managedEmitter.getEmitter()));
+            EmitBatcher emitBatcher = new EmitBatcher(jobId, emitter,
+                    positiveOrDefault(request.getEmitBatchSize(), pipeJobEmitBatchSize),
+                    request.getEmitBatchMaxBytes() > 0 ? request.getEmitBatchMaxBytes() : pipeJobEmitBatchMaxBytes,
+                    request.getEmitBatchLingerMillis() > 0 ? request.getEmitBatchLingerMillis() : pipeJobEmitBatchLingerMillis);
+
+            AtomicLong emitted = new AtomicLong();
+            PipeJob<FetchedDocument, ParsedDocument> pipeJob = new PipeJob<>(jobId, pipeIterator,
+                    pipeInput -> {
+                        FetchAndParseRequest fetchAndParseRequest = FetchAndParseRequest.newBuilder()
+                                .setFetcherId(request.getFetcherId())
+                                .setFetchKey(pipeInput.getFetchKey())
+                                .setFetchMetadataJson(objectMapper.writeValueAsString(pipeInput.getMetadata()))
+                                .setAddedMetadataJson("{}")
+                                .build();
+                        Map<String, Object> responseMetadata = new HashMap<>();
+                        Span documentSpan = tikaTracing.startDocumentSpan(jobSpan, pipeInput.getFetchKey());
+                        try (Scope scope = documentSpan.makeCurrent()) {
+                            return new FetchedDocument(fetchAndParseRequest, fetch(fetchAndParseRequest, responseMetadata), responseMetadata, documentSpan);
+                        } catch (Exception e) {
+                            documentSpan.setStatus(StatusCode.ERROR);
+                            documentSpan.end();
+                            throw e;
                         }
-
-                        @Override
-                        public void onError(Throwable throwable) {
-                            log.error("Error streaming fetch and parse replies", throwable);
-                            countDownLatch.countDown();
+                    },
+                    fetchedDocument -> {
+                        if (ConditionalFetch.isNotModified(fetchedDocument.responseMetadata())) {
+                            fetchedDocument.close();
+                            return new ParsedDocument(fetchedDocument.request(), fetchedDocument.responseMetadata(), notModified(fetchedDocument.request()));
                         }
-
-                        @Override
-                        public void onCompleted() {
-                            log.info("Finished streaming fetch and parse replies");
-                            countDownLatch.countDown();
+                        try (Scope scope = fetchedDocument.span().makeCurrent();
+                             AdmissionController.Permit permit = admit(fetchedDocument.request(), fetchedDocument.inputStream(), fetchedDocument.responseMetadata(), false)) {
+                            return new ParsedDocument(fetchedDocument.request(), fetchedDocument.responseMetadata(),
+                                    parse(fetchedDocument.request(), fetchedDocument.inputStream()));
+                        } finally {
+                            fetchedDocument.span().end();
                         }
-                    });
-
-            while (pipeIterator.hasNext()) {
-                List<PipeInput> pipeInputs = pipeIterator.next();
-
-                for (PipeInput pipeInput : pipeInputs) {
-                    requestStreamObserver.onNext(FetchAndParseRequest.newBuilder()
-                            .setFetcherId(request.getFetcherId())
-                            .setFetchKey(pipeInput.getFetchKey())
-                            .setFetchMetadataJson(objectMapper.writeValueAsString(pipeInput.getMetadata()))
-                            .setAddedMetadataJson("{}")
-                            .build());
-                }
-            }
-            requestStreamObserver.onCompleted();
+                    },
+                    parsedDocument -> {
+                        FetchAndParseReply fetchAndParseReply = parsedDocument.reply();
+                        if (FetchAndParseStatus.FETCH_NOT_MODIFIED.name().equals(fetchAndParseReply.getStatus())) {
+                            tikaMetrics.recordPipeJobDocuments("not_modified", 1);
+                            return;
+                        }
+                        // validators are saved once the document is emitted, so that one that failed to emit is
+                        // fetched in full next time
+                        emitBatcher.add(EmitOutput.builder()
+                                .fetchKey(fetchAndParseReply.getFetchKey())
+                                .metadata(listOfMetadataToListOfMap(fetchAndParseReply))
+                                .build(), () -> {
+                            saveValidatorsIfParsed(parsedDocument.request(), parsedDocument.responseMetadata(), fetchAndParseReply);
+                            emitted.incrementAndGet();
+                            tikaMetrics.recordPipeJobDocuments("processed", 1);
+                        });
+                    },
+                    positiveOrDefault(request.getFetchParallelism(), pipeJobFetchParallelism),
+                    positiveOrDefault(request.getParseParallelism(), pipeJobParseParallelism > 0 ? pipeJobParseParallelism : Runtime.getRuntime().availableProcessors()),
+                    positiveOrDefault(request.getEmitParallelism(), pipeJobEmitParallelism),
+                    positiveOrDefault(request.getQueueCapacity(), pipeJobQueueCapacity));
             try {
-                if (!countDownLatch.await(request.getJobCompletionTimeoutSeconds(), TimeUnit.SECONDS)) {
-                    throw new TikaPipesException("Timed out waiting for job to complete");
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+                pipeJob.run(request.getJobCompletionTimeoutSeconds());
+            } finally {
+                emitBatcher.close();
+                managedEmitter.release();
+                pipeIterator.close();
             }
-            updateJobStatus(jobId, false, false, true);
+            long failures = pipeJob.getFailureCount() + emitBatcher.getFailureCount();
+            tikaMetrics.recordPipeJobDocuments("failed", failures);
+            tikaMetrics.recordPipeJob(System.nanoTime() - jobStart, failures == 0);
+            log.info("Finished pipe job {}: documents={}, emit batches={}, failures={}", jobId, emitted.get(), emitBatcher.getBatchCount(), failures);
+            updateJobStatus(jobId, false, failures > 0, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted running pipe job", e);
+            tikaMetrics.recordPipeJob(System.nanoTime() - jobStart, false);
+            jobSpan.setStatus(StatusCode.ERROR, "Interrupted");
+            updateJobStatus(jobId, false, true, true);
         } catch (Throwable e) {
             log.error("Exception running pipe job", e);
+            tikaMetrics.recordPipeJob(System.nanoTime() - jobStart, false);
+            jobSpan.recordException(e);
+            jobSpan.setStatus(StatusCode.ERROR);
             updateJobStatus(jobId, false, true, true);
+        } finally {
+            jobSpan.end();
+        }
+    }
+
+    /**
+     * @return the emitter for the ID, acquired for a pipe job. Release it when the job is done.
+     */
+    private ManagedEmitter acquireEmitter(String emitterId) throws IOException {
+        while (true) {
+            ManagedEmitter managedEmitter = resolvedEmitters.get(emitterId, this::resolveEmitter);
+            if (managedEmitter == null) {
+                throw new IOException("Could not find emitter with ID " + emitterId);
+            }
+            if (managedEmitter.acquire()) {
+                return managedEmitter;
+            }
+            // the config was saved or deleted after this emitter was looked up
         }
     }
 
+    private static int positiveOrDefault(int value, int defaultValue) {
+        return value > 0 ? value : defaultValue;
+    }
+
+    /**
+     * Output of the fetch stage of a pipe job. Closing it closes the fetched stream.
+     */
+    private record FetchedDocument(FetchAndParseRequest request, InputStream inputStream, Map<String, Object> responseMetadata, Span span) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            span.end();
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Output of the parse stage of a pipe job, with what the emit stage needs to save the document's validators.
+     */
+    private record ParsedDocument(FetchAndParseRequest request, Map<String, Object> responseMetadata, FetchAndParseReply reply) {
+    }
+
     @NotNull
     private static List<Map<String, List<Object>>> listOfMetadataToListOfMap(FetchAndParseReply fetchAndParseReply) {
         List<Map<String, List<Object>>> listOfMetadata = new ArrayList<>();
@@ -0,0 +1,236 @@
+package org.apache.tika.pipes.grpc;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.tika.pipes.core.emitter.EmitOutput;
+import org.apache.tika.pipes.core.emitter.Emitter;
+import org.apache.tika.pipes.core.emitter.EmitterConfig;
+import org.apache.tika.pipes.fetchers.core.deadline.DeadlineScheduler;
+import org.apache.tika.pipes.fetchers.core.retry.Retrier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for finding where the time goes under load, published through the actuator's {@code /actuator/prometheus}
+ * endpoint.
+ * <ul>
+ *     <li>{@code tika.fetch} and {@code tika.fetch.bytes}: fetch latency and fetched {@code Content-Length} per
+ *     fetcher plugin</li>
+ *     <li>{@code tika.parse.documents}: parse time per container MIME type, and {@code tika.parse.embedded}: embedded
+ *     documents per container</li>
+ *     <li>{@code tika.fetch.deadlines.scheduled}, {@code tika.fetch.deadlines.expired} and
+ *     {@code tika.fetch.deadlines.pending}: overall fetch timeouts from the shared {@link DeadlineScheduler}</li>
+ *     <li>{@code tika.fetch.retries}, {@code tika.fetch.retries.exhausted} and
+ *     {@code tika.fetch.retries.budget_rejected}: fetcher retries from {@link Retrier#stats()}</li>
+ *     <li>{@code tika.emit} and {@code tika.emit.documents}: emit latency and batch size per emitter plugin</li>
+ *     <li>{@code tika.pipe_job.documents} and {@code tika.pipe_job.duration}: pipe job throughput</li>
+ *     <li>{@code tika.grpc.server.calls} and {@code tika.grpc.server.reply.bytes}: every gRPC call by method and
+ *     status code, and the size of every reply</li>
+ * </ul>
+ * Without a meter registry, such as in unit tests, the meters are registered with the global registry, which
+ * discards them unless something has been added to it.
+ */
+@Component
+public class TikaMetrics {
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private MeterRegistry registry;
+
+    @PostConstruct
+    public void init() {
+        registry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+        DeadlineScheduler deadlineScheduler = DeadlineScheduler.shared();
+        FunctionCounter.builder("tika.fetch.deadlines.scheduled", deadlineScheduler, DeadlineScheduler::getScheduledCount)
+                       .description("Overall fetch timeouts started")
+                       .register(registry);
+        FunctionCounter.builder("tika.fetch.deadlines.expired", deadlineScheduler, DeadlineScheduler::getExpiredCount)
+                       .description("Fetches stopped because they ran past their overall timeout")
+                       .register(registry);
+        Gauge.builder("tika.fetch.deadlines.pending", deadlineScheduler, DeadlineScheduler::getPendingCount)
+             .description("Fetches with an overall timeout that are still running")
+             .register(registry);
+        Retrier.Stats retryStats = Retrier.stats();
+        FunctionCounter.builder("tika.fetch.retries", retryStats, Retrier.Stats::getRetryCount)
+                       .description("Failed fetch attempts that were retried")
+                       .register(registry);
+        FunctionCounter.builder("tika.fetch.retries.exhausted", retryStats, Retrier.Stats::getExhaustedCount)
+                       .description("Fetches that still failed after all of their retries")
+                       .register(registry);
+        FunctionCounter.builder("tika.fetch.retries.budget_rejected", retryStats, Retrier.Stats::getBudgetRejectedCount)
+                       .description("Retries not made because the fetcher's retry budget was spent")
+                       .register(registry);
+    }
+
+    public void recordFetch(String fetcherPluginId, long nanos, boolean success, long bytes) {
+        Timer.builder("tika.fetch")
+             .description("Time to fetch a document")
+             .tag("plugin", fetcherPluginId)
+             .tag("outcome", outcome(success))
+             .publishPercentileHistogram()
+             .register(registry)
+             .record(nanos, TimeUnit.NANOSECONDS);
+        if (bytes >= 0) {
+            DistributionSummary.builder("tika.fetch.bytes")
+                               .description("Content-Length of fetched documents")
+                               .baseUnit("bytes")
+                               .tag("plugin", fetcherPluginId)
+                               .register(registry)
+                               .record(bytes);
+        }
+    }
+
+    /**
+     * @param mimeType  detected type of the container document, with any parameters removed
+     * @param status    a {@code FetchAndParseStatus} name
+     * @param documents the container plus its embedded documents, 0 if the parse failed before any was finished
+     */
+    public void recordParse(String mimeType, String status, long nanos, int documents) {
+        String type = StringUtils.defaultIfBlank(StringUtils.trim(StringUtils.substringBefore(mimeType, ";")), "unknown");
+        Timer.builder("tika.parse.documents")
+             .description("Time to parse a document and its embedded documents")
+             .tag("mime_type", type)
+             .tag("status", status)
+             .publishPercentileHistogram()
+             .register(registry)
+             .record(nanos, TimeUnit.NANOSECONDS);
+        if (documents > 0) {
+            DistributionSummary.builder("tika.parse.embedded")
+                               .description("Embedded documents found in a container document")
+                               .tag("mime_type", type)
+                               .register(registry)
+                               .record(documents - 1);
+        }
+    }
+
+    /**
+     * A fetch that was short-circuited because the document had not changed since it was last parsed.
+     */
+    public void recordNotModified(String fetcherId) {
+        Counter.builder("tika.fetch.not_modified")
+               .description("Fetches of documents that had not changed since they were last parsed")
+               .tag("fetcher_id", fetcherId)
+               .register(registry)
+               .increment();
+    }
+
+    public void recordPipeJobDocuments(String outcome, long count) {
+        Counter.builder("tika.pipe_job.documents")
+               .description("Documents handled by pipe jobs")
+               .tag("outcome", outcome)
+               .register(registry)
+               .increment(count);
+    }
+
+    public void recordPipeJob(long nanos, boolean success) {
+        Timer.builder("tika.pipe_job.duration")
+             .description("Time to run a pipe job")
+             .tag("outcome", outcome(success))
+             .register(registry)
+             .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Wrap an emitter so that each call to {@link Emitter#emit(List)} is timed.
+     */
+    public Emitter timed(Emitter emitter) {
+        return new Emitter() {
+            @Override
+            public <T extends EmitterConfig> void init(T emitterConfig) {
+                emitter.init(emitterConfig);
+            }
+
+            @Override
+            public String getPluginId() {
+                return emitter.getPluginId();
+            }
+
+            @Override
+            public void emit(List<EmitOutput> emitOutputs) throws IOException {
+                long start = System.nanoTime();
+                boolean success = false;
+                try {
+                    emitter.emit(emitOutputs);
+                    success = true;
+                } finally {
+                    recordEmit(emitter.getPluginId(), System.nanoTime() - start, success, emitOutputs.size());
+                }
+            }
+        };
+    }
+
+    /**
+     * @return an interceptor that records the status and duration of every call and the size of every reply
+     */
+    public ServerInterceptor getServerInterceptor() {
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+                String method = call.getMethodDescriptor().getBareMethodName();
+                long start = System.nanoTime();
+                DistributionSummary replyBytes = DistributionSummary.builder("tika.grpc.server.reply.bytes")
+                                                                    .description("Serialized size of replies")
+                                                                    .baseUnit("bytes")
+                                                                    .tag("method", String.valueOf(method))
+                                                                    .register(registry);
+                return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+                    @Override
+                    public void sendMessage(RespT message) {
+                        if (message instanceof MessageLite messageLite) {
+                            replyBytes.record(messageLite.getSerializedSize());
+                        }
+                        super.sendMessage(message);
+                    }
+
+                    @Override
+                    public void close(Status status, Metadata trailers) {
+                        Timer.builder("tika.grpc.server.calls")
+                             .description("gRPC calls by method and status code")
+                             .tag("method", String.valueOf(method))
+                             .tag("status", status.getCode().name())
+                             .register(registry)
+                             .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        super.close(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    private void recordEmit(String emitterPluginId, long nanos, boolean success, int documents) {
+        Timer.builder("tika.emit")
+             .description("Time to emit a batch of documents")
+             .tag("plugin", emitterPluginId)
+             .tag("outcome", outcome(success))
+             .publishPercentileHistogram()
+             .register(registry)
+             .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("tika.emit.documents")
+                           .description("Documents per emit call")
+                           .tag("plugin", emitterPluginId)
+                           .register(registry)
+                           .record(documents);
+    }
+
+    private static String outcome(boolean success) {
+        return success ? "success" : "error";
+    }
+}
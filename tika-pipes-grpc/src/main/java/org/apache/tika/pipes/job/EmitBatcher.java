@@ -0,0 +1,204 @@
+package org.apache.tika.pipes.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.pipes.core.emitter.EmitOutput;
+import org.apache.tika.pipes.core.emitter.Emitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects {@link EmitOutput}s into batches so that {@link Emitter#emit(List)} is called once per batch instead of
+ * once per document.
+ * <p>
+ * A batch is emitted when it reaches {@code maxCount} documents or {@code maxBytes} estimated bytes, when its oldest
+ * document has waited {@code lingerMillis}, or on {@link #close()}. The thread that fills a batch emits it; batches
+ * that linger are emitted from a timer thread. Emit failures are logged and counted, never thrown. A document's
+ * {@code onEmitted} callback runs only once its batch has been emitted successfully.
+ */
+@Slf4j
+public class EmitBatcher implements AutoCloseable {
+    /**
+     * How long {@link #close()} waits for a lingering batch that is being emitted.
+     */
+    private static final long CLOSE_TIMEOUT_MINUTES = 5;
+
+    private final String jobId;
+    private final Emitter emitter;
+    private final int maxCount;
+    private final long maxBytes;
+    private final long lingerMillis;
+    private final ScheduledThreadPoolExecutor lingerExecutor;
+    private final Object lock = new Object();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private List<EmitOutput> batch = new ArrayList<>();
+    private List<Runnable> batchCallbacks = new ArrayList<>();
+    private long batchBytes;
+    private long batchNumber;
+
+    public EmitBatcher(String jobId, Emitter emitter, int maxCount, long maxBytes, long lingerMillis) {
+        this.jobId = jobId;
+        this.emitter = emitter;
+        this.maxCount = Math.max(1, maxCount);
+        this.maxBytes = maxBytes;
+        this.lingerMillis = lingerMillis;
+        if (lingerMillis > 0 && this.maxCount > 1) {
+            lingerExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "pipe-job-" + jobId + "-emit-linger");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // batches that are still lingering are emitted by the final flush instead
+            lingerExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        } else {
+            lingerExecutor = null;
+        }
+    }
+
+    /**
+     * Add a document to the current batch, emitting the batch if it is full.
+     */
+    public void add(EmitOutput emitOutput) {
+        add(emitOutput, null);
+    }
+
+    /**
+     * Add a document to the current batch, emitting the batch if it is full.
+     *
+     * @param onEmitted run after the batch with the document has been emitted, not if the emit failed. May be null.
+     */
+    public void add(EmitOutput emitOutput, Runnable onEmitted) {
+        Batch full = null;
+        synchronized (lock) {
+            if (batch.isEmpty() && lingerExecutor != null) {
+                long scheduledBatch = batchNumber;
+                lingerExecutor.schedule(() -> flushIfStill(scheduledBatch), lingerMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.add(emitOutput);
+            if (onEmitted != null) {
+                batchCallbacks.add(onEmitted);
+            }
+            batchBytes += estimateBytes(emitOutput);
+            if (batch.size() >= maxCount || (maxBytes > 0 && batchBytes >= maxBytes)) {
+                full = takeBatch();
+            }
+        }
+        if (full != null) {
+            emit(full);
+        }
+    }
+
+    /**
+     * Emit whatever is in the current batch.
+     */
+    public void flush() {
+        Batch toEmit;
+        synchronized (lock) {
+            toEmit = takeBatch();
+        }
+        if (!toEmit.emitOutputs().isEmpty()) {
+            emit(toEmit);
+        }
+    }
+
+    /**
+     * @return documents that could not be emitted
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * @return number of calls made to the emitter
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Wait for a lingering batch that is being emitted, then emit whatever is left.
+     */
+    @Override
+    public void close() {
+        if (lingerExecutor != null) {
+            // not shutdownNow, which would interrupt the emitter part way through a batch
+            lingerExecutor.shutdown();
+            try {
+                if (!lingerExecutor.awaitTermination(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                    log.warn("Pipe job {} gave up waiting for a lingering batch to be emitted", jobId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private void flushIfStill(long scheduledBatch) {
+        Batch toEmit = null;
+        synchronized (lock) {
+            if (batchNumber == scheduledBatch && !batch.isEmpty()) {
+                toEmit = takeBatch();
+            }
+        }
+        if (toEmit != null) {
+            emit(toEmit);
+        }
+    }
+
+    private record Batch(List<EmitOutput> emitOutputs, List<Runnable> callbacks) {
+    }
+
+    private Batch takeBatch() {
+        Batch taken = new Batch(batch, batchCallbacks);
+        batch = new ArrayList<>();
+        batchCallbacks = new ArrayList<>();
+        batchBytes = 0;
+        batchNumber++;
+        return taken;
+    }
+
+    private void emit(Batch toEmit) {
+        List<EmitOutput> emitOutputs = toEmit.emitOutputs();
+        try {
+            emitter.emit(emitOutputs);
+            batches.incrementAndGet();
+        } catch (Exception e) {
+            failures.addAndGet(emitOutputs.size());
+            log.error("Pipe job {} could not emit a batch of {} documents starting with {}", jobId, emitOutputs.size(), emitOutputs.get(0).getFetchKey(), e);
+            return;
+        }
+        for (Runnable callback : toEmit.callbacks()) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                log.warn("Pipe job {} could not finish an emitted document", jobId, e);
+            }
+        }
+    }
+
+    /**
+     * Rough size of a document's metadata: the length of every key and value. Extracted text dominates, so this is
+     * close enough to bound a batch.
+     */
+    static long estimateBytes(EmitOutput emitOutput) {
+        long bytes = emitOutput.getFetchKey() == null ? 0 : emitOutput.getFetchKey().length();
+        if (emitOutput.getMetadata() == null) {
+            return bytes;
+        }
+        for (Map<String, List<Object>> metadata : emitOutput.getMetadata()) {
+            for (Map.Entry<String, List<Object>> entry : metadata.entrySet()) {
+                bytes += entry.getKey().length();
+                for (Object value : entry.getValue()) {
+                    bytes += String.valueOf(value).length();
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,219 @@
+package org.apache.tika.pipes.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.pipes.core.exception.TikaPipesException;
+import org.apache.tika.pipes.core.iterators.PipeInput;
+import org.apache.tika.pipes.core.iterators.PipeIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a pipe job as a pipeline of four stages: iterate, fetch, parse and emit.
+ * <p>
+ * Stages are connected by bounded queues and each of fetch, parse and emit runs on its own set of threads, so I/O
+ * bound fetching and emitting overlap with CPU bound parsing. When a stage falls behind, the queue in front of it
+ * fills up and the stages before it wait, so memory use is bounded by the queue capacity and not by the size of the
+ * pipe iterator.
+ * <p>
+ * A document that fails to fetch or emit is logged and counted in {@link #getFailureCount()} and the job carries on
+ * with the next one.
+ *
+ * @param <F> result of the fetch stage
+ * @param <R> result of the parse stage
+ */
+@Slf4j
+public class PipeJob<F, R> {
+    @FunctionalInterface
+    public interface StageFunction<I, O> {
+        O apply(I input) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface EmitFunction<I> {
+        void emit(I input) throws Exception;
+    }
+
+    /**
+     * Marks the end of a queue. Each worker that takes it puts it back for its siblings before exiting.
+     */
+    private static final Object END = new Object();
+    private static final long POLL_MILLIS = 100;
+
+    private final String jobId;
+    private final PipeIterator pipeIterator;
+    private final StageFunction<PipeInput, F> fetchFunction;
+    private final StageFunction<F, R> parseFunction;
+    private final EmitFunction<R> emitFunction;
+    private final int fetchParallelism;
+    private final int parseParallelism;
+    private final int emitParallelism;
+    private final int queueCapacity;
+    private final AtomicBoolean aborted = new AtomicBoolean();
+    private final AtomicLong failures = new AtomicLong();
+
+    public PipeJob(String jobId, PipeIterator pipeIterator, StageFunction<PipeInput, F> fetchFunction, StageFunction<F, R> parseFunction, EmitFunction<R> emitFunction, int fetchParallelism, int parseParallelism, int emitParallelism, int queueCapacity) {
+        this.jobId = jobId;
+        this.pipeIterator = pipeIterator;
+        this.fetchFunction = fetchFunction;
+        this.parseFunction = parseFunction;
+        this.emitFunction = emitFunction;
+        this.fetchParallelism = fetchParallelism;
+        this.parseParallelism = parseParallelism;
+        this.emitParallelism = emitParallelism;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Run the job on the calling thread, which iterates, and on worker threads for the other stages.
+     *
+     * @param timeoutSeconds stop the job if it has not finished by then. 0 or less means no timeout.
+     * @throws TikaPipesException if the job timed out or the pipe iterator failed
+     */
+    public void run(long timeoutSeconds) throws InterruptedException {
+        long deadline = timeoutSeconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds) : Long.MAX_VALUE;
+        BlockingQueue<Object> fetchQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Object> parseQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Object> emitQueue = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService workers = Executors.newFixedThreadPool(fetchParallelism + parseParallelism + emitParallelism, new PipeJobThreadFactory(jobId));
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            futures.addAll(startStage("fetch", fetchParallelism, fetchQueue, parseQueue, fetchFunction, workers));
+            futures.addAll(startStage("parse", parseParallelism, parseQueue, emitQueue, parseFunction, workers));
+            futures.addAll(startStage("emit", emitParallelism, emitQueue, null, (R input) -> {
+                emitFunction.emit(input);
+                return null;
+            }, workers));
+
+            while (pipeIterator.hasNext()) {
+                for (PipeInput pipeInput : pipeIterator.next()) {
+                    put(fetchQueue, pipeInput, deadline);
+                }
+            }
+            put(fetchQueue, END, deadline);
+            for (Future<?> future : futures) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    throw new TikaPipesException("Timed out waiting for pipe job " + jobId + " to complete");
+                }
+                future.get(remainingNanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            throw new TikaPipesException("Timed out waiting for pipe job " + jobId + " to complete", e);
+        } catch (ExecutionException e) {
+            throw new TikaPipesException("Pipe job " + jobId + " failed", e.getCause());
+        } finally {
+            aborted.set(true);
+            workers.shutdownNow();
+            discard(fetchQueue);
+            discard(parseQueue);
+            discard(emitQueue);
+        }
+    }
+
+    /**
+     * @return documents that could not be fetched or emitted
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <I, O> List<Future<?>> startStage(String name, int parallelism, BlockingQueue<Object> input, BlockingQueue<Object> output, StageFunction<I, O> function, ExecutorService workers) {
+        AtomicInteger running = new AtomicInteger(parallelism);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            futures.add(workers.submit(() -> {
+                while (true) {
+                    Object item = take(input);
+                    if (item == END) {
+                        put(input, END, Long.MAX_VALUE);
+                        if (running.decrementAndGet() == 0 && output != null) {
+                            put(output, END, Long.MAX_VALUE);
+                        }
+                        return null;
+                    }
+                    O result;
+                    try {
+                        result = function.apply((I) item);
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        log.error("Pipe job {} could not {} {}", jobId, name, item, e);
+                        continue;
+                    }
+                    if (output != null && result != null) {
+                        put(output, result, Long.MAX_VALUE);
+                    }
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private Object take(BlockingQueue<Object> queue) throws InterruptedException {
+        while (true) {
+            Object item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                return item;
+            }
+            if (aborted.get()) {
+                throw new InterruptedException("Pipe job " + jobId + " stopped");
+            }
+        }
+    }
+
+    private void put(BlockingQueue<Object> queue, Object item, long deadline) throws InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (aborted.get()) {
+                throw new InterruptedException("Pipe job " + jobId + " stopped");
+            }
+            if (System.nanoTime() > deadline) {
+                throw new TikaPipesException("Timed out waiting for pipe job " + jobId + " to complete");
+            }
+        }
+    }
+
+    /**
+     * Close anything left in a queue after the job stopped early, such as fetched input streams.
+     */
+    private static void discard(BlockingQueue<Object> queue) {
+        Object item;
+        while ((item = queue.poll()) != null) {
+            if (item instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.debug("Could not close discarded pipe job item", e);
+                }
+            }
+        }
+    }
+
+    private static class PipeJobThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        private PipeJobThreadFactory(String jobId) {
+            this.namePrefix = "pipe-job-" + jobId + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+        }
+    }
+}
@@ -2,5 +2,9 @@ package org.apache.tika.pipes.model;
 
 public enum FetchAndParseStatus {
     FETCH_AND_PARSE_EXCEPTION,
-    FETCH_AND_PARSE_SUCCESS
+    FETCH_AND_PARSE_SUCCESS,
+    /**
+     * The document has not changed since it was last parsed, so it was not parsed again.
+     */
+    FETCH_NOT_MODIFIED
 }
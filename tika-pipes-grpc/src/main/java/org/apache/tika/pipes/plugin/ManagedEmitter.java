@@ -0,0 +1,89 @@
+package org.apache.tika.pipes.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.pipes.core.emitter.Emitter;
+
+/**
+ * The one initialized {@link Emitter} for a saved emitter config. It is shared by every pipe job with that emitter ID
+ * until the config is saved again or deleted. {@link #close()} then waits for pipe jobs that are still using it to
+ * release it before closing the emitter, if it is {@link AutoCloseable}.
+ */
+@Slf4j
+public class ManagedEmitter implements AutoCloseable {
+    private final String emitterId;
+    private final String pluginId;
+    private final Emitter emitter;
+
+    private int users;
+    private boolean retired;
+    private boolean closed;
+
+    /**
+     * @param emitter an emitter already initialized from the saved config
+     */
+    public ManagedEmitter(String emitterId, String pluginId, Emitter emitter) {
+        this.emitterId = emitterId;
+        this.pluginId = pluginId;
+        this.emitter = emitter;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public Emitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * Start using the emitter. Each successful acquire must be followed by a {@link #release()}.
+     *
+     * @return false if the emitter has been closed because its config changed. Resolve the emitter ID again.
+     */
+    public synchronized boolean acquire() {
+        if (retired) {
+            return false;
+        }
+        users++;
+        return true;
+    }
+
+    public void release() {
+        boolean closeNow;
+        synchronized (this) {
+            closeNow = --users == 0 && retired;
+        }
+        if (closeNow) {
+            closeEmitter();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            retired = true;
+            if (users > 0) {
+                return;
+            }
+        }
+        closeEmitter();
+    }
+
+    private void closeEmitter() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (!(emitter instanceof AutoCloseable closeable)) {
+            return;
+        }
+        try {
+            closeable.close();
+            log.info("Closed emitter {} ({})", emitterId, pluginId);
+        } catch (Exception e) {
+            log.warn("Could not close emitter {} ({})", emitterId, pluginId, e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.apache.tika.pipes.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.pipes.fetchers.core.Fetcher;
+import org.apache.tika.pipes.fetchers.core.FetcherConfig;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * The one initialized {@link Fetcher} for a saved fetcher config. It is shared by every fetch with that fetcher ID
+ * until the config is saved again or deleted. {@link #close()} then waits for fetches that are still running to
+ * return before closing the fetcher.
+ */
+@Slf4j
+public class ManagedFetcher implements AutoCloseable {
+    private final String fetcherId;
+    private final String pluginId;
+    private final Fetcher fetcher;
+    private final FetcherConfig config;
+    private final boolean conditionalFetch;
+
+    private int running;
+    private boolean retired;
+    private boolean closed;
+
+    /**
+     * Thrown by {@link #fetch} once the fetcher has been closed, before anything is fetched.
+     */
+    public static class FetcherClosedException extends IllegalStateException {
+        public FetcherClosedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @param config the saved config converted to the plugin's own config class
+     */
+    public ManagedFetcher(String fetcherId, String pluginId, Fetcher fetcher, FetcherConfig config) {
+        this.fetcherId = fetcherId;
+        this.pluginId = pluginId;
+        this.fetcher = fetcher;
+        this.config = config;
+        fetcher.init(config);
+        this.conditionalFetch = fetcher.isConditionalFetch(config);
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    /**
+     * @see Fetcher#isConditionalFetch(FetcherConfig)
+     */
+    public boolean isConditionalFetch() {
+        return conditionalFetch;
+    }
+
+    /**
+     * @throws FetcherClosedException if the fetcher has been closed because its config changed. Resolve the fetcher ID
+     *                                again and retry.
+     */
+    public InputStream fetch(String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) {
+        synchronized (this) {
+            if (closed) {
+                throw new FetcherClosedException("Fetcher " + fetcherId + " was closed because its config changed");
+            }
+            running++;
+        }
+        try {
+            return fetcher.fetch(config, fetchKey, fetchMetadata, responseMetadata);
+        } finally {
+            boolean closeNow;
+            synchronized (this) {
+                closeNow = --running == 0 && retired;
+            }
+            if (closeNow) {
+                closeFetcher();
+            }
+        }
+    }
+
+    /**
+     * @see Fetcher#isBackendFailure(Throwable)
+     */
+    public boolean isBackendFailure(Throwable error) {
+        return fetcher.isBackendFailure(error);
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            retired = true;
+            if (running > 0) {
+                return;
+            }
+        }
+        closeFetcher();
+    }
+
+    private void closeFetcher() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            fetcher.close();
+            log.info("Closed fetcher {} ({})", fetcherId, pluginId);
+        } catch (RuntimeException e) {
+            log.warn("Could not close fetcher {} ({})", fetcherId, pluginId, e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.apache.tika.pipes.plugin;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Fetchers, emitters and pipe iterators resolved from their saved configs, by ID. Resolving one means a repository
+ * lookup, a scan of the plugin manager's extensions and deserializing the config JSON into the plugin's own config
+ * class, which is too much to do for every request.
+ * <p>
+ * Each ID has a config version that {@link #invalidate(String)} bumps when its config is saved or deleted. A resolve
+ * that started before the bump is thrown away and done again, so a lookup racing with a save can not put the old
+ * config back. When threads resolve the same config at once, the first one cached is kept and returned to all of them.
+ * Values that are invalidated or thrown away are handed to the cache's removal listener, which can close them.
+ *
+ * @param <R> what a config resolves to
+ */
+public class ResolvedPluginCache<R> {
+    @FunctionalInterface
+    public interface Resolver<R> {
+        /**
+         * @return what the ID resolves to, or null if there is no config saved with that ID
+         */
+        R resolve(String id) throws IOException;
+    }
+
+    private record Entry<R>(long version, R resolved) {
+    }
+
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry<R>> entries = new ConcurrentHashMap<>();
+    private final Consumer<R> removalListener;
+
+    public ResolvedPluginCache() {
+        this(resolved -> {
+        });
+    }
+
+    /**
+     * @param removalListener called with each value that is no longer cached
+     */
+    public ResolvedPluginCache(Consumer<R> removalListener) {
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * @return the cached value for the ID, resolving and caching it if there is none, or null if the ID resolves to
+     * nothing
+     */
+    public R get(String id, Resolver<R> resolver) throws IOException {
+        AtomicLong version = versions.computeIfAbsent(id, k -> new AtomicLong());
+        while (true) {
+            long resolvingVersion = version.get();
+            Entry<R> entry = entries.get(id);
+            if (entry != null && entry.version() == resolvingVersion) {
+                return entry.resolved();
+            }
+            R resolved = resolver.resolve(id);
+            if (resolved == null) {
+                return null;
+            }
+            Entry<R> stored = entries.compute(id, (k, current) -> {
+                if (version.get() != resolvingVersion) {
+                    return current;
+                }
+                if (current != null && current.version() == resolvingVersion) {
+                    // another thread resolved the same config first
+                    return current;
+                }
+                return new Entry<>(resolvingVersion, resolved);
+            });
+            if (stored != null && stored.resolved() == resolved) {
+                return resolved;
+            }
+            removalListener.accept(resolved);
+            if (stored != null && stored.version() == resolvingVersion) {
+                return stored.resolved();
+            }
+            // the config was saved or deleted while it was being resolved
+        }
+    }
+
+    /**
+     * Forget the ID's resolved value. Call after its config is saved or deleted.
+     */
+    public void invalidate(String id) {
+        versions.computeIfAbsent(id, k -> new AtomicLong()).incrementAndGet();
+        Entry<R> removed = entries.remove(id);
+        if (removed != null) {
+            removalListener.accept(removed.resolved());
+        }
+    }
+
+    /**
+     * Forget every resolved value, such as when the server shuts down.
+     */
+    public void invalidateAll() {
+        for (String id : List.copyOf(entries.keySet())) {
+            invalidate(id);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,12 @@
+package org.apache.tika.pipes.repo;
+
+import org.apache.ignite.springdata.repository.IgniteRepository;
+import org.apache.ignite.springdata.repository.config.RepositoryConfig;
+import org.apache.tika.pipes.conditional.FetchValidators;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RepositoryConfig(cacheName = "FetchValidatorsCache")
+public interface FetchValidatorsRepository extends IgniteRepository<FetchValidators, String> {
+    void deleteByFetcherId(String fetcherId);
+}
@@ -7,6 +7,7 @@ import org.apache.ignite.Ignition;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.configuration.IgniteConfiguration;
 import org.apache.ignite.springdata.repository.config.EnableIgniteRepositories;
+import org.apache.tika.pipes.conditional.FetchValidators;
 import org.apache.tika.pipes.core.emitter.DefaultEmitterConfig;
 import org.apache.tika.pipes.core.iterators.DefaultPipeIteratorConfig;
 import org.apache.tika.pipes.fetchers.core.DefaultFetcherConfig;
@@ -52,7 +53,10 @@ public class IgniteRepositoryConfiguration {
             CacheConfiguration<String, JobStatus> jobStatusCacheConf = new CacheConfiguration<>("JobStatusCache");
             jobStatusCacheConf.setIndexedTypes(String.class, JobStatus.class);
 
-            cfg.setCacheConfiguration(fetcherCacheConf, emitterCacheConf, pipeIteratorCacheConf, jobStatusCacheConf);
+            CacheConfiguration<String, FetchValidators> fetchValidatorsCacheConf = new CacheConfiguration<>("FetchValidatorsCache");
+            fetchValidatorsCacheConf.setIndexedTypes(String.class, FetchValidators.class);
+
+            cfg.setCacheConfiguration(fetcherCacheConf, emitterCacheConf, pipeIteratorCacheConf, jobStatusCacheConf, fetchValidatorsCacheConf);
 
             Ignite ignite = Ignition.start(cfg);
             assert ignite.configuration() != null;
@@ -0,0 +1,218 @@
+package org.apache.tika.pipes.tracing;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import jakarta.annotation.PostConstruct;
+import org.apache.tika.pipes.core.emitter.EmitOutput;
+import org.apache.tika.pipes.core.emitter.Emitter;
+import org.apache.tika.pipes.core.emitter.EmitterConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Spans for the gRPC service, fetchers and emitters. Parse spans are made by
+ * {@link org.apache.tika.pipes.core.parser.ParseService}.
+ * <p>
+ * The server interceptor starts a span for each call, continuing the trace from the call's {@code traceparent}
+ * header, and makes it current while the call's callbacks run. Work handed to the fetch and parse executors keeps that
+ * context because {@link org.apache.tika.pipes.grpc.TikaExecutors} wraps them.
+ */
+@Component
+public class TikaTracing {
+    private static final TextMapGetter<Metadata> METADATA_GETTER = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(Metadata metadata) {
+            return metadata.keys();
+        }
+
+        @Override
+        public String get(Metadata metadata, String key) {
+            if (metadata == null || key.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+                return null;
+            }
+            return metadata.get(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER));
+        }
+    };
+
+    @FunctionalInterface
+    public interface SpanTask<T> {
+        T call() throws IOException;
+    }
+
+    @Autowired
+    private OpenTelemetry openTelemetry;
+
+    private Tracer tracer;
+
+    @PostConstruct
+    public void init() {
+        tracer = openTelemetry.getTracer("org.apache.tika.pipes.grpc");
+    }
+
+    /**
+     * Run a task in a child span of the current context.
+     *
+     * @param attributes string attributes to put on the span
+     */
+    public <T> T inSpan(String name, Map<String, String> attributes, SpanTask<T> task) throws IOException {
+        Span span = tracer.spanBuilder(name).startSpan();
+        attributes.forEach(span::setAttribute);
+        try (Scope scope = span.makeCurrent()) {
+            return task.call();
+        } catch (IOException | RuntimeException | Error e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Start a span that is not made current, such as one covering a whole pipe job. The caller must end it.
+     */
+    public Span startSpan(String name) {
+        return tracer.spanBuilder(name).startSpan();
+    }
+
+    /**
+     * Start the root span of one pipe job document, linked to the job's span. Each document gets a trace of its own
+     * so that a job over millions of documents does not become one enormous trace. The caller must end it.
+     */
+    public Span startDocumentSpan(Span jobSpan, String fetchKey) {
+        return tracer.spanBuilder("PipeJob.document")
+                     .setNoParent()
+                     .addLink(jobSpan.getSpanContext())
+                     .setAttribute("tika.fetch_key", fetchKey)
+                     .startSpan();
+    }
+
+    /**
+     * Wrap an emitter so that each call to {@link Emitter#emit(List)} gets a span. Emits from threads without a
+     * trace of their own, such as a batch's linger timer, are parented to the context the emitter was wrapped in.
+     */
+    public Emitter traced(Emitter emitter) {
+        Context wrappedIn = Context.current();
+        return new Emitter() {
+            @Override
+            public <T extends EmitterConfig> void init(T emitterConfig) {
+                emitter.init(emitterConfig);
+            }
+
+            @Override
+            public String getPluginId() {
+                return emitter.getPluginId();
+            }
+
+            @Override
+            public void emit(List<EmitOutput> emitOutputs) throws IOException {
+                Context parent = Span.current().getSpanContext().isValid() ? Context.current() : wrappedIn;
+                try (Scope scope = parent.makeCurrent()) {
+                    inSpan("Emitter.emit", Map.of("tika.emitter.plugin", emitter.getPluginId(), "tika.emit.documents", Integer.toString(emitOutputs.size())), () -> {
+                        emitter.emit(emitOutputs);
+                        return null;
+                    });
+                }
+            }
+        };
+    }
+
+    /**
+     * @return an interceptor that gives each call a server span, parented to the caller's trace if it sent one
+     */
+    public ServerInterceptor getServerInterceptor() {
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+                Context parent = openTelemetry.getPropagators().getTextMapPropagator().extract(Context.root(), headers, METADATA_GETTER);
+                Span span = tracer.spanBuilder(call.getMethodDescriptor().getFullMethodName())
+                                  .setParent(parent)
+                                  .setSpanKind(SpanKind.SERVER)
+                                  .setAttribute("rpc.system", "grpc")
+                                  .setAttribute("rpc.method", String.valueOf(call.getMethodDescriptor().getBareMethodName()))
+                                  .startSpan();
+                Context context = parent.with(span);
+                AtomicBoolean ended = new AtomicBoolean();
+                ServerCall<ReqT, RespT> tracedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+                    @Override
+                    public void close(Status status, Metadata trailers) {
+                        span.setAttribute("rpc.grpc.status_code", status.getCode().value());
+                        if (!status.isOk()) {
+                            span.setStatus(StatusCode.ERROR, status.getCode().name());
+                        }
+                        try {
+                            super.close(status, trailers);
+                        } finally {
+                            if (ended.compareAndSet(false, true)) {
+                                span.end();
+                            }
+                        }
+                    }
+                };
+                ServerCall.Listener<ReqT> listener;
+                try (Scope scope = context.makeCurrent()) {
+                    listener = next.startCall(tracedCall, headers);
+                }
+                return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+                    @Override
+                    public void onMessage(ReqT message) {
+                        try (Scope scope = context.makeCurrent()) {
+                            super.onMessage(message);
+                        }
+                    }
+
+                    @Override
+                    public void onHalfClose() {
+                        try (Scope scope = context.makeCurrent()) {
+                            super.onHalfClose();
+                        }
+                    }
+
+                    @Override
+                    public void onCancel() {
+                        try (Scope scope = context.makeCurrent()) {
+                            super.onCancel();
+                        } finally {
+                            if (ended.compareAndSet(false, true)) {
+                                span.setStatus(StatusCode.ERROR, "CANCELLED");
+                                span.end();
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        try (Scope scope = context.makeCurrent()) {
+                            super.onComplete();
+                        }
+                    }
+
+                    @Override
+                    public void onReady() {
+                        try (Scope scope = context.makeCurrent()) {
+                            super.onReady();
+                        }
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package org.apache.tika.pipes.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * OpenTelemetry for the server. {@code tracing.exporter} picks where spans go:
+ * <ul>
+ *     <li>{@code none}: tracing is off and spans cost next to nothing</li>
+ *     <li>{@code file}: one JSON object per span appended to {@code tracing.file}</li>
+ *     <li>{@code otlp}: sent to an OTLP/gRPC collector at {@code tracing.otlpEndpoint}</li>
+ * </ul>
+ * Incoming calls continue the trace named in their W3C {@code traceparent} header.
+ */
+@Configuration
+@Slf4j
+public class TracingConfig {
+    @Value("${tracing.exporter:none}")
+    private String exporter;
+
+    @Value("${tracing.file:tika-pipes-spans.jsonl}")
+    private String file;
+
+    @Value("${tracing.otlpEndpoint:http://localhost:4317}")
+    private String otlpEndpoint;
+
+    @Value("${tracing.sampleRatio:1.0}")
+    private Double sampleRatio;
+
+    @Bean
+    public OpenTelemetry openTelemetry() throws IOException {
+        SpanExporter spanExporter = switch (exporter) {
+            case "none" -> null;
+            case "file" -> new JsonLinesSpanExporter(Paths.get(file));
+            case "otlp" -> OtlpGrpcSpanExporter.builder().setEndpoint(otlpEndpoint).build();
+            default -> throw new IllegalArgumentException("tracing.exporter must be none, file or otlp but was " + exporter);
+        };
+        if (spanExporter == null) {
+            return OpenTelemetry.noop();
+        }
+        log.info("Exporting traces to {} ({}), sampling {} of traces", exporter, "file".equals(exporter) ? file : otlpEndpoint, sampleRatio);
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .setResource(Resource.getDefault().merge(Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "tika-pipes"))))
+                .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(sampleRatio)))
+                .addSpanProcessor(BatchSpanProcessor.builder(spanExporter).build())
+                .build();
+        return OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+    }
+}
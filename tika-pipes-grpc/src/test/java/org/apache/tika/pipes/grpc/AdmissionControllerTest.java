@@ -0,0 +1,91 @@
+package org.apache.tika.pipes.grpc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.core.exception.AdmissionRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdmissionControllerTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AdmissionController admissionController;
+
+    @BeforeEach
+    void setUp() {
+        admissionController = new AdmissionController();
+        ReflectionTestUtils.setField(admissionController, "maxConcurrentParses", 2);
+        ReflectionTestUtils.setField(admissionController, "maxInFlightBytes", 1000L);
+        ReflectionTestUtils.setField(admissionController, "maxQueued", 1);
+        ReflectionTestUtils.setField(admissionController, "queueTimeoutMillis", 100L);
+        ReflectionTestUtils.setField(admissionController, "unknownDocumentBytes", 100L);
+        ReflectionTestUtils.setField(admissionController, "meterRegistry", meterRegistry);
+        admissionController.init();
+    }
+
+    @Test
+    void limitsConcurrentDocuments() {
+        AdmissionController.Permit first = admissionController.acquire("a", 10);
+        AdmissionController.Permit second = admissionController.acquire("b", 10);
+        assertThrows(AdmissionRejectedException.class, () -> admissionController.acquire("c", 10));
+        first.close();
+        admissionController.acquire("c", 10).close();
+        second.close();
+        assertEquals(0, admissionController.getInFlightCount());
+        assertEquals(1.0, meterRegistry.get("tika.admission.rejected").counter().count());
+    }
+
+    @Test
+    void limitsInFlightBytes() {
+        AdmissionController.Permit big = admissionController.acquire("big", 900);
+        assertThrows(AdmissionRejectedException.class, () -> admissionController.acquire("small", 200));
+        // unknown length counts as unknownDocumentBytes
+        admissionController.acquire("unknown", -1).close();
+        big.close();
+        assertEquals(0, admissionController.getInFlightBytes());
+    }
+
+    @Test
+    void admitsOversizedDocumentAlone() {
+        AdmissionController.Permit huge = admissionController.acquire("huge", 5000);
+        assertEquals(1000, admissionController.getInFlightBytes());
+        assertThrows(AdmissionRejectedException.class, () -> admissionController.acquire("small", 1));
+        huge.close();
+    }
+
+    @Test
+    void queuedRequestIsAdmittedWhenPermitIsReleased() throws Exception {
+        ReflectionTestUtils.setField(admissionController, "queueTimeoutMillis", 10000L);
+        AdmissionController.Permit first = admissionController.acquire("a", 600);
+        CompletableFuture<AdmissionController.Permit> waiting = CompletableFuture.supplyAsync(() -> admissionController.acquire("b", 600));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (admissionController.getQueuedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, admissionController.getQueuedCount());
+        // the queue only holds one request
+        assertThrows(AdmissionRejectedException.class, () -> admissionController.acquire("c", 600));
+        assertFalse(waiting.isDone());
+
+        first.close();
+        waiting.get(10, TimeUnit.SECONDS).close();
+        assertEquals(0, admissionController.getQueuedCount());
+        assertEquals(2, meterRegistry.get("tika.admission.wait").timer().count());
+    }
+
+    @Test
+    void readsContentLength() {
+        assertEquals(42, AdmissionController.getContentLength(Map.of(Metadata.CONTENT_LENGTH, "42")));
+        assertEquals(-1, AdmissionController.getContentLength(Map.of()));
+        assertEquals(-1, AdmissionController.getContentLength(Map.of(Metadata.CONTENT_LENGTH, "unknown")));
+    }
+}
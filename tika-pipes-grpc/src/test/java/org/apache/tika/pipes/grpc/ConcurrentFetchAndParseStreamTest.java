@@ -0,0 +1,118 @@
+package org.apache.tika.pipes.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.apache.tika.FetchAndParseReply;
+import org.apache.tika.FetchAndParseRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConcurrentFetchAndParseStreamTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processesWindowInParallel() throws Exception {
+        ServerCallStreamObserver<FetchAndParseReply> responseObserver = mock(ServerCallStreamObserver.class);
+        when(responseObserver.isReady()).thenReturn(true);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        ConcurrentFetchAndParseStream stream = new ConcurrentFetchAndParseStream(responseObserver, 2, executor, request -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            bothRunning.countDown();
+            release.await();
+            running.decrementAndGet();
+            return FetchAndParseReply.newBuilder().setFetchKey(request.getFetchKey()).build();
+        });
+        verify(responseObserver).disableAutoRequest();
+        verify(responseObserver).request(2);
+
+        stream.onNext(request("a"));
+        stream.onNext(request("b"));
+        assertTrue(bothRunning.await(10, TimeUnit.SECONDS));
+        stream.onCompleted();
+        verify(responseObserver, never()).onCompleted();
+
+        release.countDown();
+        verify(responseObserver, timeout(10000).times(2)).onNext(any());
+        verify(responseObserver, timeout(10000)).onCompleted();
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void holdsRepliesUntilReady() throws Exception {
+        ServerCallStreamObserver<FetchAndParseReply> responseObserver = mock(ServerCallStreamObserver.class);
+        AtomicBoolean ready = new AtomicBoolean(false);
+        when(responseObserver.isReady()).thenAnswer(invocation -> ready.get());
+        CountDownLatch handled = new CountDownLatch(1);
+
+        ConcurrentFetchAndParseStream stream = new ConcurrentFetchAndParseStream(responseObserver, 1, executor, request -> {
+            handled.countDown();
+            return FetchAndParseReply.newBuilder().setFetchKey(request.getFetchKey()).build();
+        });
+        stream.onNext(request("a"));
+        assertTrue(handled.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        verify(responseObserver, never()).onNext(any());
+        // no more requests until the reply is on its way
+        verify(responseObserver, times(1)).request(1);
+
+        ready.set(true);
+        onReadyHandler(responseObserver).run();
+        verify(responseObserver).onNext(any());
+        verify(responseObserver, times(2)).request(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failsStreamOnce() throws Exception {
+        ServerCallStreamObserver<FetchAndParseReply> responseObserver = mock(ServerCallStreamObserver.class);
+        when(responseObserver.isReady()).thenReturn(true);
+        ConcurrentFetchAndParseStream stream = new ConcurrentFetchAndParseStream(responseObserver, 4, executor, request -> {
+            throw new IOException("Could not find fetcher");
+        });
+        stream.onNext(request("a"));
+        stream.onNext(request("b"));
+        verify(responseObserver, timeout(10000)).onError(any());
+        Thread.sleep(100);
+        verify(responseObserver, times(1)).onError(any());
+        verify(responseObserver, never()).onNext(any());
+    }
+
+    private static FetchAndParseRequest request(String fetchKey) {
+        return FetchAndParseRequest.newBuilder().setFetchKey(fetchKey).build();
+    }
+
+    private static Runnable onReadyHandler(ServerCallStreamObserver<FetchAndParseReply> responseObserver) {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(captor.capture());
+        return captor.getValue();
+    }
+}
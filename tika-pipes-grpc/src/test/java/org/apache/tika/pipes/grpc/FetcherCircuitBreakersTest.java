@@ -0,0 +1,110 @@
+package org.apache.tika.pipes.grpc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tika.pipes.core.exception.CircuitBreakerOpenException;
+import org.apache.tika.pipes.fetchers.core.retry.FetchStatusException;
+import org.apache.tika.pipes.fetchers.core.retry.RetryPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FetcherCircuitBreakersTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FetcherCircuitBreakers fetcherCircuitBreakers;
+
+    @BeforeEach
+    void setUp() {
+        fetcherCircuitBreakers = new FetcherCircuitBreakers();
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "enabled", true);
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "windowSize", 10);
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "minimumCalls", 4);
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "slowCallMillis", 60000L);
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "slowCallRateThreshold", 0.8);
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "openMillis", 100L);
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "halfOpenProbes", 2);
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    void opensOnFailureRateAndClosesAfterProbesSucceed() throws Exception {
+        fetcherCircuitBreakers.acquire("s3").onSuccess();
+        fetcherCircuitBreakers.acquire("s3").onSuccess();
+        fetcherCircuitBreakers.acquire("s3").onFailure();
+        assertEquals(FetcherCircuitBreakers.State.CLOSED, fetcherCircuitBreakers.getSnapshot("s3").state());
+        fetcherCircuitBreakers.acquire("s3").onFailure();
+
+        FetcherCircuitBreakers.Snapshot snapshot = fetcherCircuitBreakers.getSnapshot("s3");
+        assertEquals(FetcherCircuitBreakers.State.OPEN, snapshot.state());
+        assertThrows(CircuitBreakerOpenException.class, () -> fetcherCircuitBreakers.acquire("s3"));
+        // other fetchers are not affected
+        fetcherCircuitBreakers.acquire("http").onSuccess();
+
+        Thread.sleep(150);
+        FetcherCircuitBreakers.Permit firstProbe = fetcherCircuitBreakers.acquire("s3");
+        FetcherCircuitBreakers.Permit secondProbe = fetcherCircuitBreakers.acquire("s3");
+        assertEquals(FetcherCircuitBreakers.State.HALF_OPEN, fetcherCircuitBreakers.getSnapshot("s3").state());
+        assertThrows(CircuitBreakerOpenException.class, () -> fetcherCircuitBreakers.acquire("s3"));
+        firstProbe.onSuccess();
+        secondProbe.onSuccess();
+        assertEquals(FetcherCircuitBreakers.State.CLOSED, fetcherCircuitBreakers.getSnapshot("s3").state());
+        assertEquals(2, fetcherCircuitBreakers.getSnapshot("s3").rejectedCount());
+        assertEquals(2.0, meterRegistry.get("tika.fetch.circuit_breaker.rejected").tag("fetcher_id", "s3").counter().count());
+    }
+
+    @Test
+    void failedProbeOpensAgainAndResetForgets() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            fetcherCircuitBreakers.acquire("graph").onFailure();
+        }
+        Thread.sleep(150);
+        fetcherCircuitBreakers.acquire("graph").onFailure();
+        assertEquals(FetcherCircuitBreakers.State.OPEN, fetcherCircuitBreakers.getSnapshot("graph").state());
+        assertThrows(CircuitBreakerOpenException.class, () -> fetcherCircuitBreakers.acquire("graph"));
+
+        fetcherCircuitBreakers.reset("graph");
+        assertNull(fetcherCircuitBreakers.getSnapshot("graph"));
+        fetcherCircuitBreakers.acquire("graph").onSuccess();
+        assertEquals(1, fetcherCircuitBreakers.getSnapshots().size());
+    }
+
+    @Test
+    void opensOnSlowCalls() throws Exception {
+        ReflectionTestUtils.setField(fetcherCircuitBreakers, "slowCallMillis", 0L);
+        for (int i = 0; i < 4; i++) {
+            FetcherCircuitBreakers.Permit permit = fetcherCircuitBreakers.acquire("drive");
+            Thread.sleep(2);
+            permit.onSuccess();
+        }
+        FetcherCircuitBreakers.Snapshot snapshot = fetcherCircuitBreakers.getSnapshot("drive");
+        assertEquals(FetcherCircuitBreakers.State.OPEN, snapshot.state());
+    }
+
+    @Test
+    void clientErrorsDoNotOpen() {
+        List<Exception> clientErrors = List.of(new RuntimeException(new FetchStatusException(404, "bad status code: 404")),
+                new FileNotFoundException("missing.txt"), new IllegalArgumentException("Invalid fetch key"));
+        for (int i = 0; i < 4; i++) {
+            for (Exception clientError : clientErrors) {
+                fetcherCircuitBreakers.acquire("http").onFailure(RetryPolicy.isBackendFailure(clientError));
+            }
+        }
+        FetcherCircuitBreakers.Snapshot snapshot = fetcherCircuitBreakers.getSnapshot("http");
+        assertEquals(FetcherCircuitBreakers.State.CLOSED, snapshot.state());
+        assertEquals(0.0, snapshot.failureRate());
+
+        // half of the window
+        for (int i = 0; i < 5; i++) {
+            fetcherCircuitBreakers.acquire("http").onFailure(RetryPolicy.isBackendFailure(new FetchStatusException(503, "bad status code: 503")));
+        }
+        assertEquals(FetcherCircuitBreakers.State.OPEN, fetcherCircuitBreakers.getSnapshot("http").state());
+    }
+}
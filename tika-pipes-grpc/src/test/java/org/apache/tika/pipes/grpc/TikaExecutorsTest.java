@@ -0,0 +1,161 @@
+package org.apache.tika.pipes.grpc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+class TikaExecutorsTest {
+    private static final int FETCHES = 1000;
+    private static final int COMPARED_FETCHES = 200;
+    private static final int CARRIERS = 8;
+    private static final long FETCH_MILLIS = 50;
+
+    @Test
+    void boundsParseConcurrency() throws Exception {
+        TikaExecutors executors = newExecutors(TikaExecutors.PLATFORM, 2);
+        try {
+            AtomicInteger parsing = new AtomicInteger();
+            AtomicInteger maxParsing = new AtomicInteger();
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(executors.getFetchExecutor().submit(() -> executors.parse(() -> {
+                    maxParsing.accumulateAndGet(parsing.incrementAndGet(), Math::max);
+                    sleep(10);
+                    parsing.decrementAndGet();
+                    return Thread.currentThread().getName();
+                })));
+            }
+            for (Future<String> future : futures) {
+                assertTrue(future.get().startsWith("tika-parse-runner-"));
+            }
+            assertEquals(2, maxParsing.get());
+        } finally {
+            executors.destroy();
+        }
+    }
+
+    @Test
+    void virtualModeFallsBackWithoutVirtualThreads() throws Exception {
+        TikaExecutors executors = newExecutors(TikaExecutors.VIRTUAL, 1);
+        try {
+            assertEquals(Runtime.version().feature() >= 21, executors.isVirtual());
+            assertEquals("ok", executors.getFetchExecutor().submit(() -> "ok").get());
+        } finally {
+            executors.destroy();
+        }
+    }
+
+    @Test
+    void submittedParsesRunOnParsePoolAndRethrow() throws Exception {
+        TikaExecutors executors = newExecutors(TikaExecutors.PLATFORM, 1);
+        try {
+            Future<String> parse = executors.submitParse(() -> Thread.currentThread().getName());
+            assertTrue(TikaExecutors.await(parse).startsWith("tika-parse-runner-"));
+            IOException e = assertThrows(IOException.class, () -> TikaExecutors.await(executors.submitParse(() -> {
+                throw new IOException("bad stream");
+            })));
+            assertEquals("bad stream", e.getMessage());
+        } finally {
+            executors.destroy();
+        }
+    }
+
+    /**
+     * Compares the two fetch modes on the same load of slow fetches. Virtual threads are stood in for by a few carrier
+     * threads, so this runs on Java 17 as well.
+     */
+    @Test
+    void virtualModeStartsFewerOsThreadsThanPlatformMode() throws Exception {
+        TikaExecutors platform = newExecutors(TikaExecutors.PLATFORM, 2);
+        ModeRun platformRun = runFetches(platform, COMPARED_FETCHES);
+
+        TikaExecutors virtual = new TikaExecutors();
+        virtual.virtualExecutorFactory = () -> Executors.newFixedThreadPool(CARRIERS);
+        setFields(virtual, TikaExecutors.VIRTUAL, 2);
+        virtual.init();
+        assertTrue(virtual.isVirtual());
+        ModeRun virtualRun = runFetches(virtual, COMPARED_FETCHES);
+
+        log.info("{} fetches of {} ms: platform mode started {} OS threads in {} ms, virtual mode started {} in {} ms",
+                COMPARED_FETCHES, FETCH_MILLIS, platformRun.threadsStarted(), platformRun.millis(), virtualRun.threadsStarted(), virtualRun.millis());
+        // a platform thread per fetch in progress
+        assertTrue(platformRun.threadsStarted() >= COMPARED_FETCHES / 2, platformRun.toString());
+        // only the carriers and the parse pool, give or take threads the JVM starts for itself
+        assertTrue(virtualRun.threadsStarted() < COMPARED_FETCHES / 10, virtualRun.toString());
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualModeDoesNotStartAnOsThreadPerFetch() throws Exception {
+        TikaExecutors executors = newExecutors(TikaExecutors.VIRTUAL, 2);
+        assertTrue(executors.isVirtual());
+        // only the parse pool and the virtual thread carriers are OS threads
+        ModeRun run = runFetches(executors, FETCHES);
+        assertTrue(run.threadsStarted() < FETCHES / 2, run.threadsStarted() + " OS threads started for " + FETCHES + " fetches");
+    }
+
+    private record ModeRun(long threadsStarted, long millis) {
+    }
+
+    /**
+     * Run slow fetches, each followed by a parse, and count the OS threads started for them.
+     */
+    private static ModeRun runFetches(TikaExecutors executors, int fetches) throws Exception {
+        try {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long startedBefore = threads.getTotalStartedThreadCount();
+            long start = System.nanoTime();
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < fetches; i++) {
+                futures.add(executors.getFetchExecutor().submit(() -> {
+                    sleep(FETCH_MILLIS);
+                    return executors.parse(() -> Thread.currentThread().getName());
+                }));
+            }
+            for (Future<String> future : futures) {
+                assertTrue(future.get().startsWith("tika-parse-runner-"));
+            }
+            return new ModeRun(threads.getTotalStartedThreadCount() - startedBefore, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            executors.destroy();
+        }
+    }
+
+    private static TikaExecutors newExecutors(String fetchMode, int parseThreads) {
+        TikaExecutors executors = new TikaExecutors();
+        setFields(executors, fetchMode, parseThreads);
+        executors.init();
+        return executors;
+    }
+
+    private static void setFields(TikaExecutors executors, String fetchMode, int parseThreads) {
+        ReflectionTestUtils.setField(executors, "fetchMode", fetchMode);
+        ReflectionTestUtils.setField(executors, "parseThreads", parseThreads);
+        ReflectionTestUtils.setField(executors, "serverThreads", 4);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.apache.tika.pipes.grpc;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.FetchAndParseReply;
+import org.apache.tika.FetchAndParseRequest;
+import org.apache.tika.SaveFetcherRequest;
+import org.apache.tika.TikaGrpc;
+import org.apache.tika.pipes.TikaPipesIntegrationTestBase;
+import org.apache.tika.pipes.fetchers.filesystem.FileSystemFetcherConfig;
+import org.apache.tika.pipes.model.FetchAndParseStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+class TikaGrpcServerFetchAndParseStreamingTest extends TikaPipesIntegrationTestBase {
+    ObjectMapper objectMapper = new ObjectMapper();
+    String pluginId = "filesystem-fetcher";
+    String fetcherId = "filesystem-fetcher-streaming";
+    File testFilesDir = new File("corpa-files");
+    ManagedChannel channel;
+    TikaGrpc.TikaBlockingStub tikaBlockingStub;
+
+    @BeforeEach
+    void init() throws Exception {
+        channel = ManagedChannelBuilder.forAddress(InetAddress.getLocalHost().getHostAddress(), port)
+                                       .usePlaintext()
+                                       .build();
+        tikaBlockingStub = TikaGrpc.newBlockingStub(channel);
+        FileSystemFetcherConfig fileSystemFetcherConfig = new FileSystemFetcherConfig();
+        fileSystemFetcherConfig.setBasePath(testFilesDir.getAbsolutePath());
+        tikaBlockingStub.saveFetcher(SaveFetcherRequest.newBuilder()
+                                                       .setFetcherId(fetcherId)
+                                                       .setPluginId(pluginId)
+                                                       .setFetcherConfigJson(objectMapper.writeValueAsString(fileSystemFetcherConfig))
+                                                       .build());
+    }
+
+    @AfterEach
+    void close() {
+        channel.shutdownNow();
+    }
+
+    @Test
+    void streamsOneReplyPerEmbeddedDocument() throws Exception {
+        String fetchKey = new File(testFilesDir, "018367.docx").getAbsolutePath();
+        FetchAndParseReply unaryReply = tikaBlockingStub.fetchAndParse(request(fetchKey));
+        assertTrue(unaryReply.getMetadataCount() > 1, "expected a document with attachments");
+
+        List<FetchAndParseReply> replies = new ArrayList<>();
+        tikaBlockingStub.fetchAndParseServerSideStreaming(request(fetchKey)).forEachRemaining(replies::add);
+
+        assertEquals(unaryReply.getMetadataCount(), replies.size());
+        for (FetchAndParseReply reply : replies) {
+            assertEquals(FetchAndParseStatus.FETCH_AND_PARSE_SUCCESS.name(), reply.getStatus());
+            assertEquals(fetchKey, reply.getFetchKey());
+            assertEquals(1, reply.getMetadataCount());
+            assertEquals("metadata", reply.getMetadata(0).getFieldsOrThrow("additional").getValues(0).getStringValue());
+        }
+        // the container document finishes last
+        String containerType = replies.get(replies.size() - 1).getMetadata(0).getFieldsOrThrow("Content-Type").getValues(0).getStringValue();
+        assertTrue(containerType.contains("wordprocessingml"), containerType);
+        assertFalse(replies.get(0).getMetadata(0).getFieldsOrThrow("Content-Type").getValues(0).getStringValue().contains("wordprocessingml"));
+    }
+
+    @Test
+    void streamsErrorReply() throws Exception {
+        String fetchKey = new File(testFilesDir, "file-that-confuses-tika.log").getAbsolutePath();
+        List<FetchAndParseReply> replies = new ArrayList<>();
+        tikaBlockingStub.fetchAndParseServerSideStreaming(request(fetchKey)).forEachRemaining(replies::add);
+
+        FetchAndParseReply last = replies.get(replies.size() - 1);
+        assertEquals(FetchAndParseStatus.FETCH_AND_PARSE_EXCEPTION.name(), last.getStatus());
+        assertFalse(last.getErrorMessage().isBlank());
+    }
+
+    private FetchAndParseRequest request(String fetchKey) throws JsonProcessingException {
+        return FetchAndParseRequest.newBuilder()
+                                   .setFetcherId(fetcherId)
+                                   .setFetchKey(fetchKey)
+                                   .setAddedMetadataJson(objectMapper.writeValueAsString(Map.of("additional", "metadata")))
+                                   .build();
+    }
+}
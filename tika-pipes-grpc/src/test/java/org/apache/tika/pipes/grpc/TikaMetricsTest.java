@@ -0,0 +1,79 @@
+package org.apache.tika.pipes.grpc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tika.pipes.core.emitter.EmitOutput;
+import org.apache.tika.pipes.core.emitter.Emitter;
+import org.apache.tika.pipes.core.emitter.EmitterConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TikaMetricsTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TikaMetrics tikaMetrics;
+
+    @BeforeEach
+    void setUp() {
+        tikaMetrics = new TikaMetrics();
+        ReflectionTestUtils.setField(tikaMetrics, "meterRegistry", meterRegistry);
+        tikaMetrics.init();
+    }
+
+    @Test
+    void recordsFetchesPerPlugin() {
+        tikaMetrics.recordFetch("s3-fetcher", 1_000_000, true, 2048);
+        tikaMetrics.recordFetch("s3-fetcher", 1_000_000, false, -1);
+
+        assertEquals(1, meterRegistry.get("tika.fetch").tags("plugin", "s3-fetcher", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("tika.fetch").tags("plugin", "s3-fetcher", "outcome", "error").timer().count());
+        assertEquals(2048.0, meterRegistry.get("tika.fetch.bytes").tags("plugin", "s3-fetcher").summary().totalAmount());
+    }
+
+    @Test
+    void recordsParsesByMimeType() {
+        tikaMetrics.recordParse("application/zip", "FETCH_AND_PARSE_SUCCESS", 1_000_000, 4);
+        tikaMetrics.recordParse("text/plain; charset=UTF-8", "FETCH_AND_PARSE_SUCCESS", 1_000_000, 1);
+        tikaMetrics.recordParse(null, "FETCH_AND_PARSE_EXCEPTION", 1_000_000, 0);
+
+        assertEquals(3.0, meterRegistry.get("tika.parse.embedded").tags("mime_type", "application/zip").summary().totalAmount());
+        assertEquals(1, meterRegistry.get("tika.parse.documents").tags("mime_type", "text/plain").timer().count());
+        assertEquals(1, meterRegistry.get("tika.parse.documents").tags("mime_type", "unknown", "status", "FETCH_AND_PARSE_EXCEPTION").timer().count());
+        assertNull(meterRegistry.find("tika.parse.embedded").tags("mime_type", "unknown").summary());
+    }
+
+    @Test
+    void timesEmitter() throws Exception {
+        Emitter emitter = tikaMetrics.timed(new Emitter() {
+            @Override
+            public <T extends EmitterConfig> void init(T emitterConfig) {
+            }
+
+            @Override
+            public String getPluginId() {
+                return "test-emitter";
+            }
+
+            @Override
+            public void emit(List<EmitOutput> emitOutputs) throws IOException {
+                if (emitOutputs.isEmpty()) {
+                    throw new IOException("nothing to emit");
+                }
+            }
+        });
+        emitter.emit(List.of(EmitOutput.builder().fetchKey("a").build(), EmitOutput.builder().fetchKey("b").build()));
+        assertThrows(IOException.class, () -> emitter.emit(List.of()));
+
+        assertEquals("test-emitter", emitter.getPluginId());
+        assertEquals(1, meterRegistry.get("tika.emit").tags("plugin", "test-emitter", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("tika.emit").tags("plugin", "test-emitter", "outcome", "error").timer().count());
+        assertEquals(2.0, meterRegistry.get("tika.emit.documents").summary().totalAmount());
+    }
+}
@@ -0,0 +1,167 @@
+package org.apache.tika.pipes.job;
+
+import org.apache.tika.pipes.core.emitter.EmitOutput;
+import org.apache.tika.pipes.core.emitter.Emitter;
+import org.apache.tika.pipes.core.emitter.EmitterConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmitBatcherTest {
+    @Test
+    void emitsFullBatchesAndRemainderOnClose() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        try (EmitBatcher batcher = new EmitBatcher("test", emitter, 3, 0, 0)) {
+            for (int i = 0; i < 7; i++) {
+                batcher.add(emitOutput("doc-" + i, "x"));
+            }
+            assertEquals(List.of(3, 3), emitter.batchSizes());
+        }
+        assertEquals(List.of(3, 3, 1), emitter.batchSizes());
+    }
+
+    @Test
+    void emitsWhenBatchReachesMaxBytes() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        try (EmitBatcher batcher = new EmitBatcher("test", emitter, 100, 1000, 0)) {
+            batcher.add(emitOutput("a", "x".repeat(600)));
+            assertEquals(List.of(), emitter.batchSizes());
+            batcher.add(emitOutput("b", "x".repeat(600)));
+            assertEquals(List.of(2), emitter.batchSizes());
+        }
+    }
+
+    @Test
+    void emitsLingeringBatch() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        try (EmitBatcher batcher = new EmitBatcher("test", emitter, 100, 0, 50)) {
+            batcher.add(emitOutput("a", "x"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (emitter.batchSizes().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of(1), emitter.batchSizes());
+            assertEquals(1, batcher.getBatchCount());
+        }
+    }
+
+    @Test
+    void closeWaitsForLingeringBatchWithoutInterruptingIt() throws Exception {
+        CountDownLatch emitting = new CountDownLatch(1);
+        CountDownLatch finishEmit = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        RecordingEmitter emitter = new RecordingEmitter() {
+            @Override
+            public void emit(List<EmitOutput> emitOutputs) throws IOException {
+                if (emitting.getCount() > 0) {
+                    emitting.countDown();
+                    try {
+                        finishEmit.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                        throw new IOException("interrupted", e);
+                    }
+                }
+                super.emit(emitOutputs);
+            }
+        };
+        List<String> emitted = Collections.synchronizedList(new ArrayList<>());
+        EmitBatcher batcher = new EmitBatcher("test", emitter, 100, 0, 50);
+        batcher.add(emitOutput("a", "x"), () -> emitted.add("a"));
+        assertTrue(emitting.await(10, TimeUnit.SECONDS));
+        batcher.add(emitOutput("b", "x"), () -> emitted.add("b"));
+
+        Thread closer = new Thread(batcher::close);
+        closer.start();
+        Thread.sleep(100);
+        finishEmit.countDown();
+        closer.join(10000);
+
+        assertFalse(interrupted.get());
+        assertEquals(List.of(1, 1), emitter.batchSizes());
+        assertEquals(List.of("a", "b"), emitted);
+        assertEquals(0, batcher.getFailureCount());
+    }
+
+    @Test
+    void countsEveryDocumentOfAFailedBatch() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.fail = true;
+        EmitBatcher batcher = new EmitBatcher("test", emitter, 2, 0, 0);
+        batcher.add(emitOutput("a", "x"));
+        batcher.add(emitOutput("b", "x"));
+        batcher.add(emitOutput("c", "x"));
+        batcher.close();
+
+        assertEquals(3, batcher.getFailureCount());
+        assertEquals(0, batcher.getBatchCount());
+    }
+
+    @Test
+    void runsCallbacksOnlyAfterTheirBatchIsEmitted() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        List<String> emitted = Collections.synchronizedList(new ArrayList<>());
+        EmitBatcher batcher = new EmitBatcher("test", emitter, 2, 0, 0);
+        batcher.add(emitOutput("a", "x"), () -> emitted.add("a"));
+        assertEquals(List.of(), emitted);
+        batcher.add(emitOutput("b", "x"), () -> emitted.add("b"));
+        assertEquals(List.of("a", "b"), emitted);
+
+        emitter.fail = true;
+        batcher.add(emitOutput("c", "x"), () -> emitted.add("c"));
+        batcher.close();
+        assertEquals(List.of("a", "b"), emitted);
+        assertEquals(1, batcher.getFailureCount());
+    }
+
+    @Test
+    void estimatesMetadataSize() {
+        assertTrue(EmitBatcher.estimateBytes(emitOutput("key", "x".repeat(1000))) >= 1000);
+    }
+
+    private static EmitOutput emitOutput(String fetchKey, String content) {
+        return EmitOutput.builder()
+                .fetchKey(fetchKey)
+                .metadata(List.of(Map.of("X-TIKA:content", List.of(content))))
+                .build();
+    }
+
+    private static class RecordingEmitter implements Emitter {
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean fail;
+
+        @Override
+        public <T extends EmitterConfig> void init(T emitterConfig) {
+        }
+
+        @Override
+        public String getPluginId() {
+            return "recording";
+        }
+
+        @Override
+        public void emit(List<EmitOutput> emitOutputs) throws IOException {
+            if (fail) {
+                throw new IOException("emit failed");
+            }
+            batchSizes.add(emitOutputs.size());
+        }
+
+        List<Integer> batchSizes() {
+            synchronized (batchSizes) {
+                return new ArrayList<>(batchSizes);
+            }
+        }
+    }
+}
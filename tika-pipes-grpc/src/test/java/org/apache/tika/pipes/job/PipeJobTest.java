@@ -0,0 +1,117 @@
+package org.apache.tika.pipes.job;
+
+import org.apache.tika.pipes.core.exception.TikaPipesException;
+import org.apache.tika.pipes.core.iterators.PipeInput;
+import org.apache.tika.pipes.core.iterators.PipeIterator;
+import org.apache.tika.pipes.core.iterators.PipeIteratorConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipeJobTest {
+    @Test
+    void runsStagesInParallel() throws Exception {
+        Set<String> emitted = ConcurrentHashMap.newKeySet();
+        AtomicInteger parsing = new AtomicInteger();
+        AtomicInteger maxParsing = new AtomicInteger();
+        PipeJob<String, String> pipeJob = new PipeJob<>("test", new ListPipeIterator(100, 7),
+                pipeInput -> pipeInput.getFetchKey(),
+                fetched -> {
+                    maxParsing.accumulateAndGet(parsing.incrementAndGet(), Math::max);
+                    Thread.sleep(5);
+                    parsing.decrementAndGet();
+                    return fetched.toUpperCase();
+                },
+                emitted::add,
+                2, 4, 1, 3);
+        pipeJob.run(60);
+
+        assertEquals(100, emitted.size());
+        assertTrue(emitted.contains("DOC-99"));
+        assertEquals(0, pipeJob.getFailureCount());
+        assertTrue(maxParsing.get() > 1, "parse stage should run in parallel");
+    }
+
+    @Test
+    void countsFailuresAndContinues() throws Exception {
+        Set<String> emitted = ConcurrentHashMap.newKeySet();
+        PipeJob<String, String> pipeJob = new PipeJob<>("test", new ListPipeIterator(10, 3),
+                pipeInput -> {
+                    if (pipeInput.getFetchKey().equals("doc-3")) {
+                        throw new IllegalStateException("not found");
+                    }
+                    return pipeInput.getFetchKey();
+                },
+                fetched -> fetched,
+                emitted::add,
+                1, 1, 1, 1);
+        pipeJob.run(0);
+
+        assertEquals(9, emitted.size());
+        assertEquals(1, pipeJob.getFailureCount());
+    }
+
+    @Test
+    void timesOut() {
+        CountDownLatch never = new CountDownLatch(1);
+        PipeJob<String, String> pipeJob = new PipeJob<>("test", new ListPipeIterator(10, 10),
+                pipeInput -> {
+                    never.await(1, TimeUnit.MINUTES);
+                    return pipeInput.getFetchKey();
+                },
+                fetched -> fetched,
+                fetched -> {
+                },
+                1, 1, 1, 1);
+        assertThrows(TikaPipesException.class, () -> pipeJob.run(1));
+    }
+
+    private static class ListPipeIterator implements PipeIterator {
+        private final List<PipeInput> inputs = new ArrayList<>();
+        private final int batchSize;
+        private int position;
+
+        private ListPipeIterator(int count, int batchSize) {
+            for (int i = 0; i < count; i++) {
+                inputs.add(PipeInput.builder().fetchKey("doc-" + i).metadata(Map.of()).build());
+            }
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public String getPipeIteratorId() {
+            return "list";
+        }
+
+        @Override
+        public <T extends PipeIteratorConfig> void init(T config) {
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < inputs.size();
+        }
+
+        @Override
+        public List<PipeInput> next() {
+            List<PipeInput> batch = inputs.subList(position, Math.min(position + batchSize, inputs.size()));
+            position += batch.size();
+            return batch;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.apache.tika.pipes.plugin;
+
+import org.apache.tika.pipes.core.emitter.EmitOutput;
+import org.apache.tika.pipes.core.emitter.Emitter;
+import org.apache.tika.pipes.core.emitter.EmitterConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ManagedEmitterTest {
+    private final AtomicInteger closes = new AtomicInteger();
+
+    private class CloseableEmitter implements Emitter, AutoCloseable {
+        @Override
+        public <T extends EmitterConfig> void init(T emitterConfig) {
+        }
+
+        @Override
+        public String getPluginId() {
+            return "test-emitter";
+        }
+
+        @Override
+        public void emit(List<EmitOutput> emitOutputs) {
+        }
+
+        @Override
+        public void close() {
+            closes.incrementAndGet();
+        }
+    }
+
+    @Test
+    void closesAfterPipeJobsRelease() {
+        ManagedEmitter managedEmitter = new ManagedEmitter("emitter-1", "test-emitter", new CloseableEmitter());
+        assertTrue(managedEmitter.acquire());
+        assertTrue(managedEmitter.acquire());
+
+        managedEmitter.close();
+        assertEquals(0, closes.get());
+        assertFalse(managedEmitter.acquire());
+
+        managedEmitter.release();
+        assertEquals(0, closes.get());
+        managedEmitter.release();
+        assertEquals(1, closes.get());
+
+        managedEmitter.close();
+        assertEquals(1, closes.get());
+    }
+}
@@ -0,0 +1,72 @@
+package org.apache.tika.pipes.plugin;
+
+import org.apache.tika.pipes.fetchers.core.DefaultFetcherConfig;
+import org.apache.tika.pipes.fetchers.core.Fetcher;
+import org.apache.tika.pipes.fetchers.core.FetcherConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ManagedFetcherTest {
+    private final AtomicInteger inits = new AtomicInteger();
+    private final AtomicInteger closes = new AtomicInteger();
+    private final CountDownLatch fetchStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFetch = new CountDownLatch(1);
+
+    private final Fetcher fetcher = new Fetcher() {
+        @Override
+        public void init(FetcherConfig fetcherConfig) {
+            inits.incrementAndGet();
+        }
+
+        @Override
+        public InputStream fetch(FetcherConfig fetcherConfig, String fetchKey, Map<String, Object> fetchMetadata, Map<String, Object> responseMetadata) {
+            fetchStarted.countDown();
+            try {
+                releaseFetch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public void close() {
+            closes.incrementAndGet();
+        }
+    };
+
+    @Test
+    void initializesOnceAndClosesAfterRunningFetches() throws Exception {
+        ManagedFetcher managedFetcher = new ManagedFetcher("fetcher-1", "test-fetcher", fetcher, new DefaultFetcherConfig());
+        assertEquals(1, inits.get());
+        // stored validators are not looked up for fetchers without conditional fetches
+        assertFalse(managedFetcher.isConditionalFetch());
+
+        CompletableFuture<InputStream> fetch = CompletableFuture.supplyAsync(() -> managedFetcher.fetch("a.txt", Map.of(), new HashMap<>()));
+        assertTrue(fetchStarted.await(10, TimeUnit.SECONDS));
+        managedFetcher.close();
+        assertEquals(0, closes.get());
+
+        releaseFetch.countDown();
+        fetch.get(10, TimeUnit.SECONDS);
+        assertEquals(1, closes.get());
+        assertTrue(managedFetcher.isClosed());
+        assertThrows(ManagedFetcher.FetcherClosedException.class, () -> managedFetcher.fetch("b.txt", Map.of(), new HashMap<>()));
+
+        managedFetcher.close();
+        assertEquals(1, closes.get());
+    }
+}
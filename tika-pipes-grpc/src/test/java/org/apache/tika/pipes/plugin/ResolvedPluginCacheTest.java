@@ -0,0 +1,95 @@
+package org.apache.tika.pipes.plugin;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResolvedPluginCacheTest {
+    private final List<String> removed = new CopyOnWriteArrayList<>();
+    private final ResolvedPluginCache<String> cache = new ResolvedPluginCache<>(removed::add);
+    private final AtomicInteger resolves = new AtomicInteger();
+
+    @Test
+    void resolvesOnceUntilInvalidated() throws Exception {
+        assertEquals("fetcher-1:1", cache.get("fetcher-1", this::resolve));
+        assertEquals("fetcher-1:1", cache.get("fetcher-1", this::resolve));
+        assertEquals(1, resolves.get());
+
+        cache.invalidate("fetcher-1");
+        assertEquals(List.of("fetcher-1:1"), removed);
+        assertEquals("fetcher-1:2", cache.get("fetcher-1", this::resolve));
+        assertEquals(2, resolves.get());
+
+        cache.invalidateAll();
+        assertEquals(List.of("fetcher-1:1", "fetcher-1:2"), removed);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void doesNotCacheMissingConfigs() throws Exception {
+        assertNull(cache.get("missing", id -> null));
+        assertEquals(0, cache.size());
+        cache.invalidate("missing");
+        assertTrue(removed.isEmpty());
+    }
+
+    @Test
+    void resolvesAgainWhenASaveRacedWithTheResolve() throws Exception {
+        String resolved = cache.get("fetcher-1", id -> {
+            if (resolves.get() == 0) {
+                // the config is saved again while the old one is being resolved
+                cache.invalidate(id);
+            }
+            return resolve(id);
+        });
+
+        assertEquals("fetcher-1:2", resolved);
+        assertEquals(List.of("fetcher-1:1"), removed);
+        assertEquals("fetcher-1:2", cache.get("fetcher-1", this::resolve));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void keepsTheFirstOfConcurrentResolvesAndRemovesTheOthers() throws Exception {
+        CountDownLatch bothResolving = new CountDownLatch(2);
+        ResolvedPluginCache.Resolver<String> resolver = id -> {
+            String resolved = resolve(id);
+            bothResolving.countDown();
+            try {
+                bothResolving.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return resolved;
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executorService.submit(() -> cache.get("fetcher-1", resolver));
+            Future<String> second = executorService.submit(() -> cache.get("fetcher-1", resolver));
+            String kept = first.get(10, TimeUnit.SECONDS);
+            assertEquals(kept, second.get(10, TimeUnit.SECONDS));
+            assertEquals(2, resolves.get());
+            assertEquals(1, removed.size());
+            assertNotEquals(kept, removed.get(0));
+            assertEquals(kept, cache.get("fetcher-1", this::resolve));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private String resolve(String id) {
+        return id + ":" + resolves.incrementAndGet();
+    }
+}
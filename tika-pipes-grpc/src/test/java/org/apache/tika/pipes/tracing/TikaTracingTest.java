@@ -0,0 +1,177 @@
+package org.apache.tika.pipes.tracing;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.services.HealthStatusManager;
+import io.grpc.stub.MetadataUtils;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.apache.tika.pipes.core.emitter.EmitOutput;
+import org.apache.tika.pipes.core.emitter.Emitter;
+import org.apache.tika.pipes.core.emitter.EmitterConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TikaTracingTest {
+    private final List<SpanData> spans = new CopyOnWriteArrayList<>();
+    private SdkTracerProvider tracerProvider;
+    private TikaTracing tikaTracing;
+
+    @BeforeEach
+    void setUp() {
+        tracerProvider = SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(new SpanExporter() {
+            @Override
+            public CompletableResultCode export(Collection<SpanData> exported) {
+                spans.addAll(exported);
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode flush() {
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        })).build();
+        OpenTelemetry openTelemetry = OpenTelemetrySdk.builder()
+                                                      .setTracerProvider(tracerProvider)
+                                                      .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                                                      .build();
+        tikaTracing = new TikaTracing();
+        ReflectionTestUtils.setField(tikaTracing, "openTelemetry", openTelemetry);
+        tikaTracing.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracerProvider.close();
+    }
+
+    @Test
+    void nestsSpansAndRecordsFailures() throws Exception {
+        Span parent = tikaTracing.startSpan("parent");
+        try (Scope scope = parent.makeCurrent()) {
+            tikaTracing.inSpan("child", Map.of("tika.fetch_key", "a.txt"), () -> null);
+            assertThrows(IOException.class, () -> tikaTracing.inSpan("failing", Map.of(), () -> {
+                throw new IOException("fetch failed");
+            }));
+        } finally {
+            parent.end();
+        }
+
+        SpanData child = span("child");
+        assertEquals(parent.getSpanContext().getSpanId(), child.getParentSpanId());
+        assertEquals("a.txt", child.getAttributes().get(AttributeKey.stringKey("tika.fetch_key")));
+        SpanData failing = span("failing");
+        assertEquals(StatusCode.ERROR, failing.getStatus().getStatusCode());
+        assertEquals(parent.getSpanContext().getTraceId(), failing.getTraceId());
+    }
+
+    @Test
+    void documentSpansStartNewTracesLinkedToTheJob() {
+        Span job = tikaTracing.startSpan("PipeJob.run");
+        tikaTracing.startDocumentSpan(job, "a.txt").end();
+        job.end();
+
+        SpanData document = span("PipeJob.document");
+        assertFalse(document.getParentSpanContext().isValid());
+        assertEquals(job.getSpanContext().getTraceId(), document.getLinks().get(0).getSpanContext().getTraceId());
+    }
+
+    @Test
+    void tracesEmitsFromTheWrappingContext() throws Exception {
+        Span job = tikaTracing.startSpan("PipeJob.run");
+        Emitter emitter;
+        try (Scope scope = job.makeCurrent()) {
+            emitter = tikaTracing.traced(new Emitter() {
+                @Override
+                public <T extends EmitterConfig> void init(T emitterConfig) {
+                }
+
+                @Override
+                public String getPluginId() {
+                    return "file-system-emitter";
+                }
+
+                @Override
+                public void emit(List<EmitOutput> emitOutputs) {
+                }
+            });
+        }
+        // called without a current span, like a batch flushed by the linger timer
+        emitter.emit(List.of());
+        job.end();
+
+        SpanData emit = span("Emitter.emit");
+        assertEquals(job.getSpanContext().getSpanId(), emit.getParentSpanId());
+        assertEquals("file-system-emitter", emit.getAttributes().get(AttributeKey.stringKey("tika.emitter.plugin")));
+    }
+
+    @Test
+    void continuesTraceFromTraceparentHeader() throws Exception {
+        String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        String callerSpanId = "00f067aa0ba902b7";
+        String serverName = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(serverName)
+                                              .addService(ServerInterceptors.intercept(new HealthStatusManager().getHealthService(), tikaTracing.getServerInterceptor()))
+                                              .build()
+                                              .start();
+        ManagedChannel channel = InProcessChannelBuilder.forName(serverName).build();
+        try {
+            Metadata headers = new Metadata();
+            headers.put(Metadata.Key.of("traceparent", Metadata.ASCII_STRING_MARSHALLER), "00-" + traceId + "-" + callerSpanId + "-01");
+            HealthGrpc.newBlockingStub(channel)
+                      .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers))
+                      .check(HealthCheckRequest.getDefaultInstance());
+        } finally {
+            channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+            server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        // the server span ends once the call has closed, which can be just after the client has its reply
+        await().atMost(10, TimeUnit.SECONDS).until(() -> spans.stream().anyMatch(span -> span.getKind() == SpanKind.SERVER));
+        SpanData call = span("grpc.health.v1.Health/Check");
+        assertEquals(SpanKind.SERVER, call.getKind());
+        assertEquals(traceId, call.getTraceId());
+        assertEquals(callerSpanId, call.getParentSpanId());
+    }
+
+    private SpanData span(String name) {
+        return spans.stream().filter(span -> span.getName().equals(name)).findFirst().orElseThrow(() -> new AssertionError("No span named " + name + " in " + spans));
+    }
+}